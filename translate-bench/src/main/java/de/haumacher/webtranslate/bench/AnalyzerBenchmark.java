@@ -0,0 +1,54 @@
+package de.haumacher.webtranslate.bench;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.haumacher.webtranslate.extract.HtmlAnalyzer;
+import de.haumacher.webtranslate.extract.TemplateTree;
+
+/**
+ * Benchmarks for {@link HtmlAnalyzer#analyze()} and {@link HtmlAnalyzer#inject()}.
+ *
+ * <p>
+ * Both operations modify the tree. Therefore, each invocation works on a
+ * copy of the template. The costs of copying are measured separately in
+ * {@link #copy(Templates)}.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+	@Benchmark
+	public TemplateTree copy(Templates templates) {
+		return templates.source.copy();
+	}
+
+	@Benchmark
+	public Map<String, String> analyze(Templates templates) {
+		HtmlAnalyzer analyzer = new HtmlAnalyzer(templates.source.copy());
+		analyzer.analyze();
+		return analyzer.getTextById();
+	}
+
+	@Benchmark
+	public TemplateTree inject(Templates templates) {
+		TemplateTree tree = templates.analyzed.copy();
+		HtmlAnalyzer analyzer = new HtmlAnalyzer(tree);
+		analyzer.setTextById(templates.translated);
+		analyzer.inject();
+		return tree;
+	}
+
+}
@@ -0,0 +1,184 @@
+package de.haumacher.webtranslate.bench;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import de.haumacher.webtranslate.extract.HtmlAnalyzer;
+import de.haumacher.webtranslate.extract.TemplateParser;
+import de.haumacher.webtranslate.extract.TemplateTree;
+
+/**
+ * Compares the heap retained by analyzed templates with the heap of a JAXP
+ * DOM.
+ *
+ * <p>
+ * The benchmark generates a synthetic template corpus and holds all templates
+ * in memory. It reports the retained heap per template for a plain JAXP DOM as
+ * reference and for the {@link TemplateTree}s that extraction and synthesis
+ * work on, read with {@link TemplateParser#parseTree(InputSource)} and
+ * analyzed as during extraction. Retained heap is measured as the growth of used heap after a full garbage
+ * collection of the analyzed models, so run it with a non-concurrent
+ * collector, e.g. <code>-Xmx1g -XX:+UseSerialGC</code>.
+ * </p>
+ *
+ * <p>
+ * Options (all optional) in the form <code>--name=value</code>:
+ * </p>
+ * <dl>
+ * <dt><code>files</code></dt><dd>Number of templates (default 500).</dd>
+ * <dt><code>models</code></dt><dd>Comma-separated models to compare, <code>document</code>, <code>DOM</code> or <code>SAX</code>.
+ * Ratios are relative to the first one (default <code>document,DOM,SAX</code>).</dd>
+ * <dt><code>depth</code>, <code>width</code>, <code>textDensity</code>, <code>placeholders</code></dt>
+ * <dd>Shape of each template, see {@link TemplateGenerator} (default 2, 4, 0.8, 3).</dd>
+ * </dl>
+ */
+public class HeapBenchmark {
+
+	private final Map<String, String> options;
+
+	private HeapBenchmark(Map<String, String> options) {
+		this.options = options;
+	}
+
+	private String option(String name, String defaultValue) {
+		return options.getOrDefault(name, defaultValue);
+	}
+
+	private void run() throws Exception {
+		int files = Integer.parseInt(option("files", "500"));
+		TemplateGenerator generator = new TemplateGenerator(
+			Integer.parseInt(option("depth", "2")),
+			Integer.parseInt(option("width", "4")),
+			Double.parseDouble(option("textDensity", "0.8")),
+			Integer.parseInt(option("placeholders", "3")));
+
+		List<byte[]> corpus = new ArrayList<>(files);
+		long size = 0;
+		for (int n = 0; n < files; n++) {
+			byte[] html = generator.generate(n).getBytes(StandardCharsets.UTF_8);
+			corpus.add(html);
+			size += html.length;
+		}
+
+		System.out.println("Templates: " + files + ", average size: " + (size / files) + " bytes");
+		System.out.println();
+		System.out.println(String.format("%-8s %14s %14s %8s", "model", "heap [bytes]", "per template", "ratio"));
+
+		List<Model> models = Arrays.stream(option("models", "document,DOM,SAX").split(",")).map(String::strip).map(Model::valueOf).toList();
+
+		// Warm up all models before measuring, so that class loading and parser
+		// pools are not accounted to the first model measured.
+		for (Model model : models) {
+			model.load(corpus.get(0));
+		}
+
+		long reference = 0;
+		for (Model model : models) {
+			long heap = measure(model, corpus);
+			if (reference == 0) {
+				reference = heap;
+			}
+			System.out.println(String.format("%-8s %14d %14d %8.2f", model, heap, heap / files, (double) heap / reference));
+		}
+	}
+
+	/**
+	 * Loads all templates with the given model.
+	 *
+	 * @return The retained heap in bytes.
+	 */
+	private static long measure(Model model, List<byte[]> corpus) throws Exception {
+		long before = usedHeap();
+		List<Object> retained = new ArrayList<>(corpus.size());
+		for (byte[] html : corpus) {
+			retained.add(model.load(html));
+		}
+		long heap = usedHeap() - before;
+
+		// Keep the models reachable until measured.
+		retained.clear();
+		return heap;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int n = 0; n < 3; n++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static InputSource source(byte[] html) {
+		return new InputSource(new ByteArrayInputStream(html));
+	}
+
+	/**
+	 * The document models to compare.
+	 */
+	private enum Model {
+		/**
+		 * The JAXP DOM of the template, as reference.
+		 */
+		document {
+			@Override
+			Object load(byte[] html) throws Exception {
+				Document document = TemplateParser.DOM.parse(source(html));
+
+				// Expand the deferred nodes of the DOM by traversing it once.
+				TemplateTree.of(document.getDocumentElement());
+				return document;
+			}
+		},
+
+		/**
+		 * The analyzed tree read with {@link TemplateParser#DOM}, the default of extraction.
+		 */
+		DOM {
+			@Override
+			Object load(byte[] html) throws Exception {
+				return analyze(TemplateParser.DOM.parseTree(source(html)));
+			}
+		},
+
+		/**
+		 * The analyzed tree read with {@link TemplateParser#SAX}.
+		 */
+		SAX {
+			@Override
+			Object load(byte[] html) throws Exception {
+				return analyze(TemplateParser.SAX.parseTree(source(html)));
+			}
+		};
+
+		/**
+		 * Parses and analyzes the given template.
+		 */
+		abstract Object load(byte[] html) throws Exception;
+
+		static TemplateTree analyze(TemplateTree tree) {
+			new HtmlAnalyzer(tree).analyze();
+			return tree;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+				throw new IllegalArgumentException("Expected option in the form --name=value: " + arg);
+			}
+			int sep = arg.indexOf('=');
+			options.put(arg.substring(2, sep), arg.substring(sep + 1));
+		}
+		new HeapBenchmark(options).run();
+	}
+
+}
@@ -0,0 +1,48 @@
+package de.haumacher.webtranslate.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.haumacher.webtranslate.extract.PropertiesCodec;
+import de.haumacher.webtranslate.synthesize.TemplateSkeleton;
+
+/**
+ * Benchmarks for writing properties and templates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputBenchmark {
+
+	@Benchmark
+	public void writeProperties(Templates templates) throws IOException {
+		new PropertiesCodec(StandardCharsets.ISO_8859_1).write(OutputStream.nullOutputStream(), templates.translated);
+	}
+
+	@Benchmark
+	public void writeTree(Templates templates) {
+		templates.analyzed.write(OutputStream.nullOutputStream());
+	}
+
+	/**
+	 * Creates a localized template from a {@link TemplateSkeleton} for comparison
+	 * with injecting into a tree and writing it.
+	 */
+	@Benchmark
+	public String renderSkeleton(Templates templates) {
+		return templates.skeleton.render(templates.translated);
+	}
+
+}
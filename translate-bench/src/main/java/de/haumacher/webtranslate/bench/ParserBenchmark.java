@@ -0,0 +1,87 @@
+package de.haumacher.webtranslate.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import de.haumacher.webtranslate.extract.HtmlAnalyzer;
+import de.haumacher.webtranslate.extract.TemplateParser;
+import de.haumacher.webtranslate.extract.TemplateTree;
+
+/**
+ * Benchmarks for reading a template with the {@link TemplateParser}s into a
+ * DOM and into a {@link TemplateTree} compared to creating a new JAXP parser
+ * for each template.
+ *
+ * <p>
+ * Extraction reads a {@link TemplateTree} and analyzes it. This is measured
+ * for both parsers in <code>domAnalyze</code> and <code>saxAnalyze</code>.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Benchmark
+	public Document newParser(Templates templates) throws ParserConfigurationException, SAXException, IOException {
+		return DocumentBuilderFactory.newDefaultInstance().newDocumentBuilder().parse(new ByteArrayInputStream(templates.html));
+	}
+
+	@Benchmark
+	public Document dom(Templates templates) throws ParserConfigurationException, SAXException, IOException {
+		return TemplateParser.DOM.parse(new InputSource(new ByteArrayInputStream(templates.html)));
+	}
+
+	@Benchmark
+	public Document sax(Templates templates) throws ParserConfigurationException, SAXException, IOException {
+		return TemplateParser.SAX.parse(new InputSource(new ByteArrayInputStream(templates.html)));
+	}
+
+	@Benchmark
+	public TemplateTree domTree(Templates templates) throws ParserConfigurationException, SAXException, IOException {
+		return TemplateParser.DOM.parseTree(new InputSource(new ByteArrayInputStream(templates.html)));
+	}
+
+	@Benchmark
+	public TemplateTree saxTree(Templates templates) throws ParserConfigurationException, SAXException, IOException {
+		return TemplateParser.SAX.parseTree(new InputSource(new ByteArrayInputStream(templates.html)));
+	}
+
+	@Benchmark
+	public Map<String, String> domAnalyze(Templates templates) throws ParserConfigurationException, SAXException, IOException {
+		return analyze(domTree(templates));
+	}
+
+	@Benchmark
+	public Map<String, String> saxAnalyze(Templates templates) throws ParserConfigurationException, SAXException, IOException {
+		return analyze(saxTree(templates));
+	}
+
+	/**
+	 * Analyzes the tree, as done during extraction.
+	 */
+	private static Map<String, String> analyze(TemplateTree tree) {
+		HtmlAnalyzer analyzer = new HtmlAnalyzer(tree);
+		analyzer.analyze();
+		return analyzer.getTextById();
+	}
+
+}
@@ -0,0 +1,193 @@
+package de.haumacher.webtranslate.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import de.haumacher.webtranslate.Translator;
+import de.haumacher.webtranslate.extract.PropertiesCodec;
+import de.haumacher.webtranslate.extract.TemplateParser;
+
+/**
+ * End-to-end throughput benchmark of the extract, translate and synthesize
+ * phases of the {@link Translator}.
+ *
+ * <p>
+ * The benchmark generates a synthetic template corpus, points the translator
+ * to a {@link StubTranslationServer} and reports throughput per phase. It runs
+ * the whole pipeline once for each requested parallelism on a fresh copy of
+ * the corpus, so sequential and parallel configurations can be compared.
+ * </p>
+ *
+ * <p>
+ * Options (all optional) in the form <code>--name=value</code>:
+ * </p>
+ * <dl>
+ * <dt><code>files</code></dt><dd>Number of templates (default 200).</dd>
+ * <dt><code>langs</code></dt><dd>Comma-separated target languages (default <code>de,fr</code>).</dd>
+ * <dt><code>parallelism</code></dt><dd>Comma-separated parallelism values to compare (default <code>1,4</code>).</dd>
+ * <dt><code>latency</code></dt><dd>Simulated latency of each translation request in milliseconds (default 20).</dd>
+ * <dt><code>failureRate</code></dt><dd>Fraction of failing translation requests (default 0).</dd>
+ * <dt><code>depth</code>, <code>width</code>, <code>textDensity</code>, <code>placeholders</code></dt>
+ * <dd>Shape of each template, see {@link TemplateGenerator} (default 2, 4, 0.8, 3).</dd>
+ * <dt><code>sharedTexts</code></dt><dd>Fraction of paragraphs with a text shared between templates (default 0).</dd>
+ * <dt><code>parser</code></dt><dd>The {@link TemplateParser} to use, <code>DOM</code> or <code>SAX</code> (default <code>DOM</code>).</dd>
+ * <dt><code>verbose</code></dt><dd>Whether to show the output of the translator (default false).</dd>
+ * <dt><code>report</code></dt><dd>Base name of JSON run reports to write, one per parallelism value (default none).</dd>
+ * </dl>
+ */
+public class PipelineBenchmark {
+
+	private static final String SRC_LANG = "en";
+
+	private final Map<String, String> options;
+
+	/**
+	 * The console for the report, the standard streams are muted while the translator runs.
+	 */
+	private final PrintStream out = System.out;
+
+	private final int files;
+	private final List<String> destLangs;
+
+	private PipelineBenchmark(Map<String, String> options) {
+		this.options = options;
+		files = Integer.parseInt(option("files", "200"));
+		destLangs = Arrays.stream(option("langs", "de,fr").split(",")).map(String::strip).toList();
+	}
+
+	private String option(String name, String defaultValue) {
+		return options.getOrDefault(name, defaultValue);
+	}
+
+	private void run() throws Exception {
+		long latency = Long.parseLong(option("latency", "20"));
+		double failureRate = Double.parseDouble(option("failureRate", "0"));
+		boolean verbose = Boolean.parseBoolean(option("verbose", "false"));
+
+		out.println("Templates: " + files + ", languages: " + destLangs + ", latency: " + latency + "ms, failure rate: " + failureRate);
+		out.println();
+		out.println(String.format("%-11s %-11s %9s %9s %10s %12s %9s %9s %12s",
+			"parallelism", "phase", "time [ms]", "files", "files/s", "strings/s", "requests", "failures", "billed chars"));
+
+		try (StubTranslationServer server = new StubTranslationServer(latency, failureRate)) {
+			for (String value : option("parallelism", "1,4").split(",")) {
+				int parallelism = Integer.parseInt(value.strip());
+				Path dir = Files.createTempDirectory("web-translate-bench");
+				PrintStream err = System.err;
+				try {
+					if (!verbose) {
+						PrintStream nothing = new PrintStream(OutputStream.nullOutputStream());
+						System.setOut(nothing);
+						System.setErr(nothing);
+					}
+					run(server, dir, parallelism);
+				} finally {
+					System.setOut(out);
+					System.setErr(err);
+					delete(dir);
+				}
+			}
+		}
+	}
+
+	private void run(StubTranslationServer server, Path dir, int parallelism) throws Exception {
+		File templateDir = dir.resolve("templates").toFile();
+		File propertiesDir = dir.resolve("properties").toFile();
+		generateCorpus(new File(templateDir, SRC_LANG));
+
+		Translator translator = new Translator("stub-key", SRC_LANG, destLangs, propertiesDir, templateDir, StandardCharsets.UTF_8);
+		translator.setParallelism(parallelism);
+		translator.setServerUrl(server.getUrl());
+		translator.setParser(TemplateParser.valueOf(option("parser", "DOM")));
+
+		long start = System.nanoTime();
+		translator.extract();
+		long extractTime = System.nanoTime() - start;
+		long strings = countProperties(new File(propertiesDir, SRC_LANG));
+		report(parallelism, "extract", extractTime, files, strings, null);
+
+		server.reset();
+		start = System.nanoTime();
+		translator.translate();
+		long translateTime = System.nanoTime() - start;
+		report(parallelism, "translate", translateTime, files * destLangs.size(), server.getTexts(), server);
+
+		start = System.nanoTime();
+		translator.synthesize();
+		long synthesizeTime = System.nanoTime() - start;
+		report(parallelism, "synthesize", synthesizeTime, files * destLangs.size(), strings * destLangs.size(), null);
+
+		report(parallelism, "total", extractTime + translateTime + synthesizeTime, files, strings, null);
+
+		String report = option("report", null);
+		if (report != null) {
+			translator.getMetrics().writeReport(new File(report + "-" + parallelism + ".json"));
+		}
+	}
+
+	private void report(int parallelism, String phase, long nanos, long fileCount, long strings, StubTranslationServer server) {
+		double seconds = nanos / 1e9;
+		out.println(String.format("%-11d %-11s %9d %9d %10.1f %12.1f %9s %9s %12s",
+			parallelism, phase, nanos / 1_000_000, fileCount, fileCount / seconds, strings / seconds,
+			server == null ? "-" : Long.toString(server.getRequests()),
+			server == null ? "-" : Long.toString(server.getFailures()),
+			server == null ? "-" : Long.toString(server.getBilledChars())));
+	}
+
+	private void generateCorpus(File srcDir) throws IOException {
+		TemplateGenerator generator = new TemplateGenerator(
+			Integer.parseInt(option("depth", "2")),
+			Integer.parseInt(option("width", "4")),
+			Double.parseDouble(option("textDensity", "0.8")),
+			Integer.parseInt(option("placeholders", "3")));
+		generator.setSharedTexts(Double.parseDouble(option("sharedTexts", "0")));
+
+		for (int n = 0; n < files; n++) {
+			Path file = srcDir.toPath().resolve("section-" + (n / 50)).resolve("page-" + n + ".html");
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, generator.generate(n));
+		}
+	}
+
+	private static long countProperties(File dir) throws IOException {
+		long result = 0;
+		try (Stream<Path> files = Files.walk(dir.toPath())) {
+			for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".properties"))::iterator) {
+				result += new PropertiesCodec(StandardCharsets.UTF_8).read(file.toFile()).size();
+			}
+		}
+		return result;
+	}
+
+	private static void delete(Path dir) throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+				throw new IllegalArgumentException("Expected option in the form --name=value: " + arg);
+			}
+			int sep = arg.indexOf('=');
+			options.put(arg.substring(2, sep), arg.substring(sep + 1));
+		}
+		new PipelineBenchmark(options).run();
+	}
+
+}
@@ -0,0 +1,100 @@
+package de.haumacher.webtranslate.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.haumacher.webtranslate.extract.PlaceholderCodec;
+
+/**
+ * Benchmarks for decoding placeholders with the {@link PlaceholderCodec}
+ * compared to the regular expression formerly used.
+ *
+ * <p>
+ * Run with <code>-prof gc</code> to compare the allocation rates. The codec
+ * is expected to allocate nothing per decoded text.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceholderBenchmark {
+
+	/**
+	 * The pattern formerly used to find placeholders.
+	 */
+	private static final Pattern MARKUP_PATTERN = Pattern.compile("<(/)?x([1-9]\\d*)>");
+
+	private String text;
+
+	@Setup
+	public void setup() {
+		StringBuilder buffer = new StringBuilder();
+		for (int n = 1; n <= 1000; n++) {
+			buffer.append("Some text <x").append(n).append(">with markup</x").append(n).append("> and more.");
+		}
+		text = buffer.toString();
+	}
+
+	@Benchmark
+	public long codec() {
+		Counter counter = new Counter();
+		PlaceholderCodec.decode(text, counter);
+		return counter.chars + counter.tags;
+	}
+
+	@Benchmark
+	public long regex() {
+		Counter counter = new Counter();
+		Matcher matcher = MARKUP_PATTERN.matcher(text);
+		int pos = 0;
+		while (matcher.find()) {
+			if (matcher.start() > pos) {
+				counter.chars += text.substring(pos, matcher.start()).length();
+			}
+			int id = Integer.parseInt(matcher.group(2));
+			if (matcher.group(1) == null) {
+				counter.startTag(id);
+			} else {
+				counter.endTag(id);
+			}
+			pos = matcher.end();
+		}
+		return counter.chars + counter.tags;
+	}
+
+	private static final class Counter implements PlaceholderCodec.Handler {
+		long chars;
+		long tags;
+
+		@Override
+		public void text(CharSequence source, int start, int end) {
+			chars += end - start;
+		}
+
+		@Override
+		public void startTag(int id) {
+			tags += id;
+		}
+
+		@Override
+		public void endTag(int id) {
+			tags -= id;
+		}
+	}
+
+}
@@ -0,0 +1,152 @@
+package de.haumacher.webtranslate.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.haumacher.webtranslate.extract.PropertiesCodec;
+
+/**
+ * Benchmarks for reading and writing large properties files with the
+ * {@link PropertiesCodec} compared to {@link Properties} and the
+ * <code>PrintWriter</code> based writer formerly used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertiesBenchmark {
+
+	private static final String[] WORDS = {
+		"lorem", "ipsum", "dolor", "sit", "amet", "<x1>consectetur</x1>", "adipiscing", "elit", "sed", "do",
+		"Gr\u00fc\u00dfe", "\u00e0 bient\u00f4t", "\u20ac", "\u043f\u0440\u0438\u0432\u0435\u0442", "\u4f60\u597d",
+	};
+
+	/**
+	 * Number of properties in the file.
+	 */
+	@Param({ "1000", "10000" })
+	public int entries;
+
+	/**
+	 * Encoding of the properties file.
+	 */
+	@Param({ "ISO-8859-1", "UTF-8" })
+	public String charset;
+
+	private Charset encoding;
+	private Map<String, String> properties;
+	private byte[] file;
+
+	@Setup
+	public void setup() throws IOException {
+		encoding = Charset.forName(charset);
+
+		Random rnd = new Random(42);
+		properties = new HashMap<>();
+		for (int n = 0; n < entries; n++) {
+			StringBuilder text = new StringBuilder();
+			for (int k = 0, cnt = 5 + rnd.nextInt(20); k < cnt; k++) {
+				if (k > 0) {
+					text.append(' ');
+				}
+				text.append(WORDS[rnd.nextInt(WORDS.length)]);
+			}
+			properties.put(String.format("t%05d", n), text.toString());
+		}
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		new PropertiesCodec(encoding).write(buffer, properties);
+		file = buffer.toByteArray();
+	}
+
+	@Benchmark
+	public Map<String, String> readCodec() throws IOException {
+		return new PropertiesCodec(encoding).read(new ByteArrayInputStream(file));
+	}
+
+	/**
+	 * Loading formerly used, {@link Properties} copied to a {@link HashMap}.
+	 */
+	@Benchmark
+	public Map<String, String> readProperties() throws IOException {
+		Properties loaded = new Properties();
+		loaded.load(new InputStreamReader(new ByteArrayInputStream(file), encoding));
+
+		Map<String, String> result = new HashMap<>();
+		for (String key : loaded.stringPropertyNames()) {
+			result.put(key, loaded.getProperty(key));
+		}
+		return result;
+	}
+
+	@Benchmark
+	public void writeCodec() throws IOException {
+		new PropertiesCodec(encoding).write(OutputStream.nullOutputStream(), properties);
+	}
+
+	/**
+	 * The writer formerly used.
+	 */
+	@Benchmark
+	public void writePrintWriter() {
+		CharsetEncoder encoder = encoding.newEncoder();
+		try (PrintWriter w = new PrintWriter(new OutputStreamWriter(OutputStream.nullOutputStream(), encoding))) {
+			List<String> keysSorted = properties.keySet().stream().sorted().toList();
+			for (String id : keysSorted) {
+				printEscaped(w, encoder, id);
+				w.print("=");
+				printEscaped(w, encoder, properties.get(id));
+				w.println();
+			}
+			w.println();
+		}
+	}
+
+	private static void printEscaped(PrintWriter w, CharsetEncoder encoder, String str) {
+		if (encoder.canEncode(str)) {
+			w.print(str);
+			return;
+		}
+		for (int n = 0, length = str.length(); n < length; n++) {
+			char ch = str.charAt(n);
+			if (encoder.canEncode(ch)) {
+				w.print(ch);
+			} else {
+				w.print("\\u");
+				String hex = Integer.toHexString(ch);
+				for (int p = hex.length(); p < 4; p++) {
+					w.print('0');
+				}
+				w.print(hex);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,195 @@
+package de.haumacher.webtranslate.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the DeepL text translation API.
+ *
+ * <p>
+ * The server answers <code>POST /v2/translate</code> requests. A translation
+ * is the source text prefixed with the upper-case target language, so all
+ * <code>&lt;xN&gt;</code> placeholders survive. Each request is delayed by the
+ * configured latency. A configurable fraction of requests fails with
+ * <code>503 Service Unavailable</code>, which the DeepL client retries.
+ * </p>
+ */
+public class StubTranslationServer implements AutoCloseable {
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private final long latencyMillis;
+	private final double failureRate;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong texts = new AtomicLong();
+	private final AtomicLong billedChars = new AtomicLong();
+
+	/**
+	 * Creates and starts a {@link StubTranslationServer} on a free local port.
+	 *
+	 * @param latencyMillis The time to wait before answering each request.
+	 * @param failureRate   The fraction of requests that fail (between 0 and 1).
+	 */
+	public StubTranslationServer(long latencyMillis, double failureRate) throws IOException {
+		this.latencyMillis = latencyMillis;
+		this.failureRate = failureRate;
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/v2/translate", this::handleTranslate);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * The URL to pass to the translation client.
+	 */
+	public String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * The number of requests received, including failed ones.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * The number of requests answered with an error.
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * The number of texts translated.
+	 */
+	public long getTexts() {
+		return texts.get();
+	}
+
+	/**
+	 * The number of characters DeepL would have billed.
+	 */
+	public long getBilledChars() {
+		return billedChars.get();
+	}
+
+	/**
+	 * Resets all counters.
+	 */
+	public void reset() {
+		requests.set(0);
+		failures.set(0);
+		texts.set(0);
+		billedChars.set(0);
+	}
+
+	private void handleTranslate(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			requests.incrementAndGet();
+			String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+
+			if (latencyMillis > 0) {
+				try {
+					Thread.sleep(latencyMillis);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+				failures.incrementAndGet();
+				send(exchange, 503, "{\"message\":\"Simulated failure.\"}");
+				return;
+			}
+
+			List<String> textParams = new ArrayList<>();
+			String targetLang = "";
+			for (String param : body.split("&")) {
+				int sep = param.indexOf('=');
+				if (sep < 0) {
+					continue;
+				}
+				String name = URLDecoder.decode(param.substring(0, sep), StandardCharsets.UTF_8);
+				String value = URLDecoder.decode(param.substring(sep + 1), StandardCharsets.UTF_8);
+				if (name.equals("text")) {
+					textParams.add(value);
+				} else if (name.equals("target_lang")) {
+					targetLang = value.toUpperCase();
+				}
+			}
+
+			StringBuilder json = new StringBuilder("{\"translations\":[");
+			for (int n = 0, cnt = textParams.size(); n < cnt; n++) {
+				String text = textParams.get(n);
+				int chars = text.codePointCount(0, text.length());
+				billedChars.addAndGet(chars);
+
+				if (n > 0) {
+					json.append(',');
+				}
+				json.append("{\"detected_source_language\":\"EN\",\"text\":");
+				appendJsonString(json, "[" + targetLang + "] " + text);
+				json.append(",\"billed_characters\":").append(chars).append('}');
+			}
+			json.append("]}");
+			texts.addAndGet(textParams.size());
+
+			send(exchange, 200, json.toString());
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] response = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, response.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(response);
+		}
+	}
+
+	private static void appendJsonString(StringBuilder out, String text) {
+		out.append('"');
+		for (int n = 0, len = text.length(); n < len; n++) {
+			char ch = text.charAt(n);
+			switch (ch) {
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				default:
+					if (ch < 0x20) {
+						out.append(String.format("\\u%04x", (int) ch));
+					} else {
+						out.append(ch);
+					}
+			}
+		}
+		out.append('"');
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,160 @@
+package de.haumacher.webtranslate.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import de.haumacher.webtranslate.extract.TemplateParser;
+import de.haumacher.webtranslate.extract.TemplateTree;
+
+/**
+ * Creates synthetic Thymeleaf templates of configurable shape.
+ *
+ * <p>
+ * A template consists of nested <code>div</code> elements. Each
+ * <code>div</code> above the given depth has the given number of children. The
+ * innermost elements are paragraphs. A paragraph contains text with the given
+ * probability, otherwise it only contains a Thymeleaf expression. Each
+ * paragraph with text contains the given number of inline markup elements that
+ * are represented as placeholders in the extracted text.
+ * </p>
+ */
+public class TemplateGenerator {
+
+	private static final String[] WORDS = {
+		"lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do",
+		"eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua",
+	};
+
+	/**
+	 * Texts that appear in many templates, e.g. labels of buttons and footer sentences.
+	 */
+	private static final String[] SHARED = {
+		"Save", "Cancel", "Learn more", "Back to the overview", "Sign in", "Contact us",
+		"All rights reserved. Use of this site is subject to our terms and privacy policy.",
+	};
+
+	private static final String[] INLINE = { "a", "b", "i", "em", "strong", "span", "code" };
+
+	private final int depth;
+	private final int width;
+	private final double textDensity;
+	private final int placeholders;
+	private double sharedTexts;
+
+	private Random rnd;
+
+	/**
+	 * Creates a {@link TemplateGenerator}.
+	 *
+	 * @param depth        The nesting depth of block elements.
+	 * @param width        The number of child elements of each block element.
+	 * @param textDensity  The fraction of paragraphs that contain text (between 0 and 1).
+	 * @param placeholders The number of inline markup elements in each paragraph with text.
+	 */
+	public TemplateGenerator(int depth, int width, double textDensity, int placeholders) {
+		this.depth = depth;
+		this.width = width;
+		this.textDensity = textDensity;
+		this.placeholders = placeholders;
+	}
+
+	/**
+	 * The fraction of paragraphs with text (between 0 and 1) that contain one of
+	 * a few texts shared between all templates instead of random text. Default
+	 * is 0.
+	 */
+	public void setSharedTexts(double sharedTexts) {
+		this.sharedTexts = sharedTexts;
+	}
+
+	/**
+	 * Creates a template. The same seed always produces the same template.
+	 */
+	public String generate(long seed) {
+		rnd = new Random(seed);
+		StringBuilder out = new StringBuilder();
+		out.append("<!DOCTYPE html>\n");
+		out.append("<html xmlns:th=\"http://www.thymeleaf.org\">\n<head><title>Synthetic page</title></head>\n<body>\n");
+		block(out, depth, 1);
+		out.append("</body>\n</html>\n");
+		return out.toString();
+	}
+
+	private void block(StringBuilder out, int level, int indent) {
+		indent(out, indent);
+		if (level == 0) {
+			paragraph(out);
+			return;
+		}
+
+		out.append("<div class=\"level-").append(level).append('"');
+		if (rnd.nextDouble() < textDensity / 4) {
+			out.append(" title=\"");
+			words(out, 3);
+			out.append('"');
+		}
+		out.append(">\n");
+		for (int n = 0; n < width; n++) {
+			block(out, level - 1, indent + 1);
+		}
+		indent(out, indent);
+		out.append("</div>\n");
+	}
+
+	private static void indent(StringBuilder out, int indent) {
+		for (int n = 0; n < indent; n++) {
+			out.append("  ");
+		}
+	}
+
+	private void paragraph(StringBuilder out) {
+		if (rnd.nextDouble() >= textDensity) {
+			out.append("<p><span th:text=\"${value}\"></span></p>\n");
+			return;
+		}
+
+		out.append("<p>");
+		if (sharedTexts > 0 && rnd.nextDouble() < sharedTexts) {
+			out.append(SHARED[rnd.nextInt(SHARED.length)]).append("</p>\n");
+			return;
+		}
+		words(out, 4);
+		for (int n = 0; n < placeholders; n++) {
+			String tag = INLINE[rnd.nextInt(INLINE.length)];
+			out.append(' ').append('<').append(tag);
+			if (tag.equals("a")) {
+				out.append(" th:href=\"@{/page-").append(n).append("}\"");
+			}
+			out.append('>');
+			words(out, 2);
+			out.append("</").append(tag).append("> ");
+			words(out, 3);
+		}
+		out.append(".</p>\n");
+	}
+
+	private void words(StringBuilder out, int count) {
+		for (int n = 0; n < count; n++) {
+			if (n > 0) {
+				out.append(' ');
+			}
+			out.append(WORDS[rnd.nextInt(WORDS.length)]);
+		}
+	}
+
+	/**
+	 * Parses a template created by {@link #generate(long)} with the default
+	 * {@link TemplateParser#DOM parser} of extraction.
+	 */
+	public static TemplateTree parse(String html) throws IOException, SAXException, ParserConfigurationException {
+		return TemplateParser.DOM.parseTree(new InputSource(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8))));
+	}
+
+}
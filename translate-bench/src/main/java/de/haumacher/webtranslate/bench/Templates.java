@@ -0,0 +1,130 @@
+package de.haumacher.webtranslate.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.IntStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xml.sax.SAXException;
+
+import de.haumacher.webtranslate.extract.HtmlAnalyzer;
+import de.haumacher.webtranslate.extract.TemplateTree;
+import de.haumacher.webtranslate.extract.TextIndex;
+import de.haumacher.webtranslate.synthesize.TemplateSkeleton;
+
+/**
+ * Benchmark state with a synthetic template in all processing stages.
+ */
+@State(Scope.Benchmark)
+public class Templates {
+
+	/**
+	 * Nesting depth of block elements.
+	 */
+	@Param({ "2", "4" })
+	public int depth;
+
+	/**
+	 * Number of children of each block element.
+	 */
+	@Param({ "4", "8" })
+	public int width;
+
+	/**
+	 * Fraction of paragraphs that contain text.
+	 */
+	@Param({ "0.3", "1.0" })
+	public double textDensity;
+
+	/**
+	 * Number of inline elements in each paragraph with text.
+	 */
+	@Param({ "0", "5" })
+	public int placeholders;
+
+	/**
+	 * The generated source template.
+	 */
+	public byte[] html;
+
+	/**
+	 * The source template before text IDs are assigned.
+	 */
+	public TemplateTree source;
+
+	/**
+	 * The source template with text IDs assigned.
+	 */
+	public TemplateTree analyzed;
+
+	/**
+	 * The index of {@link #analyzed}.
+	 */
+	public TextIndex index;
+
+	/**
+	 * The elements of {@link #analyzed} that have a text ID.
+	 */
+	public int[] textElements;
+
+	/**
+	 * The extracted texts indexed by text ID.
+	 */
+	public Map<String, String> textById;
+
+	/**
+	 * Simulated translations of {@link #textById}.
+	 */
+	public Map<String, String> translated;
+
+	/**
+	 * The compiled form of {@link #analyzed}.
+	 */
+	public TemplateSkeleton skeleton;
+
+	@Setup
+	public void setUp() throws IOException, SAXException, ParserConfigurationException {
+		String template = new TemplateGenerator(depth, width, textDensity, placeholders).generate(42);
+		html = template.getBytes(StandardCharsets.UTF_8);
+		source = TemplateGenerator.parse(template);
+
+		analyzed = TemplateGenerator.parse(template);
+		HtmlAnalyzer analyzer = new HtmlAnalyzer(analyzed);
+		analyzer.analyze();
+		textById = analyzer.getTextById();
+		index = TextIndex.build(analyzed, analyzed.getRoot());
+		textElements = textElements(analyzed);
+
+		translated = new HashMap<>();
+		for (Entry<String, String> entry : textById.entrySet()) {
+			translated.put(entry.getKey(), translate(entry.getValue()));
+		}
+
+		skeleton = TemplateSkeleton.compile(analyzed);
+	}
+
+	/**
+	 * Simulates a translation that keeps all placeholders.
+	 */
+	private static String translate(String text) {
+		return text.replace('e', '\u00e9').replace('o', '\u00f6');
+	}
+
+	/**
+	 * All elements with a text ID in the given tree.
+	 */
+	public static int[] textElements(TemplateTree tree) {
+		return IntStream.range(0, tree.size())
+			.filter(node -> tree.isElement(node) && !tree.getAttribute(node, HtmlAnalyzer.ID_ATTR).isEmpty())
+			.toArray();
+	}
+
+}
@@ -0,0 +1,55 @@
+package de.haumacher.webtranslate.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.haumacher.webtranslate.extract.HtmlAnalyzer;
+import de.haumacher.webtranslate.extract.TemplateTree;
+import de.haumacher.webtranslate.extract.TextExtractor;
+import de.haumacher.webtranslate.extract.TextIndex;
+import de.haumacher.webtranslate.extract.TextInjector;
+
+/**
+ * Benchmarks for {@link TextExtractor#extract()} and
+ * {@link TextInjector#inject(String)} applied to all elements with a text ID of
+ * a template.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextBenchmark {
+
+	@Benchmark
+	public void extract(Templates templates, Blackhole blackhole) {
+		TemplateTree tree = templates.analyzed;
+		for (int element : templates.textElements) {
+			if (templates.textById.containsKey(tree.getAttribute(element, HtmlAnalyzer.ID_ATTR))) {
+				blackhole.consume(new TextExtractor(tree, element, templates.index).extract());
+			}
+		}
+	}
+
+	@Benchmark
+	public TemplateTree inject(Templates templates) {
+		TemplateTree tree = templates.analyzed.copy();
+		TextIndex index = TextIndex.build(tree, tree.getRoot());
+		for (int element : templates.textElements) {
+			String text = templates.translated.get(tree.getAttribute(element, HtmlAnalyzer.ID_ATTR));
+			if (text != null) {
+				new TextInjector(tree, element, index).inject(text);
+			}
+		}
+		return tree;
+	}
+
+}
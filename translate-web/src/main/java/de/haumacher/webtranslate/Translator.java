@@ -4,8 +4,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -13,19 +16,64 @@ import org.xml.sax.SAXException;
 
 import com.deepl.api.DeepLException;
 
+import de.haumacher.webtranslate.build.BuildManifest;
+import de.haumacher.webtranslate.build.TemplateWatcher;
+import de.haumacher.webtranslate.catalog.CatalogWriter;
 import de.haumacher.webtranslate.extract.PropertiesExtractor;
+import de.haumacher.webtranslate.extract.TemplateParser;
+import de.haumacher.webtranslate.metrics.Metrics;
 import de.haumacher.webtranslate.synthesize.TranslationSynthesizer;
 import de.haumacher.webtranslate.translate.NameStrategy;
 import de.haumacher.webtranslate.translate.PropertiesTranslator;
+import de.haumacher.webtranslate.translate.TranslationBackend;
+import de.haumacher.webtranslate.translate.TranslationJournal;
+import de.haumacher.webtranslate.translate.TranslationMemory;
+import de.haumacher.webtranslate.translate.TranslationPlan;
 
 public class Translator {
 
+	/**
+	 * Name of the translation memory file in the {@link #setStateDir(File) state directory}.
+	 */
+	public static final String MEMORY_FILE = "translation-memory.log";
+
+	/**
+	 * Name of the build manifest file in the {@link #setStateDir(File) state directory}.
+	 */
+	public static final String MANIFEST_FILE = "build-manifest.txt";
+
 	private final String apikey;
 	private final String srcLang;
 	private final List<String> destLangs;
 	private final File propertiesDir;
 	private final File templateDir;
 	private Charset propertiesCharset;
+	private int parallelism = 1;
+	private String serverUrl;
+	private TranslationBackend backend;
+	private long debounceMillis = TemplateWatcher.DEFAULT_DEBOUNCE_MILLIS;
+	private boolean writeCatalogs;
+	private boolean quiet;
+	private TemplateParser parser = TemplateParser.DOM;
+	private long charBudget = Long.MAX_VALUE;
+	private File reportFile;
+	private File stateDir;
+	private BuildManifest manifest;
+	private final Metrics metrics = new Metrics();
+
+	/**
+	 * Whether the translation memory and journal are kept open, see {@link #watch()}.
+	 */
+	private boolean watching;
+	private TranslationMemory memory;
+	private TranslationJournal journal;
+
+	/**
+	 * Instances kept between updates while {@link #watch() watching}.
+	 */
+	private PropertiesExtractor extractor;
+	private PropertiesTranslator translator;
+	private TranslationSynthesizer synthesizer;
 
 	public Translator(String apikey, String srcLang, List<String> destLangs, File propertiesDir, File templateDir, Charset propertiesCharset) {
 		this.apikey = apikey;
@@ -36,10 +84,386 @@ public class Translator {
 		this.propertiesCharset = propertiesCharset;
 	}
 
-	private void run() throws ParserConfigurationException, SAXException, IOException, DeepLException, InterruptedException {
-		new PropertiesExtractor(new File(propertiesDir, srcLang), new File(templateDir, srcLang), propertiesCharset).process();
-		new PropertiesTranslator(apikey, srcLang, destLangs, propertiesDir, null, NameStrategy.LANG_TAG_DIR, propertiesCharset).translate();
-		new TranslationSynthesizer(templateDir, propertiesDir, srcLang, destLangs, propertiesCharset).synthesize();
+	/**
+	 * The number of templates extracted and synthesized concurrently and the
+	 * number of concurrent requests to the translation service.
+	 *
+	 * @see PropertiesExtractor#setParallelism(int)
+	 * @see PropertiesTranslator#setConcurrency(int)
+	 * @see TranslationSynthesizer#setParallelism(int)
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * URL of the translation service, <code>null</code> to use the default DeepL server.
+	 */
+	public void setServerUrl(String serverUrl) {
+		this.serverUrl = serverUrl;
+	}
+
+	/**
+	 * The service to translate texts with, <code>null</code> to use DeepL with
+	 * the API key given in the constructor.
+	 */
+	public void setBackend(TranslationBackend backend) {
+		this.backend = backend;
+	}
+
+	/**
+	 * The time without further template changes before processing starts in {@link #watch()} mode.
+	 */
+	public void setDebounceMillis(long debounceMillis) {
+		this.debounceMillis = debounceMillis;
+	}
+
+	/**
+	 * Whether to write a binary {@link de.haumacher.webtranslate.catalog.Catalog} for each target language after translating.
+	 */
+	public void setWriteCatalogs(boolean writeCatalogs) {
+		this.writeCatalogs = writeCatalogs;
+	}
+
+	/**
+	 * The maximum number of characters to send to the translation service in each {@link #translate()}.
+	 *
+	 * @see PropertiesTranslator#setCharBudget(long)
+	 */
+	public void setCharBudget(long charBudget) {
+		this.charBudget = charBudget;
+	}
+
+	/**
+	 * Whether to suppress progress messages. Warnings and errors are still reported.
+	 */
+	public void setQuiet(boolean quiet) {
+		this.quiet = quiet;
+	}
+
+	/**
+	 * The parser for reading templates during extraction and synthesis.
+	 */
+	public void setParser(TemplateParser parser) {
+		this.parser = parser;
+	}
+
+	/**
+	 * File to write a JSON report of the collected {@link #getMetrics() metrics}
+	 * to after each {@link #run()} and {@link #update(List)}, <code>null</code>
+	 * to not write a report.
+	 */
+	public void setReportFile(File reportFile) {
+		this.reportFile = reportFile;
+	}
+
+	/**
+	 * Directory to keep the state between runs in, <code>null</code> to keep no state.
+	 *
+	 * <p>
+	 * The state consists of the {@link BuildManifest build manifest} to skip
+	 * unchanged templates, the {@link TranslationMemory translation memory} to
+	 * reuse translations of texts that have been translated before, and the
+	 * {@link TranslationJournal translation journal} to resume aborted runs.
+	 * Without a state directory, all templates are processed and all missing
+	 * translations are requested in every run.
+	 * </p>
+	 *
+	 * <p>
+	 * The state files are not meant to be committed together with the
+	 * translations, so the state directory is typically a directory ignored by
+	 * version control, e.g. below the build output.
+	 * </p>
+	 */
+	public void setStateDir(File stateDir) {
+		this.stateDir = stateDir;
+	}
+
+	/**
+	 * The measurements collected in all phases.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Runs all phases: {@link #extract()}, {@link #translate()}, and {@link #synthesize()}.
+	 */
+	public void run() throws ParserConfigurationException, SAXException, IOException, DeepLException, InterruptedException {
+		try {
+			extract();
+			translate();
+			synthesize();
+		} finally {
+			writeReport();
+		}
+	}
+
+	/**
+	 * Assigns text IDs to the source templates and extracts their texts to the source properties.
+	 */
+	public void extract() throws ParserConfigurationException, SAXException, IOException {
+		try {
+			extractor().process();
+		} finally {
+			saveManifest();
+		}
+	}
+
+	/**
+	 * Translates the source properties to all target languages.
+	 */
+	public void translate() throws IOException, DeepLException, InterruptedException {
+		translate(null);
+	}
+
+	/**
+	 * Translates the given source properties, or all if <code>null</code>.
+	 */
+	private void translate(List<File> sourceProperties) throws IOException, DeepLException, InterruptedException {
+		PropertiesTranslator translator = translator();
+		if (watching) {
+			translate(translator, sourceProperties);
+		} else {
+			try (TranslationMemory memory = openMemory(); TranslationJournal journal = openJournal()) {
+				translator.setTranslationMemory(memory);
+				translator.setJournal(journal);
+				translate(translator, sourceProperties);
+			} finally {
+				translator.setTranslationMemory(null);
+				translator.setJournal(null);
+			}
+		}
+
+		if (writeCatalogs) {
+			CatalogWriter catalogWriter = new CatalogWriter(propertiesCharset);
+			for (String destLang : destLangs) {
+				catalogWriter.write(propertiesDir, destLang);
+			}
+		}
+	}
+
+	/**
+	 * Computes what {@link #translate()} would send to the translation service
+	 * without contacting it. Call {@link #extract()} before to plan for the
+	 * current templates.
+	 */
+	public TranslationPlan plan() throws IOException {
+		PropertiesTranslator translator = translator();
+		if (watching) {
+			return translator.plan();
+		}
+		try (TranslationMemory memory = openMemory(); TranslationJournal journal = openJournal()) {
+			translator.setTranslationMemory(memory);
+			translator.setJournal(journal);
+			return translator.plan();
+		} finally {
+			translator.setTranslationMemory(null);
+			translator.setJournal(null);
+		}
+	}
+
+	private static void translate(PropertiesTranslator translator, List<File> sourceProperties) throws IOException, DeepLException, InterruptedException {
+		if (sourceProperties == null) {
+			translator.translate();
+		} else {
+			translator.translate(sourceProperties);
+		}
+	}
+
+	/**
+	 * Creates the templates for all target languages from the source templates and the translated properties.
+	 */
+	public void synthesize() throws ParserConfigurationException, SAXException, IOException {
+		try {
+			synthesizer().synthesize();
+		} finally {
+			saveManifest();
+		}
+	}
+
+	/**
+	 * Runs all phases only for the given source templates, e.g. after they have been changed.
+	 *
+	 * <p>
+	 * Templates that have not changed since they were last extracted are
+	 * skipped. In particular, this ignores the changes made to the source
+	 * templates by the extraction itself.
+	 * </p>
+	 *
+	 * @param templates Templates in the source language directory.
+	 * @return The templates that were actually processed.
+	 */
+	public List<File> update(List<File> templates) throws ParserConfigurationException, SAXException, IOException, DeepLException, InterruptedException {
+		List<File> extracted;
+		try {
+			try {
+				extracted = extractor().process(templates);
+			} finally {
+				saveManifest();
+			}
+			if (extracted.isEmpty()) {
+				return extracted;
+			}
+
+			List<File> sourceProperties = new ArrayList<>(extracted.size());
+			for (File template : extracted) {
+				sourceProperties.add(extractor().propertiesFile(template));
+			}
+			translate(sourceProperties);
+
+			try {
+				synthesizer().synthesize(extracted);
+			} finally {
+				saveManifest();
+			}
+		} finally {
+			writeReport();
+		}
+		return extracted;
+	}
+
+	private void writeReport() {
+		if (reportFile == null) {
+			return;
+		}
+		try {
+			metrics.writeReport(reportFile);
+		} catch (IOException ex) {
+			System.err.println("WARN: Failed to write run report '" + reportFile.getPath() + "': " + ex);
+		}
+	}
+
+	/**
+	 * Runs all phases and then keeps processing changed source templates until interrupted.
+	 *
+	 * <p>
+	 * The manifest, the translation memory, and the connection to the
+	 * translation service are kept open between updates. A burst of changes is
+	 * processed as a whole after no further change has been seen for the
+	 * {@link #setDebounceMillis(long) debounce delay}. A failed update is
+	 * reported and retried together with the next change.
+	 * </p>
+	 */
+	public void watch() throws ParserConfigurationException, SAXException, IOException, DeepLException, InterruptedException {
+		try (TranslationMemory memory = openMemory();
+				TranslationJournal journal = openJournal();
+				TemplateWatcher watcher = new TemplateWatcher(new File(templateDir, srcLang), debounceMillis)) {
+			this.watching = true;
+			this.memory = memory;
+			this.journal = journal;
+			translator().setTranslationMemory(memory);
+			translator().setJournal(journal);
+
+			run();
+			if (!quiet) {
+				System.err.println("Watching for changes: " + new File(templateDir, srcLang).getPath());
+			}
+
+			Set<File> pending = new LinkedHashSet<>();
+			while (true) {
+				pending.addAll(watcher.next());
+				List<File> templates = new ArrayList<>(pending);
+
+				// The report describes the latest update only.
+				metrics.reset();
+				long start = System.nanoTime();
+				try {
+					List<File> updated = update(templates);
+					pending.clear();
+					if (!updated.isEmpty() && !quiet) {
+						System.err.println("Updated " + updated.size() + " templates in " + (System.nanoTime() - start) / 1_000_000 + "ms.");
+					}
+				} catch (IOException | ParserConfigurationException | SAXException | DeepLException | RuntimeException ex) {
+					System.err.println("ERROR: Update failed, retrying with the next change: " + ex);
+					
+					// Force processing, even if the extraction has succeeded.
+					for (File template : templates) {
+						extractor().invalidate(template);
+					}
+				}
+			}
+		} finally {
+			watching = false;
+			memory = null;
+			journal = null;
+			if (translator != null) {
+				translator.setTranslationMemory(null);
+				translator.setJournal(null);
+			}
+		}
+	}
+
+	private TranslationMemory openMemory() throws IOException {
+		if (stateDir == null) {
+			return null;
+		}
+		return new TranslationMemory(new File(stateDir, MEMORY_FILE), TranslationMemory.DEFAULT_MAX_ENTRIES);
+	}
+
+	private TranslationJournal openJournal() throws IOException {
+		if (stateDir == null) {
+			return null;
+		}
+		return new TranslationJournal(new File(stateDir, TranslationJournal.DEFAULT_FILE_NAME));
+	}
+
+	private PropertiesExtractor extractor() throws IOException {
+		if (extractor == null) {
+			extractor = new PropertiesExtractor(new File(propertiesDir, srcLang), new File(templateDir, srcLang), propertiesCharset);
+			extractor.setParallelism(parallelism);
+			extractor.setManifest(manifest());
+			extractor.setMetrics(metrics);
+			extractor.setQuiet(quiet);
+			extractor.setParser(parser);
+		}
+		return extractor;
+	}
+
+	private PropertiesTranslator translator() {
+		if (translator == null) {
+			if (backend != null) {
+				translator = new PropertiesTranslator(backend, srcLang, destLangs, propertiesDir, null, NameStrategy.LANG_TAG_DIR, propertiesCharset);
+			} else {
+				translator = new PropertiesTranslator(apikey, srcLang, destLangs, propertiesDir, null, NameStrategy.LANG_TAG_DIR, propertiesCharset);
+			}
+			translator.setConcurrency(parallelism);
+			translator.setCharBudget(charBudget);
+			translator.setMetrics(metrics);
+			translator.setQuiet(quiet);
+			if (serverUrl != null && backend == null) {
+				translator.setServerUrl(serverUrl);
+			}
+		}
+		return translator;
+	}
+
+	private TranslationSynthesizer synthesizer() throws IOException {
+		if (synthesizer == null) {
+			synthesizer = new TranslationSynthesizer(templateDir, propertiesDir, srcLang, destLangs, propertiesCharset);
+			synthesizer.setParallelism(parallelism);
+			synthesizer.setManifest(manifest());
+			synthesizer.setMetrics(metrics);
+			synthesizer.setQuiet(quiet);
+			synthesizer.setParser(parser);
+		}
+		return synthesizer;
+	}
+
+	/**
+	 * The build manifest, <code>null</code> if no {@link #setStateDir(File) state} is kept.
+	 */
+	private BuildManifest manifest() throws IOException {
+		if (manifest == null && stateDir != null) {
+			manifest = new BuildManifest(new File(stateDir, MANIFEST_FILE));
+		}
+		return manifest;
+	}
+
+	private void saveManifest() throws IOException {
+		if (manifest != null) {
+			manifest.save();
+		}
 	}
 	
 	public static void main(String[] args) throws ParserConfigurationException, SAXException, IOException, DeepLException, InterruptedException {
@@ -49,8 +473,22 @@ public class Translator {
 		File propertiesDir = new File(args[3]);
 		File templateDir = new File(args[4]);
 		Charset propertiesCharset = args.length > 5 ? Charset.forName(args[5]) : StandardCharsets.ISO_8859_1;
+		int parallelism = args.length > 6 ? Integer.parseInt(args[6]) : 1;
+		boolean watch = args.length > 7 && Boolean.parseBoolean(args[7]);
+		boolean quiet = args.length > 8 && Boolean.parseBoolean(args[8]);
+		File reportFile = args.length > 9 && !args[9].isEmpty() ? new File(args[9]) : null;
+		File stateDir = args.length > 10 ? new File(args[10]) : null;
 		
-		new Translator(apikey, srcLang, destLangs, propertiesDir, templateDir, propertiesCharset).run();
+		Translator translator = new Translator(apikey, srcLang, destLangs, propertiesDir, templateDir, propertiesCharset);
+		translator.setParallelism(parallelism);
+		translator.setQuiet(quiet);
+		translator.setReportFile(reportFile);
+		translator.setStateDir(stateDir);
+		if (watch) {
+			translator.watch();
+		} else {
+			translator.run();
+		}
 	}
 	
 }
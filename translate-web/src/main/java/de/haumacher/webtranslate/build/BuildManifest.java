@@ -0,0 +1,227 @@
+package de.haumacher.webtranslate.build;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.haumacher.webtranslate.io.AtomicFileOutputStream;
+
+/**
+ * Record of the files involved in each processing step of a previous run.
+ *
+ * <p>
+ * A step (e.g. extracting a single template, or synthesizing a single template
+ * for a single language) is identified by a name. For each step, the content
+ * hashes of all files it read or wrote are recorded. If none of these files has
+ * changed since, the step can be skipped.
+ * </p>
+ *
+ * <p>
+ * To avoid reading unchanged files, the size and modification time of each
+ * file is recorded together with its hash. If both are unchanged, the file is
+ * considered unchanged without computing its hash again. This is only safe, if
+ * the file was last modified well before its hash was computed: A file that is
+ * changed again within the resolution of file timestamps may keep its size and
+ * modification time. Therefore, the hash of a file modified shortly before its
+ * hash was computed is not trusted and computed again when the file is checked.
+ * </p>
+ *
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class BuildManifest {
+
+	/**
+	 * The coarsest resolution of file modification times to expect, e.g. on FAT file systems.
+	 */
+	static final long TIMESTAMP_RESOLUTION_MILLIS = 2000;
+
+	private static final String FILE_RECORD = "F";
+	private static final String STEP_RECORD = "S";
+
+	private final File file;
+	private final Path baseDir;
+
+	private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, String>> steps = new ConcurrentHashMap<>();
+
+	/**
+	 * Loads the manifest from the given file.
+	 *
+	 * @param file The manifest file. If it does not exist, all steps are considered outdated.
+	 */
+	public BuildManifest(File file) throws IOException {
+		this.file = file;
+		this.baseDir = file.getAbsoluteFile().getParentFile().toPath();
+
+		if (file.exists()) {
+			load();
+		}
+	}
+
+	private void load() throws IOException {
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] parts = line.split("\t");
+				if (parts.length == 6 && FILE_RECORD.equals(parts[0])) {
+					fingerprints.put(parts[1], new Fingerprint(Long.parseLong(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4]), parts[5]));
+				} else if (parts.length == 4 && STEP_RECORD.equals(parts[0])) {
+					steps.computeIfAbsent(parts[1], x -> new ConcurrentHashMap<>()).put(parts[2], parts[3]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Whether none of the given files has changed since the given step was recorded.
+	 *
+	 * @param step  The name of the processing step.
+	 * @param files All files read and written by the step.
+	 */
+	public boolean isUpToDate(String step, List<File> files) throws IOException {
+		Map<String, String> recorded = steps.get(step);
+		if (recorded == null || recorded.size() != files.size()) {
+			return false;
+		}
+		for (File file : files) {
+			String hash = recorded.get(key(file));
+			if (hash == null || !hash.equals(hash(file))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records the current state of the given files for the given step.
+	 *
+	 * @param step  The name of the processing step.
+	 * @param files All files read and written by the step.
+	 */
+	public void record(String step, List<File> files) throws IOException {
+		Map<String, String> state = new ConcurrentHashMap<>();
+		for (File file : files) {
+			String hash = hash(file);
+			if (hash != null) {
+				state.put(key(file), hash);
+			}
+		}
+		steps.put(step, state);
+	}
+
+	/**
+	 * Forgets the given step, so that it is considered outdated in the next run.
+	 */
+	public void invalidate(String step) {
+		steps.remove(step);
+	}
+
+	/**
+	 * The content hash of the given file, <code>null</code> if the file does not exist.
+	 */
+	private String hash(File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		String key = key(file);
+		long size = file.length();
+		long modified = file.lastModified();
+		Fingerprint fingerprint = fingerprints.get(key);
+		if (fingerprint != null && fingerprint.size() == size && fingerprint.modified() == modified && !fingerprint.isRacy()) {
+			return fingerprint.hash();
+		}
+
+		long hashed = System.currentTimeMillis();
+		String hash = computeHash(file);
+		fingerprints.put(key, new Fingerprint(size, modified, hashed, hash));
+		return hash;
+	}
+
+	private static String computeHash(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 not supported.", ex);
+		}
+
+		byte[] buffer = new byte[8192];
+		try (InputStream in = new FileInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+
+		StringBuilder result = new StringBuilder();
+		for (byte b : digest.digest()) {
+			result.append(Character.forDigit((b >> 4) & 0xF, 16));
+			result.append(Character.forDigit(b & 0xF, 16));
+		}
+		return result.toString();
+	}
+
+	private String key(File file) {
+		return baseDir.relativize(file.getAbsoluteFile().toPath().normalize()).toString().replace('\\', '/');
+	}
+
+	/**
+	 * Writes the manifest back to its file.
+	 */
+	public synchronized void save() throws IOException {
+		Map<String, Fingerprint> used = new HashMap<>();
+		for (Map<String, String> state : steps.values()) {
+			for (String key : state.keySet()) {
+				Fingerprint fingerprint = fingerprints.get(key);
+				if (fingerprint != null) {
+					used.put(key, fingerprint);
+				}
+			}
+		}
+
+		StringBuilder out = new StringBuilder();
+		for (Entry<String, Fingerprint> entry : used.entrySet()) {
+			Fingerprint fingerprint = entry.getValue();
+			out.append(FILE_RECORD + "\t" + entry.getKey() + "\t" + fingerprint.size() + "\t" + fingerprint.modified() + "\t" + fingerprint.hashed() + "\t" + fingerprint.hash() + "\n");
+		}
+		for (Entry<String, Map<String, String>> step : steps.entrySet()) {
+			for (Entry<String, String> entry : step.getValue().entrySet()) {
+				out.append(STEP_RECORD + "\t" + step.getKey() + "\t" + entry.getKey() + "\t" + entry.getValue() + "\n");
+			}
+		}
+		AtomicFileOutputStream.update(file, out.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param size     The file size.
+	 * @param modified The modification time of the file.
+	 * @param hashed   The time when the hash was computed.
+	 * @param hash     The content hash.
+	 */
+	private record Fingerprint(long size, long modified, long hashed, String hash) {
+
+		/**
+		 * Whether the file may have been changed after the hash was computed
+		 * without changing its size and modification time.
+		 */
+		boolean isRacy() {
+			return modified >= hashed - TIMESTAMP_RESOLUTION_MILLIS;
+		}
+	}
+
+}
@@ -0,0 +1,184 @@
+package de.haumacher.webtranslate.build;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a template directory tree for changed templates.
+ *
+ * <p>
+ * Editors often write a file several times in a row, and version control
+ * operations change many files at once. To process such a burst of changes
+ * only once, {@link #next()} waits until no further change has been reported
+ * for the debounce delay and then returns all templates changed in the
+ * meantime.
+ * </p>
+ *
+ * <p>
+ * Directories created while watching are watched as well. Deleted templates
+ * are only reported, the variants generated from them are not removed.
+ * </p>
+ */
+public class TemplateWatcher implements Closeable {
+
+	/**
+	 * Default time without further changes before a burst of changes is reported.
+	 */
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+	private static final String TEMPLATE_SUFFIX = ".html";
+
+	private final Path dir;
+	private final long debounceMillis;
+	private final WatchService watchService;
+	private final Map<WatchKey, Path> dirs = new HashMap<>();
+
+	/**
+	 * Creates a {@link TemplateWatcher} and starts watching.
+	 *
+	 * @param dir            The root of the template directory tree.
+	 * @param debounceMillis The time without further changes before a burst of changes is reported.
+	 */
+	public TemplateWatcher(File dir, long debounceMillis) throws IOException {
+		this.dir = dir.toPath();
+		this.debounceMillis = debounceMillis;
+		this.watchService = this.dir.getFileSystem().newWatchService();
+
+		register(this.dir, null);
+	}
+
+	/**
+	 * Registers the given directory and all its sub-directories.
+	 *
+	 * @param start   The directory to watch.
+	 * @param changed If not <code>null</code>, all templates found are added.
+	 */
+	private void register(Path start, Set<Path> changed) throws IOException {
+		try {
+			Files.walkFileTree(start, new SimpleFileVisitor<>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path sub, BasicFileAttributes attrs) throws IOException {
+					dirs.put(sub.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), sub);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					if (changed != null && isTemplate(file)) {
+						changed.add(file);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException ex) {
+					// Deleted while walking.
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (NoSuchFileException ex) {
+			// Deleted before it could be registered.
+		}
+	}
+
+	/**
+	 * Waits for the next burst of changes.
+	 *
+	 * @return The existing templates that have been created or modified, in
+	 *         path order. Never empty.
+	 */
+	public List<File> next() throws IOException, InterruptedException {
+		Set<Path> changed = new TreeSet<>();
+		Set<Path> deleted = new TreeSet<>();
+		while (true) {
+			WatchKey key = watchService.take();
+			while (key != null) {
+				collect(key, changed, deleted);
+				key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+			}
+
+			for (Path file : deleted) {
+				// Editors replace files by deleting and re-creating them.
+				if (!Files.exists(file)) {
+					System.err.println("WARN: Template deleted, generated variants are not removed: " + file);
+				}
+			}
+
+			List<File> result = new ArrayList<>(changed.size());
+			for (Path file : changed) {
+				if (Files.isRegularFile(file)) {
+					result.add(file.toFile());
+				}
+			}
+			if (!result.isEmpty()) {
+				return result;
+			}
+
+			changed.clear();
+			deleted.clear();
+		}
+	}
+
+	private void collect(WatchKey key, Set<Path> changed, Set<Path> deleted) throws IOException {
+		Path parent = dirs.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				// Events have been lost, consider all templates changed.
+				register(dir, changed);
+				continue;
+			}
+			if (parent == null) {
+				continue;
+			}
+
+			Path file = parent.resolve((Path) event.context());
+			if (event.kind() == ENTRY_DELETE) {
+				if (isTemplate(file)) {
+					deleted.add(file);
+				}
+			} else if (Files.isDirectory(file)) {
+				if (event.kind() == ENTRY_CREATE) {
+					// Templates may have been created before the directory was registered.
+					register(file, changed);
+				}
+			} else if (isTemplate(file)) {
+				changed.add(file);
+			}
+		}
+		if (!key.reset()) {
+			dirs.remove(key);
+		}
+	}
+
+	private static boolean isTemplate(Path file) {
+		return file.getFileName().toString().endsWith(TEMPLATE_SUFFIX);
+	}
+
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+}
@@ -0,0 +1,272 @@
+package de.haumacher.webtranslate.catalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only view of a binary translation catalog created by the
+ * {@link CatalogWriter}.
+ *
+ * <p>
+ * A catalog contains the translated texts of all pages of a single language.
+ * The file is mapped into memory, opening a catalog does not read its
+ * contents. Texts are found by binary search over an index sorted by the UTF-8
+ * bytes of the keys. Neither the index nor the texts are copied to the Java
+ * heap, except for the texts returned as {@link String}.
+ * </p>
+ *
+ * <p>
+ * File format (all numbers are big-endian 32 bit integers):
+ * </p>
+ * <ul>
+ * <li>Header: {@link #MAGIC}, {@link #VERSION}, number of entries.</li>
+ * <li>Index: For each entry sorted by key, the offset and length of the key
+ * and the offset and length of the value.</li>
+ * <li>Data: The UTF-8 bytes of all keys and values.</li>
+ * </ul>
+ *
+ * <p>
+ * The key of a text is the path of its properties file relative to the
+ * language directory without the <code>.properties</code> suffix, followed by
+ * {@link #PAGE_SEPARATOR} and the property key, see {@link #key(String, String)}.
+ * Page names must not contain the separator, so that each catalog key can be
+ * split into page and property key unambiguously.
+ * </p>
+ *
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class Catalog {
+
+	/**
+	 * Marker at the beginning of each catalog file (<code>WTC1</code>).
+	 */
+	public static final int MAGIC = 0x57544331;
+
+	/**
+	 * Version of the file format.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Separator between the page and the property key in a catalog key.
+	 */
+	public static final char PAGE_SEPARATOR = '#';
+
+	static final int HEADER_SIZE = 12;
+
+	static final int INDEX_ENTRY_SIZE = 16;
+
+	private final ByteBuffer buffer;
+	private final int count;
+
+	private Catalog(ByteBuffer buffer, int count) {
+		this.buffer = buffer;
+		this.count = count;
+	}
+
+	/**
+	 * Maps the given catalog file into memory.
+	 *
+	 * <p>
+	 * The header and the index are checked, so that a corrupt file is rejected
+	 * here instead of failing on lookup. The texts are not read.
+	 * </p>
+	 */
+	public static Catalog open(File file) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		long size = buffer.capacity();
+		if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a translation catalog: " + file.getPath());
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported catalog version " + buffer.getInt(4) + ": " + file.getPath());
+		}
+		int count = buffer.getInt(8);
+		if (count < 0 || HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE > size) {
+			throw new IOException("Corrupt translation catalog: " + file.getPath());
+		}
+		long dataStart = HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE;
+		for (int entry = 0; entry < count; entry++) {
+			int index = indexEntry(entry);
+			if (!inRange(buffer.getInt(index), buffer.getInt(index + 4), dataStart, size)
+				|| !inRange(buffer.getInt(index + 8), buffer.getInt(index + 12), dataStart, size)) {
+				throw new IOException("Corrupt translation catalog, entry " + entry + " out of bounds: " + file.getPath());
+			}
+		}
+		return new Catalog(buffer, count);
+	}
+
+	private static boolean inRange(int offset, int length, long dataStart, long size) {
+		return offset >= dataStart && length >= 0 && (long) offset + length <= size;
+	}
+
+	/**
+	 * The catalog key of a text.
+	 *
+	 * @param page The path of the properties file relative to the language directory without suffix, e.g. <code>sub/page</code>.
+	 * @param id   The property key.
+	 * @throws IllegalArgumentException If the page name contains the {@link #PAGE_SEPARATOR}.
+	 */
+	public static String key(String page, String id) {
+		checkPage(page);
+		return page + PAGE_SEPARATOR + id;
+	}
+
+	/**
+	 * The number of texts in this catalog.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * The text with the given key, <code>null</code> if there is no such text.
+	 */
+	public String get(String key) {
+		int entry = find(utf8(key));
+		return entry < 0 ? null : value(entry);
+	}
+
+	/**
+	 * The text with the given property key on the given page, <code>null</code> if there is no such text.
+	 */
+	public String get(String page, String id) {
+		return get(key(page, id));
+	}
+
+	/**
+	 * The UTF-8 encoded text with the given key without copying it from the
+	 * catalog file, <code>null</code> if there is no such text.
+	 */
+	public ByteBuffer getBytes(String key) {
+		int entry = find(utf8(key));
+		if (entry < 0) {
+			return null;
+		}
+		int index = indexEntry(entry);
+		return buffer.slice(buffer.getInt(index + 8), buffer.getInt(index + 12)).asReadOnlyBuffer();
+	}
+
+	/**
+	 * All texts of the given page indexed by property key.
+	 */
+	public Map<String, String> getPage(String page) {
+		checkPage(page);
+		byte[] prefix = utf8(page + PAGE_SEPARATOR);
+
+		// First entry not smaller than the prefix.
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(mid, prefix) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		Map<String, String> result = new HashMap<>();
+		for (int entry = low; entry < count && startsWith(entry, prefix); entry++) {
+			int index = indexEntry(entry);
+			int keyOffset = buffer.getInt(index);
+			int keyLength = buffer.getInt(index + 4);
+			result.put(string(keyOffset + prefix.length, keyLength - prefix.length), value(entry));
+		}
+		return result;
+	}
+
+	/**
+	 * Whether the given page name can be part of a catalog key.
+	 */
+	public static boolean isValidPage(String page) {
+		return page.indexOf(PAGE_SEPARATOR) < 0;
+	}
+
+	private static void checkPage(String page) {
+		if (!isValidPage(page)) {
+			throw new IllegalArgumentException("Page name must not contain '" + PAGE_SEPARATOR + "': " + page);
+		}
+	}
+
+	private int find(byte[] key) {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(mid, key);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compares the key of the given entry with the given key as unsigned bytes.
+	 */
+	private int compare(int entry, byte[] key) {
+		int index = indexEntry(entry);
+		int offset = buffer.getInt(index);
+		int length = buffer.getInt(index + 4);
+		for (int n = 0, cnt = Math.min(length, key.length); n < cnt; n++) {
+			int cmp = Byte.compareUnsigned(buffer.get(offset + n), key[n]);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return Integer.compare(length, key.length);
+	}
+
+	private boolean startsWith(int entry, byte[] prefix) {
+		int index = indexEntry(entry);
+		int offset = buffer.getInt(index);
+		int length = buffer.getInt(index + 4);
+		if (length < prefix.length) {
+			return false;
+		}
+		for (int n = 0; n < prefix.length; n++) {
+			if (buffer.get(offset + n) != prefix[n]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String value(int entry) {
+		int index = indexEntry(entry);
+		return string(buffer.getInt(index + 8), buffer.getInt(index + 12));
+	}
+
+	private String string(int offset, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(offset, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int indexEntry(int entry) {
+		return HEADER_SIZE + entry * INDEX_ENTRY_SIZE;
+	}
+
+	private static byte[] utf8(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,151 @@
+package de.haumacher.webtranslate.catalog;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import de.haumacher.webtranslate.extract.PropertiesCodec;
+import de.haumacher.webtranslate.extract.PropertiesExtractor;
+import de.haumacher.webtranslate.io.AtomicFileOutputStream;
+
+/**
+ * Creates a binary {@link Catalog} from the translated properties of a
+ * language.
+ */
+public class CatalogWriter {
+
+	/**
+	 * Suffix of catalog files.
+	 */
+	public static final String SUFFIX = ".catalog";
+
+	private final PropertiesCodec codec;
+
+	/**
+	 * Creates a {@link CatalogWriter}.
+	 *
+	 * @param propertiesCharset The encoding of the properties files.
+	 */
+	public CatalogWriter(Charset propertiesCharset) {
+		this.codec = new PropertiesCodec(propertiesCharset);
+	}
+
+	/**
+	 * The catalog file of the given language, stored next to its properties directory.
+	 */
+	public static File catalogFile(File propertiesDir, String lang) {
+		return new File(propertiesDir, lang + SUFFIX);
+	}
+
+	/**
+	 * Writes all properties of the given language to its catalog file.
+	 *
+	 * @param propertiesDir The top-level properties directory with a sub-directory for each language.
+	 * @param lang          The language to write the catalog for.
+	 * @return The catalog file.
+	 */
+	public File write(File propertiesDir, String lang) throws IOException {
+		File langDir = new File(propertiesDir, lang);
+		Map<String, String> texts = new HashMap<>();
+		collect(langDir, langDir, texts);
+
+		File output = catalogFile(propertiesDir, lang);
+		write(output, texts);
+		return output;
+	}
+
+	private void collect(File root, File file, Map<String, String> texts) throws IOException {
+		if (file.isDirectory()) {
+			for (File sub : file.listFiles()) {
+				collect(root, sub, texts);
+			}
+		} else if (file.getName().endsWith(".properties")) {
+			Path path = root.toPath().relativize(file.toPath());
+			Path parent = path.getParent();
+			String baseName = PropertiesExtractor.baseName(file);
+			String page = parent == null ? baseName : parent.toString().replace(File.separatorChar, '/') + '/' + baseName;
+			if (!Catalog.isValidPage(page)) {
+				throw new IOException("Properties file name must not contain '" + Catalog.PAGE_SEPARATOR + "': " + file.getPath());
+			}
+
+			for (Entry<String, String> entry : codec.read(file).entrySet()) {
+				texts.put(Catalog.key(page, entry.getKey()), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Writes a catalog with the given texts.
+	 *
+	 * <p>
+	 * The file is written to a temporary file first and then moved to its
+	 * destination, so that readers never see an incomplete catalog. Unpaired
+	 * surrogate characters cannot be represented in UTF-8 and are replaced.
+	 * </p>
+	 *
+	 * @param output The catalog file to create.
+	 * @param texts  The texts indexed by {@link Catalog#key(String, String) catalog key}.
+	 */
+	public static void write(File output, Map<String, String> texts) throws IOException {
+		int count = texts.size();
+		List<byte[][]> entries = new ArrayList<>(count);
+		for (Entry<String, String> entry : texts.entrySet()) {
+			entries.add(new byte[][] {
+				entry.getKey().getBytes(StandardCharsets.UTF_8),
+				entry.getValue().getBytes(StandardCharsets.UTF_8)
+			});
+		}
+		entries.sort((a, b) -> Arrays.compareUnsigned(a[0], b[0]));
+
+		long offset = Catalog.HEADER_SIZE + (long) count * Catalog.INDEX_ENTRY_SIZE;
+		long size = offset;
+		for (byte[][] entry : entries) {
+			size += entry[0].length + entry[1].length;
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Catalog too large (" + size + " bytes): " + output.getPath());
+		}
+
+		try (AtomicFileOutputStream file = new AtomicFileOutputStream(output)) {
+			DataOutputStream out = new DataOutputStream(file);
+			out.writeInt(Catalog.MAGIC);
+			out.writeInt(Catalog.VERSION);
+			out.writeInt(count);
+			for (byte[][] entry : entries) {
+				out.writeInt((int) offset);
+				out.writeInt(entry[0].length);
+				offset += entry[0].length;
+				out.writeInt((int) offset);
+				out.writeInt(entry[1].length);
+				offset += entry[1].length;
+			}
+			for (byte[][] entry : entries) {
+				out.write(entry[0]);
+				out.write(entry[1]);
+			}
+			out.flush();
+			file.commit();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		File propertiesDir = new File(args[0]);
+		List<String> langs = Arrays.stream(args[1].split(",")).map(String::strip).toList();
+		Charset propertiesCharset = args.length > 2 ? Charset.forName(args[2]) : StandardCharsets.ISO_8859_1;
+
+		CatalogWriter writer = new CatalogWriter(propertiesCharset);
+		for (String lang : langs) {
+			File catalog = writer.write(propertiesDir, lang);
+			System.err.println("Written catalog: " + catalog.getPath());
+		}
+	}
+}
@@ -4,18 +4,11 @@ import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.Text;
-
 /**
  * To automatically translate a Thymeleaf web page template, elements containing
  * literal text must be identified. The contained text must be extracted to a
@@ -71,36 +64,45 @@ import org.w3c.dom.Text;
  * it neither directly contains text nor is it adjacent to translated text. This
  * approach considerably reduces structure in translated text, reducing size of
  * translation input and output and reduces potential errors during translation.
+ *
+ * <p>
+ * The analysis runs on a {@link TemplateTree}, see
+ * {@link TemplateParser#parseTree(java.io.File)}. IDs are assigned and texts are
+ * injected by modifying the tree.
+ * </p>
  */
 public class HtmlAnalyzer {
 
-	private static final String ID_ATTR = "data-tx";
+	public static final String ID_ATTR = "data-tx";
 
-	private static final Pattern TEXT_ID_PATTERN = Pattern.compile("t0*([1-9]\\d*)");
+	public static final Pattern TEXT_ID_PATTERN = Pattern.compile("t0*([1-9]\\d*)");
 
-	private static final Set<String> CODE_TAGS = new HashSet<>(Arrays.asList("code", "pre", "script", "xmp", "style"));
+	public static final Set<String> CODE_TAGS = new HashSet<>(Arrays.asList("code", "pre", "script", "xmp", "style"));
 
-	private static final Set<String> TEXT_ATTRS = new HashSet<>(Arrays.asList("alt", "label", "placeholder", "summary", "title"));
+	public static final Set<String> TEXT_ATTRS = new HashSet<>(Arrays.asList("alt", "label", "placeholder", "summary", "title"));
 	
-	private Document document;
-
-	private Set<Element> textParents = new LinkedHashSet<>();
-	private Map<String, Element> elementById = new HashMap<>();
+	private TemplateTree tree;
+	private TextIndex index;
+	private Set<String> assignedIds = new HashSet<>();
 	private int nextId = 1;
 	private DecimalFormat idFormat = new DecimalFormat("t0000");
 	
 	private Map<String, String> textById = new HashMap<>();
 
-	public HtmlAnalyzer(Document document) {
-		this.document = document;
+	/**
+	 * Creates a {@link HtmlAnalyzer} working on the given tree.
+	 */
+	public HtmlAnalyzer(TemplateTree tree) {
+		this.tree = tree;
 	}
 
 	public void analyze() {
-		scanExistingIds(document.getDocumentElement());
-		scanText(document.getDocumentElement());
+		int root = tree.getRoot();
+		scanExistingIds(root);
+		index = TextIndex.build(tree, root);
 		assignIds();
-		cleanIds(document.getDocumentElement());
-		extractText(document.getDocumentElement());
+		cleanIds(root);
+		extractText(root);
 	}
 	
 	public Map<String, String> getTextById() {
@@ -112,109 +114,99 @@ public class HtmlAnalyzer {
 	}
 
 	public void inject() {
-		injectText(document.getDocumentElement());
+		index = TextIndex.build(tree, tree.getRoot());
+		injectText(tree.getRoot());
 	}
 	
-	private void injectText(Element element) {
-		String id = element.getAttribute(ID_ATTR);
-		if (id != null && !id.isEmpty()) {
-			NamedNodeMap attributes = element.getAttributes();
-			for (int n = 0, cnt = attributes.getLength(); n < cnt; n ++) {
-				Node attr = attributes.item(n);
-				if (TEXT_ATTRS.contains(attr.getNodeName())) {
-					String text = textById.get(id + "." + attr.getNodeName());
+	private void injectText(int element) {
+		String id = tree.getAttribute(element, ID_ATTR);
+		if (!id.isEmpty()) {
+			for (int n = 0, cnt = tree.getAttributeCount(element); n < cnt; n ++) {
+				String name = tree.getAttributeName(element, n);
+				if (TEXT_ATTRS.contains(name)) {
+					String text = textById.get(id + "." + name);
 					if (text != null) {
-						attr.setNodeValue(text);
+						tree.setAttributeValue(element, n, text);
 					}
 				}
 			}
 			
-			if (!CODE_TAGS.contains(element.getTagName())) {
+			if (!CODE_TAGS.contains(tree.getTagName(element))) {
 				String text = textById.get(id);
 				if (text != null) {
-					new TextInjector(element).inject(text);
+					new TextInjector(tree, element, index).inject(text);
 				}
 			}
 		} else {
-			for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
-				if (child instanceof Element sub) {
-					injectText(sub);
+			for (int child = tree.getFirstChild(element); child != TemplateTree.NONE; child = tree.getNextSibling(child)) {
+				if (tree.isElement(child)) {
+					injectText(child);
 				}
 			}
 		}
 	}
 
-	private void extractText(Element element) {
-		String id = element.getAttribute(ID_ATTR);
-		if (id != null && !id.isEmpty()) {
-			NamedNodeMap attributes = element.getAttributes();
-			for (int n = 0, cnt = attributes.getLength(); n < cnt; n ++) {
-				Node attr = attributes.item(n);
-				if (TEXT_ATTRS.contains(attr.getNodeName())) {
-					String attrText = attr.getTextContent();
+	private void extractText(int element) {
+		String id = tree.getAttribute(element, ID_ATTR);
+		if (!id.isEmpty()) {
+			for (int n = 0, cnt = tree.getAttributeCount(element); n < cnt; n ++) {
+				String name = tree.getAttributeName(element, n);
+				if (TEXT_ATTRS.contains(name)) {
+					String attrText = tree.getAttributeValue(element, n);
 					if (!attrText.isBlank()) {
-						textById.put(id + "." + attr.getNodeName(), attrText);
+						textById.put(id + "." + name, attrText);
 					}
 				}
 			}
 			
-			if (!CODE_TAGS.contains(element.getTagName())) {
-				// Note: The element could have an ID assigned, because it only contains text attributes. 
-				if (containsText(element)) {
-					textById.put(id, new TextExtractor(element).extract());
+			if (!CODE_TAGS.contains(tree.getTagName(element))) {
+				// Note: The element could have an ID assigned, because it only contains text attributes.
+				if (index.hasDeepText(element)) {
+					textById.put(id, new TextExtractor(tree, element, index).extract());
 				}
 			}
 		}
 
-		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
-			if (child instanceof Element sub) {
-				extractText(sub);
+		for (int child = tree.getFirstChild(element); child != TemplateTree.NONE; child = tree.getNextSibling(child)) {
+			if (tree.isElement(child)) {
+				extractText(child);
 			}
 		}
 	}
 
-	private void cleanIds(Element element) {
-		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
-			if (child instanceof Element sub) {
-				if (!textParents.contains(child)) {
-					((Element) child).removeAttribute(ID_ATTR);
+	private void cleanIds(int element) {
+		for (int child = tree.getFirstChild(element); child != TemplateTree.NONE; child = tree.getNextSibling(child)) {
+			if (tree.isElement(child)) {
+				if (!index.isTextParent(child)) {
+					tree.removeAttribute(child, ID_ATTR);
 				}
-				cleanIds(sub);
+				cleanIds(child);
 			}
 		}
 	}
 
 	private void assignIds() {
-		for (Element textParent : textParents) {
-			if (!hasTextAttribute(textParent) && hasTextParent(textParent)) {
-				textParent.removeAttribute(ID_ATTR);
+		for (int textParent : index.getTextParents()) {
+			if (!index.hasTextAttribute(textParent) && index.isBelowTextParent(textParent)) {
+				tree.removeAttribute(textParent, ID_ATTR);
 				continue;
 			}
 			
-			String id = textParent.getAttribute(ID_ATTR);
-			if (id != null && !id.isBlank()) {
-				if (elementById.containsKey(id)) {
+			String id = tree.getAttribute(textParent, ID_ATTR);
+			if (!id.isBlank()) {
+				if (assignedIds.contains(id)) {
 					// Duplicate assignment, remove.
-					textParent.removeAttribute(ID_ATTR);
+					tree.removeAttribute(textParent, ID_ATTR);
 					id = null;
 				}
 			}
 			if (id == null || id.isBlank()) {
 				id = idFormat.format(nextId++);
-				textParent.setAttribute(ID_ATTR, id);
+				tree.setAttribute(textParent, ID_ATTR, id);
 			}
 
-			elementById.put(id, textParent);
-		}
-	}
-
-	private boolean hasTextParent(Element textParent) {
-		for (Node parent = textParent.getParentNode(); parent != null; parent = parent.getParentNode()) {
-			if (textParents.contains(parent)) {
-				return true;
-			}
+			assignedIds.add(id);
 		}
-		return false;
 	}
 	
 	// <p id="t0040">Some text<b><i>what</i> a great</b> nonsense.</p>
@@ -222,90 +214,19 @@ public class HtmlAnalyzer {
 	/**
 	 * Scans all existing text node IDs in the given document and computes the next free ID to assign.
 	 */
-	private void scanExistingIds(Element element) {
-		String id = element.getAttribute(ID_ATTR);
-		if (id != null && !id.isEmpty()) {
+	private void scanExistingIds(int element) {
+		String id = tree.getAttribute(element, ID_ATTR);
+		if (!id.isEmpty()) {
 			Matcher matcher = TEXT_ID_PATTERN.matcher(id);
 			if (matcher.matches()) {
 				nextId = Math.max(nextId, Integer.parseInt(matcher.group(1)) + 1);
 			}
 		}
 
-		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
-			if (child instanceof Element sub) {
-				scanExistingIds(sub);
-			}
-		}
-	}
-
-	/**
-	 * Scans the given document for elements that contain text (either in user-facing text attributes, or text content).
-	 */
-	private void scanText(Element element) {
-		if (hasTextAttribute(element)) {
-			textParents.add(element);
-		}
-		
-		if (CODE_TAGS.contains(element.getTagName())) {
-			// No translation here.
-			return;
-		}
-		
-		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
-			if (child instanceof Text text) {
-				if (hasText(text)) {
-					Element textParent = (Element) child.getParentNode();
-					textParents.add(textParent);
-				}
-			} else if (child instanceof Element sub) {
-				scanText(sub);
-			}
-		}
-	}
-
-	private boolean containsText(Element element) {
-		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
-			if (child instanceof Text text) {
-				if (hasText(text)) {
-					return true;
-				}
-			} else if (child instanceof Element sub) {
-				if (containsText(sub)) {
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-	
-	private boolean hasTextAttribute(Element element) {
-		NamedNodeMap attributes = element.getAttributes();
-		for (int n = 0, cnt = attributes.getLength(); n < cnt; n ++) {
-			Node attr = attributes.item(n);
-			if (TEXT_ATTRS.contains(attr.getNodeName())) {
-				return true;
+		for (int child = tree.getFirstChild(element); child != TemplateTree.NONE; child = tree.getNextSibling(child)) {
+			if (tree.isElement(child)) {
+				scanExistingIds(child);
 			}
 		}
-		return false;
-	}
-
-	public static boolean hasText(Text text) {
-		String s = text.getTextContent();
-
-		if (s == null) {
-			return false;
-		}
-		if (s.isBlank()) {
-			return false;
-		}
-
-		for (int n = 0, len = s.length(); n < len; n++) {
-			char ch = s.charAt(n);
-			if (Character.isLetter(ch)) {
-				return true;
-			}
-		}
-
-		return true;
 	}
 }
@@ -0,0 +1,75 @@
+package de.haumacher.webtranslate.extract;
+
+import java.util.Arrays;
+
+/**
+ * {@link Stack} of primitive <code>int</code> values.
+ */
+public class IntStack {
+
+	private int[] elements;
+	private int size;
+
+	public IntStack() {
+		this(16);
+	}
+
+	public IntStack(int capacity) {
+		elements = new int[Math.max(1, capacity)];
+	}
+
+	public void push(int element) {
+		if (size == elements.length) {
+			elements = Arrays.copyOf(elements, size * 2);
+		}
+		elements[size++] = element;
+	}
+
+	public int top() {
+		return elements[size - 1];
+	}
+
+	public int pop() {
+		return elements[--size];
+	}
+
+	public boolean hasTop() {
+		return !isEmpty();
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The element at the given position counted from the bottom of the stack.
+	 */
+	public int get(int index) {
+		return elements[index];
+	}
+
+	/**
+	 * Replaces the element at the given position counted from the bottom of the stack.
+	 */
+	public void set(int index, int element) {
+		elements[index] = element;
+	}
+
+	public boolean contains(int element) {
+		for (int n = 0; n < size; n++) {
+			if (elements[n] == element) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+}
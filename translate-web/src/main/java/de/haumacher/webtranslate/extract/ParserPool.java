@@ -0,0 +1,168 @@
+package de.haumacher.webtranslate.extract;
+
+import java.io.StringReader;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Parsers for templates, configured once and reused by each thread.
+ *
+ * <p>
+ * Creating a JAXP factory and parser involves a service lookup and the
+ * configuration of the whole parser pipeline, which costs more than parsing a
+ * typical template. Therefore, each thread keeps its own parser that is reset
+ * before each use.
+ * </p>
+ *
+ * <p>
+ * Templates are plain (X)HTML files without schema. All parsers are
+ * non-validating and do not load external DTDs or external entities. This
+ * saves network and file access for templates with a document type referring
+ * to a DTD and prevents XML external entity attacks. The StAX parser does not
+ * support DTDs at all, templates referencing entities declared in their
+ * document type are rejected.
+ * </p>
+ */
+final class ParserPool {
+
+	private static final String LOAD_EXTERNAL_DTD = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+	private static final String EXTERNAL_GENERAL_ENTITIES = "http://xml.org/sax/features/external-general-entities";
+	private static final String EXTERNAL_PARAMETER_ENTITIES = "http://xml.org/sax/features/external-parameter-entities";
+
+	/**
+	 * Resolves all external entities that are requested nevertheless to empty contents.
+	 */
+	static final EntityResolver NO_EXTERNAL_ENTITIES = (publicId, systemId) -> new InputSource(new StringReader(""));
+
+	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
+	private static final SAXParserFactory SAX_PARSER_FACTORY = createSaxParserFactory();
+
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS = new ThreadLocal<>();
+	private static final ThreadLocal<SAXParser> SAX_PARSERS = new ThreadLocal<>();
+	private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORIES = ThreadLocal.withInitial(ParserPool::createXmlInputFactory);
+	private static final ThreadLocal<XMLOutputFactory> XML_OUTPUT_FACTORIES = ThreadLocal.withInitial(XMLOutputFactory::newDefaultFactory);
+
+	private ParserPool() {
+		// Static utility.
+	}
+
+	/**
+	 * The {@link DocumentBuilder} of the current thread.
+	 *
+	 * <p>
+	 * The builder must not be used after the next call on the same thread.
+	 * </p>
+	 */
+	static DocumentBuilder documentBuilder() throws ParserConfigurationException {
+		DocumentBuilder builder = DOCUMENT_BUILDERS.get();
+		if (builder == null) {
+			// Factories are not thread-safe.
+			synchronized (DOCUMENT_BUILDER_FACTORY) {
+				builder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+			}
+			DOCUMENT_BUILDERS.set(builder);
+		} else {
+			builder.reset();
+		}
+		builder.setEntityResolver(NO_EXTERNAL_ENTITIES);
+		return builder;
+	}
+
+	/**
+	 * The {@link SAXParser} of the current thread.
+	 *
+	 * <p>
+	 * The parser must not be used after the next call on the same thread. The
+	 * handler passed to the parser should resolve external entities with
+	 * {@link #NO_EXTERNAL_ENTITIES}.
+	 * </p>
+	 */
+	static SAXParser saxParser() throws ParserConfigurationException, SAXException {
+		SAXParser parser = SAX_PARSERS.get();
+		if (parser == null) {
+			synchronized (SAX_PARSER_FACTORY) {
+				parser = SAX_PARSER_FACTORY.newSAXParser();
+			}
+			SAX_PARSERS.set(parser);
+		} else {
+			parser.reset();
+		}
+		return parser;
+	}
+
+	/**
+	 * The {@link XMLInputFactory} of the current thread.
+	 *
+	 * <p>
+	 * The factory is not namespace aware and reports adjacent text as a single
+	 * event.
+	 * </p>
+	 */
+	static XMLInputFactory xmlInputFactory() {
+		return XML_INPUT_FACTORIES.get();
+	}
+
+	/**
+	 * The {@link XMLOutputFactory} of the current thread.
+	 */
+	static XMLOutputFactory xmlOutputFactory() {
+		return XML_OUTPUT_FACTORIES.get();
+	}
+
+	private static DocumentBuilderFactory createDocumentBuilderFactory() {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newDefaultInstance();
+		factory.setNamespaceAware(false);
+		factory.setValidating(false);
+		factory.setXIncludeAware(false);
+		try {
+			factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			factory.setFeature(LOAD_EXTERNAL_DTD, false);
+			factory.setFeature(EXTERNAL_GENERAL_ENTITIES, false);
+			factory.setFeature(EXTERNAL_PARAMETER_ENTITIES, false);
+		} catch (ParserConfigurationException ex) {
+			throw new IllegalStateException("XML parser does not support the required configuration.", ex);
+		}
+		factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+		factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+		return factory;
+	}
+
+	private static SAXParserFactory createSaxParserFactory() {
+		SAXParserFactory factory = SAXParserFactory.newDefaultInstance();
+		factory.setNamespaceAware(false);
+		factory.setValidating(false);
+		factory.setXIncludeAware(false);
+		try {
+			factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			factory.setFeature(LOAD_EXTERNAL_DTD, false);
+			factory.setFeature(EXTERNAL_GENERAL_ENTITIES, false);
+			factory.setFeature(EXTERNAL_PARAMETER_ENTITIES, false);
+		} catch (ParserConfigurationException | SAXException ex) {
+			throw new IllegalStateException("XML parser does not support the required configuration.", ex);
+		}
+		return factory;
+	}
+
+	private static XMLInputFactory createXmlInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+		return factory;
+	}
+
+}
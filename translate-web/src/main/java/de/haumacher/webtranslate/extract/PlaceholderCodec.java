@@ -0,0 +1,195 @@
+package de.haumacher.webtranslate.extract;
+
+/**
+ * Encoding and decoding of the <code>&lt;xN&gt;</code> placeholders that
+ * represent markup in extracted texts.
+ *
+ * <p>
+ * All operations work on {@link CharSequence}s with a hand-written scanner and
+ * do not allocate intermediate strings, matchers, or boxed values.
+ * </p>
+ */
+public final class PlaceholderCodec {
+
+	private PlaceholderCodec() {
+		// Static utility.
+	}
+
+	/**
+	 * Callback for {@link PlaceholderCodec#decode(CharSequence, Handler)}.
+	 */
+	public interface Handler {
+
+		/**
+		 * Text between placeholders.
+		 *
+		 * @param text  The decoded text.
+		 * @param start The start index of the text run.
+		 * @param end   The end index (exclusive) of the text run.
+		 */
+		void text(CharSequence text, int start, int end);
+
+		/**
+		 * A start placeholder <code>&lt;xN&gt;</code>.
+		 */
+		void startTag(int id);
+
+		/**
+		 * An end placeholder <code>&lt;/xN&gt;</code>.
+		 */
+		void endTag(int id);
+
+	}
+
+	/**
+	 * Appends the start placeholder <code>&lt;xN&gt;</code>.
+	 */
+	public static void appendStartTag(StringBuilder out, int id) {
+		out.append("<x").append(id).append('>');
+	}
+
+	/**
+	 * Appends the end placeholder <code>&lt;/xN&gt;</code>.
+	 */
+	public static void appendEndTag(StringBuilder out, int id) {
+		out.append("</x").append(id).append('>');
+	}
+
+	/**
+	 * Scans the given text for placeholders and reports the text runs and
+	 * placeholders in order to the given handler.
+	 *
+	 * <p>
+	 * Anything looking similar to a placeholder that does not exactly match the
+	 * form <code>&lt;xN&gt;</code> or <code>&lt;/xN&gt;</code> (with <code>N</code>
+	 * being a number without leading zeros) is reported as text.
+	 * </p>
+	 *
+	 * @throws NumberFormatException If a placeholder number exceeds the <code>int</code> range.
+	 */
+	public static void decode(CharSequence text, Handler handler) {
+		int length = text.length();
+		int pos = 0;
+		int search = 0;
+		while (true) {
+			int start = indexOf(text, '<', search, length);
+			if (start < 0) {
+				break;
+			}
+
+			int index = start + 1;
+			boolean endTag = index < length && text.charAt(index) == '/';
+			if (endTag) {
+				index++;
+			}
+			if (index + 2 < length && text.charAt(index) == 'x' && isDigit(text.charAt(index + 1)) && text.charAt(index + 1) != '0') {
+				int numberStart = index + 1;
+				int numberEnd = numberStart + 1;
+				while (numberEnd < length && isDigit(text.charAt(numberEnd))) {
+					numberEnd++;
+				}
+				if (numberEnd < length && text.charAt(numberEnd) == '>') {
+					int id = parseInt(text, numberStart, numberEnd);
+					if (start > pos) {
+						handler.text(text, pos, start);
+					}
+					if (endTag) {
+						handler.endTag(id);
+					} else {
+						handler.startTag(id);
+					}
+					pos = numberEnd + 1;
+					search = pos;
+					continue;
+				}
+			}
+			search = start + 1;
+		}
+		if (length > pos) {
+			handler.text(text, pos, length);
+		}
+	}
+
+	/**
+	 * Removes leading and trailing whitespace and control characters (like
+	 * {@link String#trim()}) and replaces each sequence of at least two whitespace
+	 * characters by a single space.
+	 */
+	public static String normalizeWhitespace(CharSequence text) {
+		int start = 0;
+		int end = text.length();
+		while (start < end && text.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && text.charAt(end - 1) <= ' ') {
+			end--;
+		}
+
+		StringBuilder result = null;
+		int pos = start;
+		int n = start;
+		while (n < end) {
+			if (isWhitespace(text.charAt(n)) && n + 1 < end && isWhitespace(text.charAt(n + 1))) {
+				if (result == null) {
+					result = new StringBuilder(end - start);
+				}
+				result.append(text, pos, n).append(' ');
+				n += 2;
+				while (n < end && isWhitespace(text.charAt(n))) {
+					n++;
+				}
+				pos = n;
+			} else {
+				n++;
+			}
+		}
+
+		if (result == null) {
+			return text.subSequence(start, end).toString();
+		}
+		return result.append(text, pos, end).toString();
+	}
+
+	/**
+	 * Whether the given character is whitespace in the sense of the regular expression class <code>\s</code>.
+	 */
+	private static boolean isWhitespace(char ch) {
+		switch (ch) {
+			case ' ':
+			case '\t':
+			case '\n':
+			case '\u000B':
+			case '\f':
+			case '\r':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static boolean isDigit(char ch) {
+		return ch >= '0' && ch <= '9';
+	}
+
+	private static int indexOf(CharSequence text, char ch, int start, int end) {
+		for (int n = start; n < end; n++) {
+			if (text.charAt(n) == ch) {
+				return n;
+			}
+		}
+		return -1;
+	}
+
+	private static int parseInt(CharSequence text, int start, int end) {
+		int result = 0;
+		for (int n = start; n < end; n++) {
+			int digit = text.charAt(n) - '0';
+			if (result > (Integer.MAX_VALUE - digit) / 10) {
+				throw new NumberFormatException("For input string: \"" + text.subSequence(start, end) + "\"");
+			}
+			result = result * 10 + digit;
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,107 @@
+package de.haumacher.webtranslate.extract;
+
+/**
+ * Matching of the <code>&lt;xN&gt;</code> placeholders of a translated text
+ * against the elements they stand for.
+ *
+ * <p>
+ * Each placeholder refers to an element of the original contents. A start
+ * placeholder opens its element, the following text and placeholders are
+ * added to it until the matching end placeholder. A placeholder used a second
+ * time is ignored. Missing end placeholders are closed implicitly, end
+ * placeholders without start placeholder are ignored. Both are reported as
+ * warning.
+ * </p>
+ *
+ * <p>
+ * Subclasses decide how the contents are actually built, either in a
+ * {@link TemplateTree} (see {@link TextInjector}) or directly as output.
+ * Nodes are identified by non-negative numbers.
+ * </p>
+ */
+public abstract class PlaceholderInjection implements PlaceholderCodec.Handler {
+
+	private final String text;
+	private final IntStack elements = new IntStack();
+	private final IntStack ids = new IntStack();
+
+	/**
+	 * Creates a {@link PlaceholderInjection}.
+	 *
+	 * @param text The translated text.
+	 * @param root The node that receives the translated text.
+	 */
+	protected PlaceholderInjection(String text, int root) {
+		this.text = text;
+		elements.push(root);
+	}
+
+	/**
+	 * Decodes the translated text and reports its contents to this instance.
+	 */
+	public void inject() {
+		PlaceholderCodec.decode(text, this);
+	}
+
+	@Override
+	public final void text(CharSequence source, int start, int end) {
+		appendText(elements.top(), start, end);
+	}
+
+	@Override
+	public final void startTag(int index) {
+		if (index > placeholderCount()) {
+			throw new IndexOutOfBoundsException("No element for placeholder '<x" + index + ">'.");
+		}
+		int child = claim(index - 1);
+		if (child >= 0) {
+			appendElement(elements.top(), child);
+			ids.push(index);
+			elements.push(child);
+		}
+	}
+
+	@Override
+	public final void endTag(int index) {
+		if (ids.hasTop() && ids.top() == index) {
+			// Pop.
+			elements.pop();
+			ids.pop();
+		} else if (ids.contains(index)) {
+			// Missing end tags, pop them all.
+			while (ids.top() != index) {
+				System.err.println("WARN: Missing end tag for start tag '<x" + ids.top() + ">' in: " + text);
+				elements.pop();
+				ids.pop();
+			}
+			elements.pop();
+			ids.pop();
+		} else {
+			System.err.println("WARN: Missing start tag for end tag '</x" + index + ">' in: " + text);
+		}
+	}
+
+	/**
+	 * The number of elements that can be referenced by placeholders.
+	 */
+	protected abstract int placeholderCount();
+
+	/**
+	 * Marks the element of the placeholder with the given index as used.
+	 *
+	 * @param index The zero-based index of the placeholder.
+	 * @return The element of the placeholder, or a negative value, if it has already been used.
+	 */
+	protected abstract int claim(int index);
+
+	/**
+	 * Adds a range of the translated text to the given node.
+	 */
+	protected abstract void appendText(int node, int start, int end);
+
+	/**
+	 * Called when the element of a start placeholder is opened within the given node.
+	 */
+	protected abstract void appendElement(int node, int child);
+
+}
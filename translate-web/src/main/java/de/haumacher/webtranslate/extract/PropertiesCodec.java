@@ -0,0 +1,424 @@
+package de.haumacher.webtranslate.extract;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Reads and writes properties files.
+ *
+ * <p>
+ * Reading accepts the format of {@link Properties#load(java.io.Reader)}, but
+ * decodes directly into a {@link HashMap} instead of going through the
+ * synchronized {@link Properties}.
+ * </p>
+ *
+ * <p>
+ * Writing produces one line for each property sorted by key, followed by an
+ * empty line. Backslashes, line breaks and other control characters, key
+ * separators in keys and leading spaces are escaped, so that reading a
+ * written file results in the same properties. Characters that cannot be
+ * represented in the file encoding are written as <code>\\uXXXX</code>
+ * escapes.
+ * </p>
+ *
+ * <p>
+ * A {@link PropertiesCodec} keeps its buffers between calls and must not be
+ * used by multiple threads concurrently.
+ * </p>
+ */
+public class PropertiesCodec {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Charset charset;
+
+	/**
+	 * The largest character that can be written without escape,
+	 * <code>-1</code> if the {@link #probe} must be asked.
+	 */
+	private final int maxDirect;
+
+	/**
+	 * Whether surrogate pairs can be written without escape.
+	 */
+	private final boolean directSurrogates;
+
+	private CharsetEncoder encoder;
+	private CharsetEncoder probe;
+	private char[] chars;
+	private int length;
+	private ByteBuffer bytes;
+
+	private char[] line = new char[256];
+
+	/**
+	 * Creates a {@link PropertiesCodec}.
+	 *
+	 * @param charset The encoding of the properties files.
+	 */
+	public PropertiesCodec(Charset charset) {
+		this.charset = charset;
+
+		if (charset.equals(StandardCharsets.US_ASCII)) {
+			maxDirect = 0x7F;
+			directSurrogates = false;
+		} else if (charset.equals(StandardCharsets.ISO_8859_1)) {
+			maxDirect = 0xFF;
+			directSurrogates = false;
+		} else if (charset.name().startsWith("UTF-")) {
+			maxDirect = Character.MAX_VALUE;
+			directSurrogates = true;
+		} else {
+			maxDirect = -1;
+			directSurrogates = false;
+		}
+	}
+
+	/**
+	 * Reads the given properties file.
+	 */
+	public Map<String, String> read(File file) throws IOException {
+		return parse(new String(Files.readAllBytes(file.toPath()), charset));
+	}
+
+	/**
+	 * Reads properties from the given stream until its end.
+	 */
+	public Map<String, String> read(InputStream in) throws IOException {
+		return parse(new String(in.readAllBytes(), charset));
+	}
+
+	/**
+	 * Parses the contents of a properties file.
+	 *
+	 * @throws IllegalArgumentException If the text contains a malformed <code>\\uXXXX</code> escape.
+	 */
+	public Map<String, String> parse(String text) {
+		return parse(text.toCharArray());
+	}
+
+	private Map<String, String> parse(char[] text) {
+		Map<String, String> result = new HashMap<>();
+		int pos = 0;
+		int end = text.length;
+		while (pos < end) {
+			char ch = text[pos];
+
+			// Blank lines and white space at the beginning of a line.
+			if (isWhitespace(ch) || ch == '\n' || ch == '\r') {
+				pos++;
+				continue;
+			}
+
+			if (ch == '#' || ch == '!') {
+				while (pos < end && (ch = text[pos]) != '\n' && ch != '\r') {
+					pos++;
+				}
+				continue;
+			}
+
+			// Join a logical line from natural lines ending with an odd number of backslashes.
+			int limit = 0;
+			boolean backslash = false;
+			boolean restart = false;
+			while (pos < end) {
+				ch = text[pos++];
+				if (ch == '\n' || ch == '\r') {
+					if (!backslash || pos == end) {
+						break;
+					}
+					limit--;
+					backslash = false;
+					if (ch == '\r' && pos < end && text[pos] == '\n') {
+						pos++;
+					}
+					if (limit == 0) {
+						// Nothing but a continuation, start over with a new line.
+						restart = true;
+						break;
+					}
+					while (pos < end && isWhitespace(text[pos])) {
+						pos++;
+					}
+					continue;
+				}
+
+				if (limit == line.length) {
+					char[] newLine = new char[2 * limit];
+					System.arraycopy(line, 0, newLine, 0, limit);
+					line = newLine;
+				}
+				line[limit++] = ch;
+				backslash = ch == '\\' && !backslash;
+			}
+			if (restart) {
+				continue;
+			}
+			if (backslash) {
+				// Continuation at the end of input.
+				limit--;
+			}
+
+			int keyEnd = 0;
+			int valueStart = limit;
+			boolean separator = false;
+			backslash = false;
+			while (keyEnd < limit) {
+				ch = line[keyEnd];
+				if (!backslash) {
+					if (ch == '=' || ch == ':') {
+						valueStart = keyEnd + 1;
+						separator = true;
+						break;
+					}
+					if (isWhitespace(ch)) {
+						valueStart = keyEnd + 1;
+						break;
+					}
+				}
+				backslash = ch == '\\' && !backslash;
+				keyEnd++;
+			}
+			while (valueStart < limit) {
+				ch = line[valueStart];
+				if (!isWhitespace(ch)) {
+					if (separator || (ch != '=' && ch != ':')) {
+						break;
+					}
+					separator = true;
+				}
+				valueStart++;
+			}
+
+			result.put(unescape(line, 0, keyEnd), unescape(line, valueStart, limit));
+		}
+		return result;
+	}
+
+	private static boolean isWhitespace(char ch) {
+		return ch == ' ' || ch == '\t' || ch == '\f';
+	}
+
+	/**
+	 * Resolves escapes in the given range of the buffer. The unescaped text is
+	 * never longer than the escaped one and is written in place.
+	 */
+	private static String unescape(char[] buffer, int start, int end) {
+		int pos = start;
+		while (pos < end && buffer[pos] != '\\') {
+			pos++;
+		}
+		if (pos == end) {
+			return new String(buffer, start, end - start);
+		}
+
+		int out = pos;
+		while (pos < end) {
+			char ch = buffer[pos++];
+			if (ch != '\\' || pos == end) {
+				buffer[out++] = ch;
+				continue;
+			}
+
+			ch = buffer[pos++];
+			switch (ch) {
+				case 't': buffer[out++] = '\t'; break;
+				case 'n': buffer[out++] = '\n'; break;
+				case 'r': buffer[out++] = '\r'; break;
+				case 'f': buffer[out++] = '\f'; break;
+				case 'u': {
+					if (pos > end - 4) {
+						throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+					}
+					int value = 0;
+					for (int n = 0; n < 4; n++) {
+						int digit = Character.digit(buffer[pos++], 16);
+						if (digit < 0) {
+							throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+						}
+						value = (value << 4) | digit;
+					}
+					buffer[out++] = (char) value;
+					break;
+				}
+				default:
+					buffer[out++] = ch;
+			}
+		}
+		return new String(buffer, start, out - start);
+	}
+
+	/**
+	 * Writes the given properties sorted by key.
+	 *
+	 * <p>
+	 * The stream is not closed.
+	 * </p>
+	 */
+	public void write(OutputStream out, Map<String, String> properties) throws IOException {
+		if (encoder == null) {
+			encoder = charset.newEncoder();
+			chars = new char[BUFFER_SIZE];
+			bytes = ByteBuffer.allocate(BUFFER_SIZE);
+		}
+
+		List<String> keys = new ArrayList<>(properties.keySet());
+		Collections.sort(keys);
+		for (String key : keys) {
+			escape(out, key, true);
+			put(out, '=');
+			escape(out, properties.get(key), false);
+			put(out, LINE_SEPARATOR);
+		}
+		put(out, LINE_SEPARATOR);
+
+		encode(out, true);
+		out.flush();
+	}
+
+	private void escape(OutputStream out, String text, boolean key) throws IOException {
+		for (int n = 0, cnt = text.length(); n < cnt; n++) {
+			char ch = text.charAt(n);
+			switch (ch) {
+				case '\\': put(out, '\\', '\\'); break;
+				case '\t': put(out, '\\', 't'); break;
+				case '\n': put(out, '\\', 'n'); break;
+				case '\r': put(out, '\\', 'r'); break;
+				case '\f': put(out, '\\', 'f'); break;
+				case ' ':
+					if (key || n == 0) {
+						put(out, '\\', ' ');
+					} else {
+						put(out, ' ');
+					}
+					break;
+				case '=':
+				case ':':
+					if (key) {
+						put(out, '\\', ch);
+					} else {
+						put(out, ch);
+					}
+					break;
+				case '#':
+				case '!':
+					if (key && n == 0) {
+						put(out, '\\', ch);
+					} else {
+						put(out, ch);
+					}
+					break;
+				default:
+					if (ch < 0x20) {
+						putUnicode(out, ch);
+					} else if (ch < 0x7F) {
+						put(out, ch);
+					} else if (Character.isSurrogate(ch)) {
+						if (directSurrogates && Character.isHighSurrogate(ch) && n + 1 < cnt && Character.isLowSurrogate(text.charAt(n + 1))) {
+							put(out, ch, text.charAt(++n));
+						} else {
+							putUnicode(out, ch);
+						}
+					} else if (maxDirect >= 0 ? ch <= maxDirect : canEncode(ch)) {
+						put(out, ch);
+					} else {
+						putUnicode(out, ch);
+					}
+			}
+		}
+	}
+
+	private boolean canEncode(char ch) {
+		if (probe == null) {
+			probe = charset.newEncoder();
+		}
+		return probe.canEncode(ch);
+	}
+
+	private void putUnicode(OutputStream out, char ch) throws IOException {
+		ensure(out, 6);
+		chars[length++] = '\\';
+		chars[length++] = 'u';
+		chars[length++] = HEX[(ch >> 12) & 0xF];
+		chars[length++] = HEX[(ch >> 8) & 0xF];
+		chars[length++] = HEX[(ch >> 4) & 0xF];
+		chars[length++] = HEX[ch & 0xF];
+	}
+
+	private void put(OutputStream out, String text) throws IOException {
+		for (int n = 0, cnt = text.length(); n < cnt; n++) {
+			put(out, text.charAt(n));
+		}
+	}
+
+	private void put(OutputStream out, char ch) throws IOException {
+		ensure(out, 1);
+		chars[length++] = ch;
+	}
+
+	private void put(OutputStream out, char ch1, char ch2) throws IOException {
+		ensure(out, 2);
+		chars[length++] = ch1;
+		chars[length++] = ch2;
+	}
+
+	private void ensure(OutputStream out, int space) throws IOException {
+		if (length + space > chars.length) {
+			encode(out, false);
+		}
+	}
+
+	/**
+	 * Encodes the buffered characters and writes the result to the given stream.
+	 */
+	private void encode(OutputStream out, boolean endOfInput) throws IOException {
+		CharBuffer in = CharBuffer.wrap(chars, 0, length);
+		while (true) {
+			CoderResult result = encoder.encode(in, bytes, endOfInput);
+			if (result.isOverflow()) {
+				drain(out);
+			} else if (result.isError()) {
+				result.throwException();
+			} else {
+				break;
+			}
+		}
+
+		if (endOfInput) {
+			while (encoder.flush(bytes).isOverflow()) {
+				drain(out);
+			}
+			encoder.reset();
+		}
+		drain(out);
+
+		// Keep an incomplete surrogate pair for the next round.
+		length = in.remaining();
+		System.arraycopy(chars, in.position(), chars, 0, length);
+	}
+
+	private void drain(OutputStream out) throws IOException {
+		out.write(bytes.array(), 0, bytes.position());
+		bytes.clear();
+	}
+
+}
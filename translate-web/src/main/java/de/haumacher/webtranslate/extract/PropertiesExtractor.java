@@ -2,32 +2,26 @@ package de.haumacher.webtranslate.extract;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOError;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamWriter;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.Text;
 import org.xml.sax.SAXException;
 
+import de.haumacher.webtranslate.build.BuildManifest;
+import de.haumacher.webtranslate.io.AtomicFileOutputStream;
+import de.haumacher.webtranslate.metrics.Metrics;
+
 public class PropertiesExtractor {
 
 	// See https://developer.mozilla.org/en-US/docs/Glossary/Void_element
@@ -51,16 +45,130 @@ public class PropertiesExtractor {
 	private File templateDir;
 	private Charset propertiesCharset;
 
+	/**
+	 * The codec of each thread processing templates.
+	 */
+	private final ThreadLocal<PropertiesCodec> codecs = ThreadLocal.withInitial(() -> new PropertiesCodec(propertiesCharset));
+	private final ThreadLocal<StreamingExtractor> streamingExtractors = ThreadLocal.withInitial(StreamingExtractor::new);
+	private int parallelism = 1;
+	private BuildManifest manifest;
+	private boolean streaming;
+	private TemplateParser parser = TemplateParser.DOM;
+	private Metrics metrics;
+	private boolean quiet;
+
 	public PropertiesExtractor(File propertiesDir, File templateDir, Charset propertiesCharset) {
 		this.propertiesDir = propertiesDir;
 		this.templateDir = templateDir;
 		this.propertiesCharset = propertiesCharset;
 	}
 	
+	/**
+	 * The number of templates processed concurrently.
+	 * 
+	 * <p>
+	 * With a value of <code>1</code> (the default), templates are processed one
+	 * after another on the calling thread and processing stops at the first
+	 * failure. With a larger value, all templates are processed, failures are
+	 * reported per file and an {@link IOException} is thrown after all other
+	 * templates have been processed.
+	 * </p>
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+	
+	/**
+	 * Manifest of a previous run, used to skip templates that have not changed
+	 * since they were extracted. <code>null</code> to process all templates.
+	 */
+	public void setManifest(BuildManifest manifest) {
+		this.manifest = manifest;
+	}
+	
+	/**
+	 * Whether to process templates with the {@link StreamingExtractor} instead of
+	 * building a {@link TemplateTree} for each template.
+	 * 
+	 * <p>
+	 * The results are identical, but the streaming variant requires considerably
+	 * less memory for large templates.
+	 * </p>
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+	
+	/**
+	 * The parser for reading a template into a {@link TemplateTree}, if not
+	 * processed {@link #setStreaming(boolean) streaming}. Default is
+	 * {@link TemplateParser#DOM}, {@link TemplateParser#SAX} builds the tree
+	 * without a DOM.
+	 */
+	public void setParser(TemplateParser parser) {
+		this.parser = parser;
+	}
+	
+	/**
+	 * Collector for timings and sizes of processed templates, <code>null</code> to not collect metrics.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Whether to suppress progress messages. Warnings and errors are still reported.
+	 */
+	public void setQuiet(boolean quiet) {
+		this.quiet = quiet;
+	}
+	
 	public void process() throws ParserConfigurationException, SAXException, IOException {
-		process(templateDir);
+		Metrics.Phase phase = Metrics.startPhase(metrics, Metrics.EXTRACT);
+		try {
+			if (parallelism > 1) {
+				List<File> files = new ArrayList<>();
+				TemplateTasks.collectTemplates(templateDir, files);
+				processParallel(files);
+			} else {
+				process(templateDir);
+			}
+		} finally {
+			phase.close();
+		}
+	}
+	
+	/**
+	 * Processes only the given templates, e.g. after they have been changed.
+	 * 
+	 * @param templates Templates in the template directory.
+	 * @return The templates that were actually processed, i.e. those not
+	 *         up-to-date according to the {@link #setManifest(BuildManifest)
+	 *         manifest}.
+	 */
+	public List<File> process(List<File> templates) throws ParserConfigurationException, SAXException, IOException {
+		Metrics.Phase phase = Metrics.startPhase(metrics, Metrics.EXTRACT);
+		try {
+			if (parallelism > 1) {
+				return processParallel(templates);
+			} else {
+				List<File> processed = new ArrayList<>();
+				for (File file : templates) {
+					if (processHtml(file)) {
+						processed.add(file);
+					}
+				}
+				return processed;
+			}
+		} finally {
+			phase.close();
+		}
 	}
 	
+	private List<File> processParallel(List<File> files) throws IOException {
+		return TemplateTasks.runParallel(parallelism, files, "process", this::processHtml);
+	}
+
 	private void process(File file) throws ParserConfigurationException, SAXException, IOException {
 		if (file.isDirectory()) {
 			for (File sub : file.listFiles()) {
@@ -71,80 +179,119 @@ public class PropertiesExtractor {
 		}
 	}
 
-	private void processHtml(File file)
+	private boolean processHtml(File file)
 			throws ParserConfigurationException, SAXException, IOException, FileNotFoundException {
-		System.out.println("Processing " + file.getPath());
-		
-		Document document = parseHtml(file);
+		File propertiesFile = propertiesFile(file);
+		String step = step(file);
+		List<File> files = List.of(file, propertiesFile);
+		if (manifest != null) {
+			boolean upToDate = manifest.isUpToDate(step, files);
+			if (metrics != null) {
+				metrics.cacheAccess(Metrics.BUILD_MANIFEST, upToDate);
+			}
+			if (upToDate) {
+				return false;
+			}
+		}
 
-		HtmlAnalyzer analyzer = new HtmlAnalyzer(document);
-		analyzer.analyze();
+		if (!quiet) {
+			System.out.println("Processing " + file.getPath());
+		}
 		
-		Map<String, String> textById = analyzer.getTextById();
-		writeProperties(file, textById);
+		Metrics.FileTimer timer = metrics == null ? null : metrics.startFile(Metrics.EXTRACT, file);
+		long bytesRead = file.length();
+		int strings;
+		if (streaming) {
+			strings = processStreaming(file, propertiesFile);
+		} else {
+			strings = processDocument(file, propertiesFile);
+		}
+		if (timer != null) {
+			timer.finish(bytesRead, propertiesFile.length() + file.length(), strings);
+		}
 		
-	    // Overwrite with normalized contents.
-		try (FileOutputStream out = new FileOutputStream(file)) {
-		    serializeDocument(out, document);
-	    }
+		if (manifest != null) {
+			manifest.record(step, files);
+		}
+		return true;
 	}
 
-	public static Document parseHtml(File file) throws ParserConfigurationException, SAXException, IOException {
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newDefaultInstance();
-		DocumentBuilder builder = factory.newDocumentBuilder();
-		
-		Document document = builder.parse(file);
-		return document;
+	/**
+	 * Forces the given template to be processed again, even if it is up-to-date
+	 * according to the {@link #setManifest(BuildManifest) manifest}.
+	 */
+	public void invalidate(File template) {
+		if (manifest != null) {
+			manifest.invalidate(step(template));
+		}
 	}
 
-	public static void serializeDocument(OutputStream out, Document document) {
-		try {
-			out.write("<!DOCTYPE html>\n".getBytes(StandardCharsets.UTF_8));
-			XMLOutputFactory factory = XMLOutputFactory.newDefaultFactory();
-			XMLStreamWriter xml = factory.createXMLStreamWriter(out, "utf-8");
-			write(xml, document.getDocumentElement());
-		} catch (XMLStreamException | IOException ex) {
-			throw new IOError(ex);
-		}
+	private static String step(File template) {
+		return "extract:" + template.getPath();
 	}
 
-	private static void write(XMLStreamWriter xml, Element element) throws XMLStreamException {
-		String tagName = element.getTagName();
-		boolean isVoid = isVoidElement(tagName);
-		if (isVoid) {
-			xml.writeEmptyElement(tagName);
-		} else {
-			xml.writeStartElement(tagName);
-		}
-		NamedNodeMap attributes = element.getAttributes();
-		for (int n = 0, cnt = attributes.getLength(); n < cnt; n++) {
-			Node attribute = attributes.item(n);
-			xml.writeAttribute(attribute.getNodeName(), attribute.getNodeValue());
-		}
-		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
-			if (child instanceof Text text) {
-				xml.writeCharacters(text.getTextContent());
-			} else if (child instanceof Element sub) {
-				write(xml, sub);
-			}
-		}
-		if (!isVoid) {
-			xml.writeEndElement();
+	/**
+	 * @return The number of extracted texts.
+	 */
+	private int processStreaming(File file, File propertiesFile) throws IOException, SAXException {
+		try (AtomicFileOutputStream out = new AtomicFileOutputStream(file)) {
+			Map<String, String> textById = streamingExtractors.get().extract(file, out);
+			
+			writeProperties(propertiesFile, textById);
+			
+			// Overwrite with normalized contents.
+			out.commit();
+			return textById.size();
+		} catch (XMLStreamException ex) {
+			throw new SAXException("Failed to process '" + file.getPath() + "': " + ex.getMessage(), ex);
 		}
 	}
 
-	private static boolean isVoidElement(String tagName) {
+	/**
+	 * @return The number of extracted texts.
+	 */
+	private int processDocument(File file, File propertiesFile) throws ParserConfigurationException, SAXException, IOException {
+		TemplateTree tree = parser.parseTree(file);
+
+		HtmlAnalyzer analyzer = new HtmlAnalyzer(tree);
+		analyzer.analyze();
+		
+		Map<String, String> textById = analyzer.getTextById();
+		writeProperties(propertiesFile, textById);
+		
+	    // Overwrite with normalized contents.
+		try (AtomicFileOutputStream out = new AtomicFileOutputStream(file)) {
+		    tree.write(out);
+		    out.commit();
+	    }
+		return textById.size();
+	}
+
+	/**
+	 * Parses the given template with the default {@link TemplateParser#DOM parser}.
+	 */
+	public static TemplateTree parseHtml(File file) throws ParserConfigurationException, SAXException, IOException {
+		return TemplateParser.DOM.parseTree(file);
+	}
+
+	public static boolean isVoidElement(String tagName) {
 		return VOID_ELEMENTS.contains(tagName);
 	}
 
-	private void writeProperties(File file, Map<String, String> textById) throws IOException {
+	/**
+	 * The properties file the texts of the given template are extracted to.
+	 */
+	public File propertiesFile(File file) {
 	    String baseName = baseName(file);
 		
 		Path path = templateDir.toPath().relativize(file.getParentFile().toPath()).resolve(baseName + ".properties");
-		File output = propertiesDir.toPath().resolve(path).toFile();
-		output.getParentFile().mkdirs();
-		try (FileOutputStream out = new FileOutputStream(output)) {
-			new PropertiesWriter(out, propertiesCharset).write(textById);
+		return propertiesDir.toPath().resolve(path).toFile();
+	}
+
+	private void writeProperties(File output, Map<String, String> textById) throws IOException {
+		try (AtomicFileOutputStream out = new AtomicFileOutputStream(output)) {
+			codecs.get().write(out, textById);
+			out.commit();
 		}
 	}
 
@@ -163,8 +310,15 @@ public class PropertiesExtractor {
 		File input = new File(args[0]);
 		File output = new File(args[1]);
 		Charset propertiesCharset = args.length > 2 ? Charset.forName(args[2]) : StandardCharsets.ISO_8859_1;
+		int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		boolean streaming = args.length > 4 && Boolean.parseBoolean(args[4]);
+		TemplateParser parser = args.length > 5 ? TemplateParser.valueOf(args[5]) : TemplateParser.DOM;
 		
-		new PropertiesExtractor(output, input, propertiesCharset).process();
+		PropertiesExtractor extractor = new PropertiesExtractor(output, input, propertiesCharset);
+		extractor.setParallelism(parallelism);
+		extractor.setStreaming(streaming);
+		extractor.setParser(parser);
+		extractor.process();
 	}
 
 }
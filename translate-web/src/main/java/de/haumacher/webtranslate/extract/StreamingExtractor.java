@@ -0,0 +1,404 @@
+package de.haumacher.webtranslate.extract;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Streaming alternative to parsing a template into a {@link TemplateTree} and processing it with
+ * {@link HtmlAnalyzer#analyze()}.
+ *
+ * <p>
+ * The template is read twice with an {@link XMLStreamReader}. The first pass
+ * records a few flags for each element (indexed by the position of the element
+ * in document order) and the translate IDs that already exist. From this
+ * information, the final translate IDs are computed exactly as
+ * {@link HtmlAnalyzer} would assign them. The second pass writes the normalized
+ * template with an {@link XMLStreamWriter} and extracts the texts of all
+ * elements with translate IDs.
+ * </p>
+ *
+ * <p>
+ * Memory consumption is proportional to the number of elements (a few bytes
+ * each) plus the texts currently being extracted. The produced template and
+ * properties are identical to the ones produced by {@link HtmlAnalyzer} and
+ * {@link TemplateTree#write(OutputStream)}.
+ * </p>
+ *
+ * <p>
+ * An instance can be reused for many templates, but must not be used
+ * concurrently.
+ * </p>
+ */
+public class StreamingExtractor {
+
+	private static final int HAS_TEXT_ATTR = 1;
+	private static final int CODE = 2;
+	private static final int TEXT_PARENT = 4;
+	private static final int DIRECT_TEXT = 8;
+	private static final int DEEP_TEXT = 16;
+	private static final int BELOW_TEXT_PARENT = 32;
+
+	private int[] parents = new int[256];
+	private byte[] flags = new byte[256];
+	private int elementCount;
+	private Map<Integer, String> existingIds = new HashMap<>();
+	private IntStack textParents = new IntStack();
+	private int nextId;
+	private Map<Integer, String> ids = new HashMap<>();
+
+	/**
+	 * Assigns translate IDs to the given template and extracts its texts.
+	 *
+	 * @param template The template to process.
+	 * @param out      The stream to write the normalized template to.
+	 * @return The extracted texts indexed by translate ID.
+	 */
+	public Map<String, String> extract(File template, OutputStream out) throws IOException, XMLStreamException {
+		reset();
+
+		XMLInputFactory inputFactory = ParserPool.xmlInputFactory();
+		try (InputStream in = new FileInputStream(template)) {
+			XMLStreamReader reader = inputFactory.createXMLStreamReader(template.toURI().toString(), in);
+			try {
+				scan(reader);
+			} finally {
+				reader.close();
+			}
+		}
+
+		assignIds();
+
+		try (InputStream in = new FileInputStream(template)) {
+			XMLStreamReader reader = inputFactory.createXMLStreamReader(template.toURI().toString(), in);
+			try {
+				return write(reader, out);
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private void reset() {
+		elementCount = 0;
+		existingIds.clear();
+		textParents.clear();
+		nextId = 1;
+		ids.clear();
+	}
+
+	private void scan(XMLStreamReader reader) throws XMLStreamException {
+		IntStack open = new IntStack();
+		int codeDepth = 0;
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT: {
+					int element = newElement(open.isEmpty() ? -1 : open.top());
+
+					int elementFlags = 0;
+					for (int n = 0, cnt = reader.getAttributeCount(); n < cnt; n++) {
+						String name = qName(reader.getAttributePrefix(n), reader.getAttributeLocalName(n));
+						if (HtmlAnalyzer.TEXT_ATTRS.contains(name)) {
+							elementFlags |= HAS_TEXT_ATTR;
+						} else if (HtmlAnalyzer.ID_ATTR.equals(name)) {
+							String id = reader.getAttributeValue(n);
+							existingIds.put(element, id);
+
+							Matcher matcher = HtmlAnalyzer.TEXT_ID_PATTERN.matcher(id);
+							if (matcher.matches()) {
+								nextId = Math.max(nextId, Integer.parseInt(matcher.group(1)) + 1);
+							}
+						}
+					}
+					if (HtmlAnalyzer.CODE_TAGS.contains(qName(reader.getPrefix(), reader.getLocalName()))) {
+						elementFlags |= CODE;
+					}
+					flags[element] = (byte) elementFlags;
+
+					// Elements below code tags are not scanned for text.
+					if (codeDepth == 0 && (elementFlags & HAS_TEXT_ATTR) != 0) {
+						addTextParent(element);
+					}
+					if ((elementFlags & CODE) != 0) {
+						codeDepth++;
+					}
+					open.push(element);
+					break;
+				}
+				case XMLStreamConstants.END_ELEMENT: {
+					int element = open.pop();
+					if ((flags[element] & CODE) != 0) {
+						codeDepth--;
+					}
+					int parent = parents[element];
+					if (parent >= 0 && (flags[element] & DEEP_TEXT) != 0) {
+						flags[parent] |= DEEP_TEXT;
+					}
+					break;
+				}
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE: {
+					if (!open.isEmpty() && !isBlank(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength())) {
+						int element = open.top();
+						flags[element] |= DIRECT_TEXT | DEEP_TEXT;
+						if (codeDepth == 0) {
+							addTextParent(element);
+						}
+					}
+					break;
+				}
+				default:
+					// Comments, processing instructions and the document type are not relevant.
+			}
+		}
+	}
+
+	private int newElement(int parent) {
+		if (elementCount == parents.length) {
+			parents = Arrays.copyOf(parents, elementCount * 2);
+			flags = Arrays.copyOf(flags, elementCount * 2);
+		}
+		int element = elementCount++;
+		parents[element] = parent;
+		return element;
+	}
+
+	private void addTextParent(int element) {
+		if ((flags[element] & TEXT_PARENT) == 0) {
+			flags[element] |= TEXT_PARENT;
+			textParents.push(element);
+		}
+	}
+
+	/**
+	 * Computes the final translate IDs of all elements.
+	 *
+	 * @see HtmlAnalyzer#analyze()
+	 */
+	private void assignIds() {
+		// Parents always precede their children in document order.
+		for (int element = 0; element < elementCount; element++) {
+			int parent = parents[element];
+			if (parent >= 0 && (flags[parent] & (TEXT_PARENT | BELOW_TEXT_PARENT)) != 0) {
+				flags[element] |= BELOW_TEXT_PARENT;
+			}
+		}
+
+		// The ID of the root element is only changed, if it is a text parent.
+		String rootId = existingIds.get(0);
+		if (rootId != null) {
+			ids.put(0, rootId);
+		}
+
+		DecimalFormat idFormat = new DecimalFormat("t0000");
+		Set<String> used = new HashSet<>();
+		for (int n = 0, cnt = textParents.size(); n < cnt; n++) {
+			int element = textParents.get(n);
+			if ((flags[element] & HAS_TEXT_ATTR) == 0 && (flags[element] & BELOW_TEXT_PARENT) != 0) {
+				ids.remove(element);
+				continue;
+			}
+
+			String id = existingIds.get(element);
+			if (id != null && !id.isBlank() && used.contains(id)) {
+				// Duplicate assignment.
+				id = null;
+			}
+			if (id == null || id.isBlank()) {
+				id = idFormat.format(nextId++);
+			}
+			ids.put(element, id);
+			used.add(id);
+		}
+	}
+
+	private Map<String, String> write(XMLStreamReader reader, OutputStream out) throws IOException, XMLStreamException {
+		out.write("<!DOCTYPE html>\n".getBytes(StandardCharsets.UTF_8));
+		XMLStreamWriter xml = ParserPool.xmlOutputFactory().createXMLStreamWriter(out, "utf-8");
+
+		// Extracted properties in the order HtmlAnalyzer would produce them.
+		List<String[]> entries = new ArrayList<>();
+		List<Extraction> active = new ArrayList<>();
+		List<String[]> attributes = new ArrayList<>();
+
+		int element = -1;
+		int depth = 0;
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT: {
+					element++;
+					depth++;
+
+					boolean directText = (flags[element] & DIRECT_TEXT) != 0;
+					for (Extraction extraction : active) {
+						extraction.start(directText);
+					}
+
+					String tagName = qName(reader.getPrefix(), reader.getLocalName());
+					if (PropertiesExtractor.isVoidElement(tagName)) {
+						xml.writeEmptyElement(tagName);
+					} else {
+						xml.writeStartElement(tagName);
+					}
+
+					String id = ids.get(element);
+					attributes.clear();
+					for (int n = 0, cnt = reader.getAttributeCount(); n < cnt; n++) {
+						String name = qName(reader.getAttributePrefix(n), reader.getAttributeLocalName(n));
+						if (!HtmlAnalyzer.ID_ATTR.equals(name)) {
+							attributes.add(new String[] {name, reader.getAttributeValue(n)});
+						}
+					}
+					if (id != null) {
+						attributes.add(new String[] {HtmlAnalyzer.ID_ATTR, id});
+					}
+					// Note: A DOM keeps attributes sorted by name.
+					attributes.sort((a, b) -> a[0].compareTo(b[0]));
+					for (String[] attribute : attributes) {
+						xml.writeAttribute(attribute[0], attribute[1]);
+					}
+
+					if (id != null && !id.isEmpty()) {
+						for (String[] attribute : attributes) {
+							if (HtmlAnalyzer.TEXT_ATTRS.contains(attribute[0]) && !attribute[1].isBlank()) {
+								entries.add(new String[] {id + "." + attribute[0], attribute[1]});
+							}
+						}
+
+						if (!HtmlAnalyzer.CODE_TAGS.contains(tagName) && (flags[element] & DEEP_TEXT) != 0) {
+							String[] entry = {id, null};
+							entries.add(entry);
+							active.add(new Extraction(entry, depth));
+						}
+					}
+					break;
+				}
+				case XMLStreamConstants.END_ELEMENT: {
+					String tagName = qName(reader.getPrefix(), reader.getLocalName());
+					if (!PropertiesExtractor.isVoidElement(tagName)) {
+						xml.writeEndElement();
+					}
+
+					int last = active.size() - 1;
+					if (last >= 0 && active.get(last).depth == depth) {
+						active.remove(last).finish();
+					}
+					for (Extraction extraction : active) {
+						extraction.end();
+					}
+					depth--;
+					break;
+				}
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE: {
+					if (depth > 0) {
+						char[] chars = reader.getTextCharacters();
+						int start = reader.getTextStart();
+						int length = reader.getTextLength();
+						xml.writeCharacters(chars, start, length);
+						for (Extraction extraction : active) {
+							extraction.buffer.append(chars, start, length);
+						}
+					}
+					break;
+				}
+				default:
+					// Not written by TemplateTree.write().
+			}
+		}
+		xml.flush();
+
+		Map<String, String> textById = new HashMap<>();
+		for (String[] entry : entries) {
+			textById.put(entry[0], entry[1]);
+		}
+		return textById;
+	}
+
+	private static String qName(String prefix, String localName) {
+		return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+	}
+
+	private static boolean isBlank(char[] chars, int start, int length) {
+		for (int n = start, stop = start + length; n < stop; n++) {
+			if (!Character.isWhitespace(chars[n])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The text of an element with translate ID being extracted.
+	 *
+	 * @see TextExtractor
+	 */
+	private static final class Extraction {
+
+		final String[] entry;
+		final int depth;
+		final StringBuilder buffer = new StringBuilder();
+
+		/**
+		 * For each open element, whether it directly contains text.
+		 */
+		private final IntStack textSiblings = new IntStack();
+
+		/**
+		 * For each open element, the number of its placeholder tag, or <code>0</code> if it has none.
+		 */
+		private final IntStack placeholders = new IntStack();
+
+		private int nextId = 1;
+
+		Extraction(String[] entry, int depth) {
+			this.entry = entry;
+			this.depth = depth;
+			textSiblings.push(1);
+		}
+
+		void start(boolean directText) {
+			if (textSiblings.top() != 0 || directText) {
+				int id = nextId++;
+				PlaceholderCodec.appendStartTag(buffer, id);
+				placeholders.push(id);
+			} else {
+				placeholders.push(0);
+			}
+			textSiblings.push(directText ? 1 : 0);
+		}
+
+		void end() {
+			textSiblings.pop();
+			int id = placeholders.pop();
+			if (id > 0) {
+				PlaceholderCodec.appendEndTag(buffer, id);
+			}
+		}
+
+		void finish() {
+			entry[1] = PlaceholderCodec.normalizeWhitespace(buffer);
+		}
+	}
+
+}
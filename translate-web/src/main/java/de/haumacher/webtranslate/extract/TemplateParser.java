@@ -0,0 +1,98 @@
+package de.haumacher.webtranslate.extract;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Strategy for reading a template into a DOM or a {@link TemplateTree}.
+ *
+ * <p>
+ * Extraction and synthesis work on the compact {@link TemplateTree}, see
+ * {@link #parseTree(File)}. The DOM is only kept by callers of
+ * {@link #parse(File)}.
+ * </p>
+ *
+ * <p>
+ * Both strategies reuse a parser per thread and never load external DTDs or
+ * entities, see {@link ParserPool}. They can be used concurrently from multiple
+ * threads.
+ * </p>
+ */
+public enum TemplateParser {
+
+	/**
+	 * Parses with a JAXP {@link javax.xml.parsers.DocumentBuilder}.
+	 *
+	 * <p>
+	 * The document contains all nodes of the template, including comments. A
+	 * {@link #parseTree(InputSource) tree} is copied from the document, which
+	 * is dropped afterwards.
+	 * </p>
+	 */
+	DOM() {
+		@Override
+		public Document parse(InputSource source) throws ParserConfigurationException, SAXException, IOException {
+			return ParserPool.documentBuilder().parse(source);
+		}
+
+		@Override
+		public TemplateTree parseTree(InputSource source) throws ParserConfigurationException, SAXException, IOException {
+			return TemplateTree.of(parse(source).getDocumentElement());
+		}
+	},
+
+	/**
+	 * Builds the document from SAX events, see {@link TreeBuilder}.
+	 *
+	 * <p>
+	 * The document contains only elements, attributes and text, which is all
+	 * that extraction and synthesis look at. It is built with less overhead than
+	 * the complete document of {@link #DOM}. A {@link #parseTree(InputSource)
+	 * tree} is built directly from the SAX events without creating a DOM at all.
+	 * </p>
+	 */
+	SAX() {
+		@Override
+		public Document parse(InputSource source) throws ParserConfigurationException, SAXException, IOException {
+			TreeBuilder builder = new TreeBuilder(ParserPool.documentBuilder().newDocument());
+			ParserPool.saxParser().parse(source, builder);
+			return builder.getDocument();
+		}
+
+		@Override
+		public TemplateTree parseTree(InputSource source) throws ParserConfigurationException, SAXException, IOException {
+			return TemplateTree.parse(source);
+		}
+	};
+
+	/**
+	 * Reads the given template.
+	 */
+	public Document parse(File file) throws ParserConfigurationException, SAXException, IOException {
+		return parse(new InputSource(file.toURI().toASCIIString()));
+	}
+
+	/**
+	 * Reads the template from the given source.
+	 */
+	public abstract Document parse(InputSource source) throws ParserConfigurationException, SAXException, IOException;
+
+	/**
+	 * Reads the given template into a {@link TemplateTree}.
+	 */
+	public TemplateTree parseTree(File file) throws ParserConfigurationException, SAXException, IOException {
+		return parseTree(new InputSource(file.toURI().toASCIIString()));
+	}
+
+	/**
+	 * Reads the template from the given source into a {@link TemplateTree}.
+	 */
+	public abstract TemplateTree parseTree(InputSource source) throws ParserConfigurationException, SAXException, IOException;
+
+}
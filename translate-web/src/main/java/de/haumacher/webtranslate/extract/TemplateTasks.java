@@ -0,0 +1,104 @@
+package de.haumacher.webtranslate.extract;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Utilities for processing all templates of a directory, shared by the
+ * extraction and synthesis steps.
+ */
+public class TemplateTasks {
+
+	/**
+	 * Processing of a single template.
+	 */
+	public interface Task {
+
+		/**
+		 * Processes the given template.
+		 *
+		 * @return Whether the template was actually processed, <code>false</code>
+		 *         if it was skipped as up-to-date.
+		 */
+		boolean run(File template) throws Exception;
+
+	}
+
+	/**
+	 * Adds all templates in the given file or directory to the given list.
+	 */
+	public static void collectTemplates(File file, List<File> result) {
+		if (file.isDirectory()) {
+			for (File sub : file.listFiles()) {
+				collectTemplates(sub, result);
+			}
+		} else if (file.getName().endsWith(".html")) {
+			result.add(file);
+		}
+	}
+
+	/**
+	 * Runs the given task for all given templates in a new pool of the given parallelism.
+	 *
+	 * <p>
+	 * All templates are processed, even if some of them fail. Failures are
+	 * reported per file and an {@link IOException} is thrown after all other
+	 * templates have been processed.
+	 * </p>
+	 *
+	 * @param parallelism The number of templates processed concurrently.
+	 * @param templates   The templates to process.
+	 * @param verb        What is done with a template, used in error messages.
+	 * @param task        The processing of a single template.
+	 * @return The templates for which the task reported that they were actually processed.
+	 */
+	public static List<File> runParallel(int parallelism, List<File> templates, String verb, Task task) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>(templates.size());
+			for (File template : templates) {
+				results.add(pool.submit(() -> task.run(template)));
+			}
+
+			List<File> processed = new ArrayList<>();
+			int failures = 0;
+			for (int n = 0, cnt = templates.size(); n < cnt; n++) {
+				try {
+					if (results.get(n).get()) {
+						processed.add(templates.get(n));
+					}
+				} catch (ExecutionException ex) {
+					failures++;
+					System.err.println("ERROR: Failed to " + verb + " '" + templates.get(n).getPath() + "': " + rootCause(ex));
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for templates to " + verb + ".", ex);
+				}
+			}
+
+			if (failures > 0) {
+				throw new IOException("Failed to " + verb + " " + failures + " of " + templates.size() + " templates.");
+			}
+			return processed;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * The problem reported from a task, without the wrappers added by the fork-join framework.
+	 */
+	private static Throwable rootCause(ExecutionException ex) {
+		Throwable cause = ex.getCause();
+		while (cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		return cause;
+	}
+
+}
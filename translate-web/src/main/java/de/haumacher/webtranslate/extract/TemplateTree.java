@@ -0,0 +1,679 @@
+package de.haumacher.webtranslate.extract;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Compact, read-mostly tree of a template consisting only of elements,
+ * attributes and text.
+ *
+ * <p>
+ * In a DOM, each element, attribute and text is an object of its own with
+ * references to its parent, siblings, children and owner document, and each
+ * element has its own attribute map. A template tree instead identifies nodes by
+ * their number and stores node kind, name, parent, first child, last child and
+ * next sibling in primitive arrays. Attributes are stored in arrays as well, in
+ * a contiguous block per element. Texts and attribute values are ranges of a
+ * single shared character buffer, element and attribute names are numbers in a
+ * table of all names of the template. This requires only a fraction of the heap
+ * of a DOM, see <code>HeapBenchmark</code>.
+ * </p>
+ *
+ * <p>
+ * Nodes are numbered in document order while the tree is built. The tree can be
+ * modified as required by the {@link TextInjector}: Attributes can be set and
+ * removed, the contents of an element can be cleared, new text nodes can be
+ * created and nodes can be appended to an element. Replaced texts and values
+ * stay in the character buffer, so a tree should not be modified repeatedly.
+ * </p>
+ *
+ * <p>
+ * The tree is the model on which templates are analyzed, extracted and
+ * compiled. {@link TemplateParser#parseTree(File)} reads a tree with the
+ * configured parser, where {@link TemplateParser#SAX} builds it without a DOM.
+ * A tree {@link #of(Element) copied from a DOM} does not refer to the DOM, so
+ * the DOM can be dropped afterwards.
+ * </p>
+ */
+public final class TemplateTree {
+
+	/**
+	 * Number of a node that does not exist, e.g. the parent of the root or the
+	 * next sibling of the last child.
+	 */
+	public static final int NONE = -1;
+
+	private static final byte ELEMENT = 1;
+	private static final byte TEXT = 2;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	// Per node.
+	private byte[] kinds = new byte[INITIAL_CAPACITY];
+	private int[] names = new int[INITIAL_CAPACITY];
+	private int[] parents = new int[INITIAL_CAPACITY];
+	private int[] firstChildren = new int[INITIAL_CAPACITY];
+	private int[] lastChildren = new int[INITIAL_CAPACITY];
+	private int[] nextSiblings = new int[INITIAL_CAPACITY];
+
+	/**
+	 * For elements the index of the first attribute, for texts the offset in {@link #chars}.
+	 */
+	private int[] starts = new int[INITIAL_CAPACITY];
+
+	/**
+	 * For elements the number of attributes, for texts the number of characters.
+	 */
+	private int[] lengths = new int[INITIAL_CAPACITY];
+
+	private int size;
+
+	// Per attribute.
+	private int[] attributeNames = new int[INITIAL_CAPACITY];
+	private int[] valueStarts = new int[INITIAL_CAPACITY];
+	private int[] valueLengths = new int[INITIAL_CAPACITY];
+	private int attributeSize;
+
+	private char[] chars = new char[INITIAL_CAPACITY * 16];
+	private int charSize;
+
+	private String[] nameTable = new String[16];
+	private int nameCount;
+
+	/**
+	 * Numbers of all names in {@link #nameTable}, only while building.
+	 */
+	private Map<String, Integer> nameIndex = new HashMap<>();
+
+	private TemplateTree() {
+		// Use a factory method.
+	}
+
+	/**
+	 * Parses the given template directly into a tree without building a DOM.
+	 *
+	 * <p>
+	 * Adjacent text and CDATA sections are joined, comments and processing
+	 * instructions are dropped.
+	 * </p>
+	 *
+	 * @see TemplateParser#SAX
+	 */
+	public static TemplateTree parse(File file) throws ParserConfigurationException, SAXException, IOException {
+		return parse(new InputSource(file.toURI().toASCIIString()));
+	}
+
+	/**
+	 * Parses the template from the given source into a tree.
+	 *
+	 * @see #parse(File)
+	 */
+	public static TemplateTree parse(InputSource source) throws ParserConfigurationException, SAXException, IOException {
+		Builder builder = new Builder();
+		ParserPool.saxParser().parse(source, builder);
+		builder.tree.trim();
+		return builder.tree;
+	}
+
+	/**
+	 * Copies the given DOM element and its descendants into a new tree.
+	 *
+	 * <p>
+	 * Each text node of the DOM becomes a text node of the tree, other nodes
+	 * such as comments are ignored. The tree does not refer to the DOM,
+	 * modifications of the tree are not applied to the DOM.
+	 * </p>
+	 */
+	public static TemplateTree of(Element root) {
+		TemplateTree tree = new TemplateTree();
+		tree.add(root, NONE);
+		tree.trim();
+		return tree;
+	}
+
+	private void add(Element element, int parent) {
+		int node = newElement(element.getTagName(), parent);
+
+		NamedNodeMap attributes = element.getAttributes();
+		for (int n = 0, cnt = attributes.getLength(); n < cnt; n++) {
+			Node attribute = attributes.item(n);
+			newAttribute(node, attribute.getNodeName(), attribute.getNodeValue());
+		}
+
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child instanceof Text text) {
+				String data = text.getData();
+				link(node, newText(data, 0, data.length()));
+			} else if (child instanceof Element sub) {
+				add(sub, node);
+			}
+		}
+	}
+
+	/**
+	 * Creates an independent copy of this tree, e.g. to inject texts into a
+	 * template that is kept for later use.
+	 */
+	public TemplateTree copy() {
+		TemplateTree result = new TemplateTree();
+		result.kinds = Arrays.copyOf(kinds, size);
+		result.names = Arrays.copyOf(names, size);
+		result.parents = Arrays.copyOf(parents, size);
+		result.firstChildren = Arrays.copyOf(firstChildren, size);
+		result.lastChildren = Arrays.copyOf(lastChildren, size);
+		result.nextSiblings = Arrays.copyOf(nextSiblings, size);
+		result.starts = Arrays.copyOf(starts, size);
+		result.lengths = Arrays.copyOf(lengths, size);
+		result.size = size;
+		result.attributeNames = Arrays.copyOf(attributeNames, attributeSize);
+		result.valueStarts = Arrays.copyOf(valueStarts, attributeSize);
+		result.valueLengths = Arrays.copyOf(valueLengths, attributeSize);
+		result.attributeSize = attributeSize;
+		result.chars = Arrays.copyOf(chars, charSize);
+		result.charSize = charSize;
+		result.nameTable = Arrays.copyOf(nameTable, nameCount);
+		result.nameCount = nameCount;
+		result.nameIndex = null;
+		return result;
+	}
+
+	/**
+	 * The root element.
+	 */
+	public int getRoot() {
+		return 0;
+	}
+
+	/**
+	 * The number of nodes. Nodes are numbered from <code>0</code> to <code>size() - 1</code>.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isElement(int node) {
+		return kinds[node] == ELEMENT;
+	}
+
+	public boolean isText(int node) {
+		return kinds[node] == TEXT;
+	}
+
+	/**
+	 * The tag name of the given element.
+	 */
+	public String getTagName(int node) {
+		return nameTable[names[node]];
+	}
+
+	public int getParent(int node) {
+		return parents[node];
+	}
+
+	public int getFirstChild(int node) {
+		return firstChildren[node];
+	}
+
+	public int getLastChild(int node) {
+		return lastChildren[node];
+	}
+
+	public int getNextSibling(int node) {
+		return nextSiblings[node];
+	}
+
+	/**
+	 * The contents of the given text node.
+	 */
+	public String getText(int node) {
+		return new String(chars, starts[node], lengths[node]);
+	}
+
+	/**
+	 * Appends the contents of the given text node to the given buffer.
+	 */
+	public void appendText(StringBuilder out, int node) {
+		out.append(chars, starts[node], lengths[node]);
+	}
+
+	/**
+	 * Whether the given text node contains something else than white space.
+	 *
+	 * @see TextIndex#hasDirectText(int)
+	 */
+	public boolean hasText(int node) {
+		for (int n = starts[node], end = n + lengths[node]; n < end; n++) {
+			if (!Character.isWhitespace(chars[n])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The number of attributes of the given element.
+	 */
+	public int getAttributeCount(int node) {
+		return lengths[node];
+	}
+
+	/**
+	 * The name of the attribute with the given index of the given element.
+	 */
+	public String getAttributeName(int node, int index) {
+		return nameTable[attributeNames[starts[node] + index]];
+	}
+
+	/**
+	 * The value of the attribute with the given index of the given element.
+	 */
+	public String getAttributeValue(int node, int index) {
+		int attribute = starts[node] + index;
+		return new String(chars, valueStarts[attribute], valueLengths[attribute]);
+	}
+
+	/**
+	 * The indexes of the attributes of the given element sorted by name.
+	 *
+	 * <p>
+	 * This is the order in which a DOM reports the attributes and in which
+	 * {@link #write(OutputStream)} writes them.
+	 * </p>
+	 */
+	public int[] getAttributeOrder(int node) {
+		int cnt = lengths[node];
+		Integer[] order = new Integer[cnt];
+		for (int n = 0; n < cnt; n++) {
+			order[n] = n;
+		}
+		Arrays.sort(order, (a, b) -> getAttributeName(node, a).compareTo(getAttributeName(node, b)));
+		int[] result = new int[cnt];
+		for (int n = 0; n < cnt; n++) {
+			result[n] = order[n];
+		}
+		return result;
+	}
+
+	/**
+	 * The value of the given attribute, the empty string if the element has no such attribute.
+	 *
+	 * @see Element#getAttribute(String)
+	 */
+	public String getAttribute(int node, String name) {
+		int index = indexOfAttribute(node, name);
+		return index < 0 ? "" : getAttributeValue(node, index);
+	}
+
+	private int indexOfAttribute(int node, String name) {
+		for (int n = 0, start = starts[node], cnt = lengths[node]; n < cnt; n++) {
+			if (nameTable[attributeNames[start + n]].equals(name)) {
+				return n;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Sets the value of the attribute with the given index.
+	 */
+	public void setAttributeValue(int node, int index, String value) {
+		int attribute = starts[node] + index;
+		valueStarts[attribute] = charSize;
+		valueLengths[attribute] = value.length();
+		appendChars(value, 0, value.length());
+	}
+
+	/**
+	 * Sets the given attribute, adding it if the element does not have it yet.
+	 */
+	public void setAttribute(int node, String name, String value) {
+		int index = indexOfAttribute(node, name);
+		if (index >= 0) {
+			setAttributeValue(node, index, value);
+			return;
+		}
+
+		int start = starts[node];
+		int cnt = lengths[node];
+		if (start + cnt != attributeSize) {
+			// Move the attributes to the end to make room for the new one.
+			ensureAttributeCapacity(attributeSize + cnt + 1);
+			System.arraycopy(attributeNames, start, attributeNames, attributeSize, cnt);
+			System.arraycopy(valueStarts, start, valueStarts, attributeSize, cnt);
+			System.arraycopy(valueLengths, start, valueLengths, attributeSize, cnt);
+			starts[node] = attributeSize;
+			attributeSize += cnt;
+		}
+		newAttribute(node, name, value);
+	}
+
+	/**
+	 * Removes the given attribute, if the element has it.
+	 */
+	public void removeAttribute(int node, String name) {
+		int index = indexOfAttribute(node, name);
+		if (index < 0) {
+			return;
+		}
+		int attribute = starts[node] + index;
+		int following = lengths[node] - index - 1;
+		System.arraycopy(attributeNames, attribute + 1, attributeNames, attribute, following);
+		System.arraycopy(valueStarts, attribute + 1, valueStarts, attribute, following);
+		System.arraycopy(valueLengths, attribute + 1, valueLengths, attribute, following);
+		lengths[node]--;
+	}
+
+	/**
+	 * Removes all children of the given element. The children are kept as
+	 * detached nodes and can be appended again.
+	 */
+	public void removeChildren(int node) {
+		for (int child = firstChildren[node]; child != NONE; ) {
+			int next = nextSiblings[child];
+			parents[child] = NONE;
+			nextSiblings[child] = NONE;
+			child = next;
+		}
+		firstChildren[node] = NONE;
+		lastChildren[node] = NONE;
+	}
+
+	/**
+	 * Creates a new text node that is not yet part of the tree.
+	 */
+	public int createText(String text) {
+		return newText(text, 0, text.length());
+	}
+
+	/**
+	 * Appends the given node as last child to the given element, removing it from its current parent.
+	 *
+	 * @throws IllegalArgumentException If the node is the element itself or one of its ancestors.
+	 */
+	public void appendChild(int parent, int child) {
+		for (int ancestor = parent; ancestor != NONE; ancestor = parents[ancestor]) {
+			if (ancestor == child) {
+				throw new IllegalArgumentException("Cannot append an element to itself or its descendants: " + getTagName(child));
+			}
+		}
+
+		int oldParent = parents[child];
+		if (oldParent != NONE) {
+			unlink(oldParent, child);
+		}
+		link(parent, child);
+	}
+
+	private void unlink(int parent, int child) {
+		int before = NONE;
+		for (int node = firstChildren[parent]; node != child; node = nextSiblings[node]) {
+			before = node;
+		}
+		int next = nextSiblings[child];
+		if (before == NONE) {
+			firstChildren[parent] = next;
+		} else {
+			nextSiblings[before] = next;
+		}
+		if (lastChildren[parent] == child) {
+			lastChildren[parent] = before;
+		}
+		parents[child] = NONE;
+		nextSiblings[child] = NONE;
+	}
+
+	private void link(int parent, int child) {
+		int last = lastChildren[parent];
+		if (last == NONE) {
+			firstChildren[parent] = child;
+		} else {
+			nextSiblings[last] = child;
+		}
+		lastChildren[parent] = child;
+		parents[child] = parent;
+		nextSiblings[child] = NONE;
+	}
+
+	private int newNode(byte kind) {
+		int node = size++;
+		if (node == kinds.length) {
+			int capacity = node * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			names = Arrays.copyOf(names, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			lastChildren = Arrays.copyOf(lastChildren, capacity);
+			nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+		}
+		kinds[node] = kind;
+		parents[node] = NONE;
+		firstChildren[node] = NONE;
+		lastChildren[node] = NONE;
+		nextSiblings[node] = NONE;
+		return node;
+	}
+
+	private int newElement(String tagName, int parent) {
+		int node = newNode(ELEMENT);
+		names[node] = name(tagName);
+		starts[node] = attributeSize;
+		lengths[node] = 0;
+		if (parent != NONE) {
+			link(parent, node);
+		}
+		return node;
+	}
+
+	private int newText(CharSequence text, int start, int end) {
+		int node = newNode(TEXT);
+		starts[node] = charSize;
+		lengths[node] = end - start;
+		appendChars(text, start, end);
+		return node;
+	}
+
+	/**
+	 * Adds an attribute to the given element, whose attributes must be the last ones.
+	 */
+	private void newAttribute(int node, String name, String value) {
+		int attribute = attributeSize++;
+		ensureAttributeCapacity(attributeSize);
+		attributeNames[attribute] = name(name);
+		valueStarts[attribute] = charSize;
+		valueLengths[attribute] = value.length();
+		appendChars(value, 0, value.length());
+		lengths[node]++;
+	}
+
+	private void ensureAttributeCapacity(int capacity) {
+		if (capacity > attributeNames.length) {
+			int newCapacity = Math.max(capacity, attributeNames.length * 2);
+			attributeNames = Arrays.copyOf(attributeNames, newCapacity);
+			valueStarts = Arrays.copyOf(valueStarts, newCapacity);
+			valueLengths = Arrays.copyOf(valueLengths, newCapacity);
+		}
+	}
+
+	private void appendChars(CharSequence text, int start, int end) {
+		int length = end - start;
+		if (charSize + length > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(charSize + length, chars.length * 2));
+		}
+		if (text instanceof String string) {
+			string.getChars(start, end, chars, charSize);
+		} else {
+			for (int n = start; n < end; n++) {
+				chars[charSize + n - start] = text.charAt(n);
+			}
+		}
+		charSize += length;
+	}
+
+	private int name(String name) {
+		if (nameIndex == null) {
+			// Names added after building are rare, no index is kept.
+			for (int n = 0; n < nameCount; n++) {
+				if (nameTable[n].equals(name)) {
+					return n;
+				}
+			}
+			return addName(name);
+		}
+		Integer index = nameIndex.get(name);
+		if (index == null) {
+			index = addName(name);
+			nameIndex.put(name, index);
+		}
+		return index.intValue();
+	}
+
+	private int addName(String name) {
+		if (nameCount == nameTable.length) {
+			nameTable = Arrays.copyOf(nameTable, nameCount * 2);
+		}
+		nameTable[nameCount] = name;
+		return nameCount++;
+	}
+
+	/**
+	 * Releases unused capacity after building.
+	 */
+	private void trim() {
+		kinds = Arrays.copyOf(kinds, size);
+		names = Arrays.copyOf(names, size);
+		parents = Arrays.copyOf(parents, size);
+		firstChildren = Arrays.copyOf(firstChildren, size);
+		lastChildren = Arrays.copyOf(lastChildren, size);
+		nextSiblings = Arrays.copyOf(nextSiblings, size);
+		starts = Arrays.copyOf(starts, size);
+		lengths = Arrays.copyOf(lengths, size);
+		attributeNames = Arrays.copyOf(attributeNames, attributeSize);
+		valueStarts = Arrays.copyOf(valueStarts, attributeSize);
+		valueLengths = Arrays.copyOf(valueLengths, attributeSize);
+		chars = Arrays.copyOf(chars, charSize);
+		nameTable = Arrays.copyOf(nameTable, nameCount);
+		nameIndex = null;
+	}
+
+	/**
+	 * Writes the tree as normalized template.
+	 *
+	 * <p>
+	 * The output starts with an HTML doctype, void elements are written as
+	 * empty elements and attributes are sorted by name.
+	 * </p>
+	 */
+	public void write(OutputStream out) {
+		try {
+			out.write("<!DOCTYPE html>\n".getBytes(StandardCharsets.UTF_8));
+			XMLStreamWriter xml = ParserPool.xmlOutputFactory().createXMLStreamWriter(out, "utf-8");
+			write(xml, getRoot());
+			xml.flush();
+		} catch (XMLStreamException | IOException ex) {
+			throw new IOError(ex);
+		}
+	}
+
+	private void write(XMLStreamWriter xml, int element) throws XMLStreamException {
+		String tagName = getTagName(element);
+		boolean isVoid = PropertiesExtractor.isVoidElement(tagName);
+		if (isVoid) {
+			xml.writeEmptyElement(tagName);
+		} else {
+			xml.writeStartElement(tagName);
+		}
+
+		// Note: A DOM keeps attributes sorted by name.
+		for (int index : getAttributeOrder(element)) {
+			int attribute = starts[element] + index;
+			xml.writeAttribute(getAttributeName(element, index), new String(chars, valueStarts[attribute], valueLengths[attribute]));
+		}
+
+		for (int child = getFirstChild(element); child != NONE; child = getNextSibling(child)) {
+			if (isText(child)) {
+				xml.writeCharacters(chars, starts[child], lengths[child]);
+			} else {
+				write(xml, child);
+			}
+		}
+		if (!isVoid) {
+			xml.writeEndElement();
+		}
+	}
+
+	/**
+	 * Builds a tree from SAX events.
+	 */
+	private static final class Builder extends DefaultHandler {
+
+		final TemplateTree tree = new TemplateTree();
+
+		private int current = NONE;
+
+		private final StringBuilder text = new StringBuilder();
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			flushText();
+			int element = tree.newElement(qName, current);
+			for (int n = 0, cnt = attributes.getLength(); n < cnt; n++) {
+				tree.newAttribute(element, attributes.getQName(n), attributes.getValue(n));
+			}
+			current = element;
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			flushText();
+			current = tree.getParent(current);
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			text.append(ch, start, length);
+		}
+
+		@Override
+		public void ignorableWhitespace(char[] ch, int start, int length) {
+			text.append(ch, start, length);
+		}
+
+		@Override
+		public InputSource resolveEntity(String publicId, String systemId) throws IOException, SAXException {
+			return ParserPool.NO_EXTERNAL_ENTITIES.resolveEntity(publicId, systemId);
+		}
+
+		private void flushText() {
+			if (text.length() == 0) {
+				return;
+			}
+			if (current != NONE) {
+				tree.link(current, tree.newText(text, 0, text.length()));
+			}
+			// White space outside the document element is dropped.
+			text.setLength(0);
+		}
+	}
+
+}
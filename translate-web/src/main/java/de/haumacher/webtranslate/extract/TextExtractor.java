@@ -1,58 +1,58 @@
 package de.haumacher.webtranslate.extract;
 
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.Text;
-
 public class TextExtractor {
 
-	private Element root;
+	private TemplateTree tree;
+	private int root;
+	private TextIndex index;
 	private StringBuilder buffer = new StringBuilder();
 	private int nextId = 1;
 
-	public TextExtractor(Element element) {
+	/**
+	 * Creates a {@link TextExtractor} for an element of a {@link TemplateTree}
+	 * using an index that was built for the given element or one of its
+	 * ancestors.
+	 */
+	public TextExtractor(TemplateTree tree, int element, TextIndex index) {
+		this.tree = tree;
 		this.root = element;
+		this.index = index;
 	}
 
 	public String extract() {
 		extractText(root, true);
-		return normalizeWhitespace(buffer.toString().trim());
-	}
-
-	private String normalizeWhitespace(String text) {
-		return text.replaceAll("\\s\\s+", " ");
+		return PlaceholderCodec.normalizeWhitespace(buffer);
 	}
 
-	private void extractText(Element element, boolean hasTextSibbling) {
-		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
-			if (child instanceof Text text) {
-				buffer.append(text.getTextContent());
+	private void extractText(int element, boolean hasTextSibbling) {
+		for (int child = tree.getFirstChild(element); child != TemplateTree.NONE; child = tree.getNextSibling(child)) {
+			if (tree.isText(child)) {
+				tree.appendText(buffer, child);
 			}
-			else if (child instanceof Element sub) {
-				boolean subText = containsText(sub);
+			else {
+				boolean subText = index.hasDirectText(child);
 				if (hasTextSibbling || subText) {
 					int id = nextId++;
-					
-					buffer.append("<x");
-					buffer.append(id);
-					buffer.append(">");
-					extractText(sub, subText);
-					buffer.append("</x");
-					buffer.append(id);
-					buffer.append(">");
+
+					PlaceholderCodec.appendStartTag(buffer, id);
+					extractText(child, subText);
+					PlaceholderCodec.appendEndTag(buffer, id);
 				} else {
-					extractText(sub, false);
+					extractText(child, false);
 				}
 			}
 		}
 	}
 
-	public static boolean containsText(Element element) {
-		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
-			if (child instanceof Text text) {
-				if (HtmlAnalyzer.hasText(text)) {
-					return true;
-				}
+	/**
+	 * Whether the given element has a non-blank text node as direct child.
+	 *
+	 * @see TextIndex#hasDirectText(int)
+	 */
+	public static boolean containsText(TemplateTree tree, int element) {
+		for (int child = tree.getFirstChild(element); child != TemplateTree.NONE; child = tree.getNextSibling(child)) {
+			if (tree.isText(child) && tree.hasText(child)) {
+				return true;
 			}
 		}
 		return false;
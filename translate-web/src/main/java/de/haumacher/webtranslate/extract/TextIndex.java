@@ -0,0 +1,184 @@
+package de.haumacher.webtranslate.extract;
+
+/**
+ * Facts about the text in a subtree of a {@link TemplateTree} that are computed
+ * in a single pass.
+ *
+ * <p>
+ * Answering questions such as "does this element contain text somewhere in its
+ * subtree" or "is there an ancestor containing text" by walking the tree again
+ * for each element is quadratic on deep documents. The index computes all
+ * these facts once and stores them in an array indexed by the node number of
+ * each element. Building the index is linear in the size of the subtree, each
+ * query takes constant time.
+ * </p>
+ *
+ * <p>
+ * The index describes the subtree at the time it was built. Elements that are
+ * added later are not indexed, mutations of the contents of an element
+ * invalidate the facts about this element and its ancestors.
+ * </p>
+ */
+public class TextIndex {
+
+	private static final int HAS_TEXT_ATTR = 1;
+	private static final int TEXT_PARENT = 2;
+	private static final int DIRECT_TEXT = 4;
+	private static final int DEEP_TEXT = 8;
+	private static final int BELOW_TEXT_PARENT = 16;
+	private static final int INDEXED = 32;
+
+	private final TemplateTree tree;
+
+	private final int[] flags;
+
+	/**
+	 * All indexed elements in document order.
+	 */
+	private final IntStack elements = new IntStack();
+
+	private final IntStack textParents = new IntStack();
+
+	private TextIndex(TemplateTree tree) {
+		this.tree = tree;
+		this.flags = new int[tree.size()];
+	}
+
+	/**
+	 * Indexes the subtree of the given element of the given tree.
+	 */
+	public static TextIndex build(TemplateTree tree, int root) {
+		TextIndex result = new TextIndex(tree);
+		result.scan(root, false);
+		result.propagateTextParents();
+		return result;
+	}
+
+	/**
+	 * The tree this index was built for.
+	 */
+	public TemplateTree getTree() {
+		return tree;
+	}
+
+	/**
+	 * Records the given element and its descendants in document order and
+	 * computes all bottom-up facts.
+	 *
+	 * @param inCode Whether the element is within code, where text is not translated.
+	 */
+	private void scan(int element, boolean inCode) {
+		elements.push(element);
+		flags[element] |= INDEXED;
+
+		if (!inCode && containsTextAttribute(element)) {
+			flags[element] |= HAS_TEXT_ATTR;
+			markTextParent(element);
+		}
+		boolean childrenInCode = inCode || HtmlAnalyzer.CODE_TAGS.contains(tree.getTagName(element));
+
+		for (int child = tree.getFirstChild(element); child != TemplateTree.NONE; child = tree.getNextSibling(child)) {
+			if (tree.isText(child)) {
+				if ((flags[element] & DIRECT_TEXT) == 0 && tree.hasText(child)) {
+					flags[element] |= DIRECT_TEXT | DEEP_TEXT;
+					if (!childrenInCode) {
+						markTextParent(element);
+					}
+				}
+			} else {
+				scan(child, childrenInCode);
+				if ((flags[child] & DEEP_TEXT) != 0) {
+					flags[element] |= DEEP_TEXT;
+				}
+			}
+		}
+	}
+
+	private void markTextParent(int element) {
+		if ((flags[element] & TEXT_PARENT) == 0) {
+			flags[element] |= TEXT_PARENT;
+			textParents.push(element);
+		}
+	}
+
+	/**
+	 * Computes {@link #BELOW_TEXT_PARENT} top-down. Since elements are recorded
+	 * in document order, a parent is always processed before its children.
+	 */
+	private void propagateTextParents() {
+		for (int n = 1, cnt = elements.size(); n < cnt; n++) {
+			int element = elements.get(n);
+			int parent = tree.getParent(element);
+			if ((flags[parent] & (TEXT_PARENT | BELOW_TEXT_PARENT)) != 0) {
+				flags[element] |= BELOW_TEXT_PARENT;
+			}
+		}
+	}
+
+	private boolean containsTextAttribute(int element) {
+		for (int n = 0, cnt = tree.getAttributeCount(element); n < cnt; n++) {
+			if (HtmlAnalyzer.TEXT_ATTRS.contains(tree.getAttributeName(element, n))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The elements that need a text ID, because they either contain text directly
+	 * or have a translatable attribute. Elements within code are not considered.
+	 * The elements are reported in the order in which their text is found.
+	 */
+	public int[] getTextParents() {
+		int[] result = new int[textParents.size()];
+		for (int n = 0; n < result.length; n++) {
+			result[n] = textParents.get(n);
+		}
+		return result;
+	}
+
+	/**
+	 * Whether the given element has a non-blank text node as direct child.
+	 *
+	 * @see TextExtractor#containsText(TemplateTree, int)
+	 */
+	public boolean hasDirectText(int element) {
+		return is(element, DIRECT_TEXT);
+	}
+
+	/**
+	 * Whether there is a non-blank text node anywhere in the subtree of the given element.
+	 */
+	public boolean hasDeepText(int element) {
+		return is(element, DEEP_TEXT);
+	}
+
+	/**
+	 * Whether the given element is one of the {@link #getTextParents()}.
+	 */
+	public boolean isTextParent(int element) {
+		return is(element, TEXT_PARENT);
+	}
+
+	/**
+	 * Whether the given element has a translatable attribute and is not within code.
+	 */
+	public boolean hasTextAttribute(int element) {
+		return is(element, HAS_TEXT_ATTR);
+	}
+
+	/**
+	 * Whether some ancestor of the given element is one of the {@link #getTextParents()}.
+	 */
+	public boolean isBelowTextParent(int element) {
+		return is(element, BELOW_TEXT_PARENT);
+	}
+
+	private boolean is(int element, int flag) {
+		if (element >= flags.length || (flags[element] & INDEXED) == 0) {
+			throw new IllegalArgumentException("Element not indexed: " + tree.getTagName(element));
+		}
+		return (flags[element] & flag) != 0;
+	}
+
+}
@@ -1,59 +1,50 @@
 package de.haumacher.webtranslate.extract;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import java.util.BitSet;
 
 public class TextInjector {
 
-	private static final Pattern MARKUP_PATTERN = Pattern.compile("<(/)?x([1-9]\\d*)>");
-	
-	private List<Element> children = new ArrayList<>();
-	private Set<Element> contentElements = new HashSet<>();
+	private IntStack children = new IntStack();
+	private BitSet contentElements = new BitSet();
+
+	private TemplateTree tree;
+	private int element;
+	private TextIndex index;
 
-	private Element element;
-	
-	public TextInjector(Element element) {
+	/**
+	 * Creates a {@link TextInjector} for an element of a {@link TemplateTree}
+	 * using an index that was built for the given element or one of its
+	 * ancestors before any text was injected.
+	 */
+	public TextInjector(TemplateTree tree, int element, TextIndex index) {
+		this.tree = tree;
 		this.element = element;
+		this.index = index;
 	}
 
 	/**
 	 * Indexes the elements in the subtree of the given element.
-	 * 
+	 *
 	 * @param element          The element to index.
 	 * @param hasTextSibblings Whether direct children of the given element have
 	 *                         text siblings and therefore need to be indexed.
 	 */
-	private void analyze(Element element, boolean hasTextSibblings) {
-		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
-			if (child instanceof Element sub) {
-				boolean containsText = TextExtractor.containsText(sub);
-				
+	private void analyze(int element, boolean hasTextSibblings) {
+		for (int child = tree.getFirstChild(element); child != TemplateTree.NONE; child = tree.getNextSibling(child)) {
+			if (tree.isElement(child)) {
+				boolean containsText = index.hasDirectText(child);
+
 				if (hasTextSibblings || containsText) {
-					children.add(sub);
+					children.push(child);
 				}
-				
-				analyze(sub, containsText);
+
+				analyze(child, containsText);
 			}
 		}
-		
-		if (hasTextSibblings) {
-			clear(element);
-			contentElements.add(element);
-		}
-	}
 
-	private void clear(Element element) {
-		while (element.getLastChild() != null) {
-			// Clear contents.
-			element.removeChild(element.getLastChild());
+		if (hasTextSibblings) {
+			tree.removeChildren(element);
+			contentElements.set(element);
 		}
 	}
 
@@ -64,62 +55,47 @@ public class TextInjector {
 			throw new IllegalArgumentException("Failed to inject: " + text, ex);
 		}
 	}
-	
+
 	private void doInject(String text) {
 		analyze(element, true);
-		clear(element);
-		Document doc = element.getOwnerDocument();
-		
-		Matcher matcher = MARKUP_PATTERN.matcher(text);
-		int pos = 0;
-		Stack<Element> elements = new Stack<>();
-		Stack<Integer> ids = new Stack<>();
-		elements.push(element);
-		while (matcher.find()) {
-			int start = matcher.start();
-			if (start > pos) {
-				elements.top().appendChild(doc.createTextNode(text.substring(pos, start)));
-			}
-			
-			boolean startTag = matcher.group(1) == null;
-			int index = Integer.parseInt(matcher.group(2));
-			
-			if (startTag) {
-				Element child = children.get(index - 1);
-				if (child != null) {
-					// Never use twice.
-					children.set(index - 1, null);
-
-					Element top = elements.top();
-					if (contentElements.contains(top)) {
-						top.appendChild(child);
-					}
-					ids.push(index);
-					elements.push(child);
-				}
-			} else {
-				if (ids.hasTop() && ids.top().equals(index)) {
-					// Pop.
-					elements.pop();
-					ids.pop();
-				} else if (ids.contains(index)) {
-					// Missing end tags, pop them all.
-					while (!ids.top().equals(index)) {
-						System.err.println("WARN: Missing end tag for start tag '<x" + ids.top() + ">' in: " + text);
-						elements.pop();
-						ids.pop();
-					}
-					elements.pop();
-					ids.pop();
-				} else {
-					System.err.println("WARN: Missing start tag for end tag '" + matcher.group() + "' in: " + text);
-				}
-			}
-			
-			pos = matcher.end();
+		tree.removeChildren(element);
+		new Injection(text).inject();
+	}
+
+	/**
+	 * Rebuilds the contents of the element from the decoded translation.
+	 */
+	private final class Injection extends PlaceholderInjection {
+		private final String text;
+
+		Injection(String text) {
+			super(text, element);
+			this.text = text;
+		}
+
+		@Override
+		protected int placeholderCount() {
+			return children.size();
+		}
+
+		@Override
+		protected int claim(int index) {
+			int child = children.get(index);
+			// Never use twice.
+			children.set(index, TemplateTree.NONE);
+			return child;
 		}
-		if (text.length() > pos) {
-			elements.top().appendChild(doc.createTextNode(text.substring(pos)));
+
+		@Override
+		protected void appendText(int node, int start, int end) {
+			tree.appendChild(node, tree.createText(text.substring(start, end)));
+		}
+
+		@Override
+		protected void appendElement(int node, int child) {
+			if (contentElements.get(node)) {
+				tree.appendChild(node, child);
+			}
 		}
 	}
 
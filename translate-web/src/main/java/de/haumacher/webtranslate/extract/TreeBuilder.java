@@ -0,0 +1,95 @@
+package de.haumacher.webtranslate.extract;
+
+import java.io.IOException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * SAX handler building a DOM with only the nodes relevant for templates.
+ *
+ * <p>
+ * In contrast to a JAXP {@link javax.xml.parsers.DocumentBuilder}, the
+ * document contains only elements, attributes and text. Comments, processing
+ * instructions and the document type are dropped, adjacent text and CDATA
+ * sections are joined into a single text node. Text is collected in a single
+ * buffer and materialized only once per text node.
+ * </p>
+ */
+class TreeBuilder extends DefaultHandler {
+
+	private final Document document;
+
+	private Node current;
+
+	private final StringBuilder text = new StringBuilder();
+
+	/**
+	 * Creates a {@link TreeBuilder}.
+	 *
+	 * @param document The empty document to add the parsed nodes to.
+	 */
+	public TreeBuilder(Document document) {
+		this.document = document;
+		this.current = document;
+
+		// Names have already been checked by the parser.
+		document.setStrictErrorChecking(false);
+	}
+
+	/**
+	 * The document built.
+	 */
+	public Document getDocument() {
+		return document;
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) {
+		flushText();
+		Element element = document.createElement(qName);
+		for (int n = 0, cnt = attributes.getLength(); n < cnt; n++) {
+			element.setAttribute(attributes.getQName(n), attributes.getValue(n));
+		}
+		current.appendChild(element);
+		current = element;
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) {
+		flushText();
+		current = current.getParentNode();
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) {
+		text.append(ch, start, length);
+	}
+
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length) {
+		text.append(ch, start, length);
+	}
+
+	@Override
+	public InputSource resolveEntity(String publicId, String systemId) throws IOException, SAXException {
+		return ParserPool.NO_EXTERNAL_ENTITIES.resolveEntity(publicId, systemId);
+	}
+
+	private void flushText() {
+		if (text.length() == 0) {
+			return;
+		}
+		if (current != document) {
+			current.appendChild(document.createTextNode(text.toString()));
+		}
+		// White space outside the document element is dropped.
+		text.setLength(0);
+	}
+
+}
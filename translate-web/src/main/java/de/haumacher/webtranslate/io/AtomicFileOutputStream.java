@@ -0,0 +1,217 @@
+package de.haumacher.webtranslate.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Output stream that replaces a file only if its contents actually change.
+ *
+ * <p>
+ * All data is collected in memory. When the stream is {@link #commit()
+ * committed}, the data is compared to the current contents of the file. If they
+ * are equal, the file is not touched, so that its modification time is kept and
+ * caches depending on it (build tools, template caches, file watchers) are not
+ * invalidated. Otherwise, the data is written to a temporary file in the same
+ * directory that is forced to disk and then moved over the file in a single
+ * step. A process or system dying in the middle of writing therefore never
+ * leaves a truncated file behind. The replaced file keeps its access
+ * permissions.
+ * </p>
+ *
+ * <p>
+ * Closing a stream that has not been committed discards the data, e.g. when
+ * creating the contents failed:
+ * </p>
+ *
+ * <pre>
+ * try (AtomicFileOutputStream out = new AtomicFileOutputStream(file)) {
+ *     ...
+ *     out.commit();
+ * }
+ * </pre>
+ */
+public class AtomicFileOutputStream extends OutputStream {
+
+	private static final int COMPARE_BUFFER_SIZE = 8192;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final File file;
+
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(COMPARE_BUFFER_SIZE);
+
+	private boolean closed;
+
+	/**
+	 * Creates a {@link AtomicFileOutputStream}.
+	 *
+	 * @param file The file to write. Missing parent directories are created on
+	 *             {@link #commit()}.
+	 */
+	public AtomicFileOutputStream(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * The file to write.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		checkOpen();
+		buffer.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		buffer.write(b, off, len);
+	}
+
+	/**
+	 * The number of bytes written so far.
+	 */
+	public int size() {
+		return buffer.size();
+	}
+
+	/**
+	 * Writes the collected data to the file, unless it already has exactly this
+	 * contents, and closes the stream.
+	 *
+	 * @return Whether the file was created or replaced, <code>false</code> if
+	 *         its contents was already up to date.
+	 */
+	public boolean commit() throws IOException {
+		checkOpen();
+		closed = true;
+		byte[] data = buffer.toByteArray();
+		buffer.reset();
+		return update(file, data);
+	}
+
+	/**
+	 * Writes the given contents to the given file, unless it already has exactly
+	 * this contents.
+	 *
+	 * @return Whether the file was created or replaced.
+	 */
+	public static boolean update(File file, byte[] data) throws IOException {
+		if (hasContents(file, data)) {
+			return false;
+		}
+
+		Path target = file.toPath().toAbsolutePath();
+		Path dir = target.getParent();
+		Files.createDirectories(dir);
+		Path tmp = createTempFile(dir, target.getFileName().toString());
+		try {
+			if (Files.exists(target)) {
+				copyPermissions(target, tmp);
+			}
+			try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.wrap(data);
+				while (buffer.hasRemaining()) {
+					out.write(buffer);
+				}
+				// Make sure the contents reach the disk before the file is renamed.
+				out.force(true);
+			}
+			try {
+				Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		return true;
+	}
+
+	/**
+	 * Creates a new empty file next to the given file name.
+	 *
+	 * <p>
+	 * In contrast to {@link Files#createTempFile(Path, String, String)}, the
+	 * file is created with the default permissions of new files, since it
+	 * replaces the actual file.
+	 * </p>
+	 */
+	private static Path createTempFile(Path dir, String name) throws IOException {
+		while (true) {
+			Path tmp = dir.resolve("." + name + "." + Long.toUnsignedString(RANDOM.nextLong(), 36) + ".tmp");
+			try {
+				return Files.createFile(tmp);
+			} catch (FileAlreadyExistsException ex) {
+				// Try another name.
+			}
+		}
+	}
+
+	/**
+	 * Gives the replacement the access permissions of the file it replaces.
+	 */
+	private static void copyPermissions(Path target, Path tmp) throws IOException {
+		if (target.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(target));
+		}
+	}
+
+	/**
+	 * Whether the given file exists and has exactly the given contents.
+	 */
+	static boolean hasContents(File file, byte[] data) throws IOException {
+		if (!file.isFile() || file.length() != data.length) {
+			return false;
+		}
+		byte[] chunk = new byte[COMPARE_BUFFER_SIZE];
+		try (InputStream in = new FileInputStream(file)) {
+			int pos = 0;
+			while (pos < data.length) {
+				int read = in.read(chunk);
+				if (read < 0 || pos + read > data.length) {
+					// Changed concurrently.
+					return false;
+				}
+				if (!Arrays.equals(chunk, 0, read, data, pos, pos + read)) {
+					return false;
+				}
+				pos += read;
+			}
+			return in.read() < 0;
+		}
+	}
+
+	/**
+	 * Discards the collected data, if the stream has not been {@link #commit() committed}.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		buffer.reset();
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed: " + file.getPath());
+		}
+	}
+
+}
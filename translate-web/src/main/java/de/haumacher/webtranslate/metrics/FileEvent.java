@@ -0,0 +1,35 @@
+package de.haumacher.webtranslate.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a file processed in a phase, see {@link Metrics#startFile(String, java.io.File)}.
+ */
+@Name("de.haumacher.webtranslate.File")
+@Label("Translation File")
+@Category("Web Translate")
+@Description("A file processed by the translation pipeline.")
+class FileEvent extends jdk.jfr.Event {
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Path")
+	String path;
+
+	@Label("Bytes Read")
+	@DataAmount
+	long bytesRead;
+
+	@Label("Bytes Written")
+	@DataAmount
+	long bytesWritten;
+
+	@Label("Strings")
+	int strings;
+
+}
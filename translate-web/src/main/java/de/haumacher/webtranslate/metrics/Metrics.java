@@ -0,0 +1,514 @@
+package de.haumacher.webtranslate.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.haumacher.webtranslate.io.AtomicFileOutputStream;
+
+/**
+ * Collects measurements of a translation run.
+ *
+ * <p>
+ * The pipeline reports the duration of each phase, the duration, bytes read
+ * and written, and number of texts of each processed file, the requests sent
+ * to the translation service per target language, and the hits and misses of
+ * its caches. Each measurement is also emitted as a custom JFR event, see
+ * {@link PhaseEvent}, {@link FileEvent}, and {@link RequestEvent}. The
+ * collected values can be written as a JSON run report, see
+ * {@link #writeReport(File)}.
+ * </p>
+ *
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class Metrics {
+
+	/**
+	 * Phase extracting the texts from the source templates.
+	 */
+	public static final String EXTRACT = "extract";
+
+	/**
+	 * Phase translating the extracted texts.
+	 */
+	public static final String TRANSLATE = "translate";
+
+	/**
+	 * Phase creating the templates for the target languages.
+	 */
+	public static final String SYNTHESIZE = "synthesize";
+
+	/**
+	 * Cache of up-to-date build steps.
+	 */
+	public static final String BUILD_MANIFEST = "build-manifest";
+
+	/**
+	 * Cache of previous translations.
+	 */
+	public static final String TRANSLATION_MEMORY = "translation-memory";
+
+	/**
+	 * Upper bounds of the buckets of the request latency histogram in
+	 * milliseconds. Slower requests are counted in an additional unbounded
+	 * bucket.
+	 */
+	private static final long[] LATENCY_BUCKETS_MILLIS = { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };
+
+	private final Map<String, PhaseStats> phases = new LinkedHashMap<>();
+	private final Map<String, LanguageStats> languages = new LinkedHashMap<>();
+	private final Map<String, CacheStats> caches = new LinkedHashMap<>();
+	private final ConcurrentLinkedQueue<FileRecord> files = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Starts timing a phase.
+	 *
+	 * <p>
+	 * The phase ends when the returned {@link Phase} is closed. If the same phase
+	 * is run more than once, the durations are added.
+	 * </p>
+	 */
+	public Phase startPhase(String name) {
+		return new Phase(phase(name), name);
+	}
+
+	/**
+	 * Starts timing a phase in the given metrics.
+	 *
+	 * @param metrics The metrics to record the phase in, <code>null</code> if metrics are not collected.
+	 * @return The running phase, a phase that records nothing, if no metrics are given.
+	 * @see #startPhase(String)
+	 */
+	public static Phase startPhase(Metrics metrics, String name) {
+		return metrics == null ? Phase.NONE : metrics.startPhase(name);
+	}
+
+	/**
+	 * Starts timing the processing of a file.
+	 *
+	 * @param phase The phase processing the file.
+	 * @param file  The file being processed.
+	 */
+	public FileTimer startFile(String phase, File file) {
+		return new FileTimer(phase(phase), phase, file.getPath());
+	}
+
+	/**
+	 * Starts timing a request to the translation service.
+	 *
+	 * @param destLang The target language of the request.
+	 * @param texts    The number of texts in the request.
+	 */
+	public RequestTimer startRequest(String destLang, int texts) {
+		return new RequestTimer(language(destLang), destLang, texts);
+	}
+
+	/**
+	 * Records a lookup in the given cache.
+	 *
+	 * @param cache The name of the cache, e.g. {@link #BUILD_MANIFEST}.
+	 * @param hit   Whether the value was found in the cache.
+	 */
+	public void cacheAccess(String cache, boolean hit) {
+		CacheStats stats = cache(cache);
+		if (hit) {
+			stats.hits.increment();
+		} else {
+			stats.misses.increment();
+		}
+	}
+
+	/**
+	 * Drops all values collected so far, e.g. before the next update in watch mode.
+	 */
+	public synchronized void reset() {
+		phases.clear();
+		languages.clear();
+		caches.clear();
+		files.clear();
+	}
+
+	/**
+	 * The number of files processed in the given phase.
+	 */
+	public synchronized long getFiles(String phase) {
+		PhaseStats stats = phases.get(phase);
+		return stats == null ? 0 : stats.files.sum();
+	}
+
+	/**
+	 * The number of texts processed in the given phase.
+	 */
+	public synchronized long getStrings(String phase) {
+		PhaseStats stats = phases.get(phase);
+		return stats == null ? 0 : stats.strings.sum();
+	}
+
+	/**
+	 * The number of requests sent for the given target language.
+	 */
+	public synchronized long getRequests(String destLang) {
+		LanguageStats stats = languages.get(destLang);
+		return stats == null ? 0 : stats.requests.sum();
+	}
+
+	/**
+	 * The number of characters billed for the given target language.
+	 */
+	public synchronized long getBilledChars(String destLang) {
+		LanguageStats stats = languages.get(destLang);
+		return stats == null ? 0 : stats.billedChars.sum();
+	}
+
+	/**
+	 * The number of hits in the given cache.
+	 */
+	public synchronized long getHits(String cache) {
+		CacheStats stats = caches.get(cache);
+		return stats == null ? 0 : stats.hits.sum();
+	}
+
+	/**
+	 * The number of misses in the given cache.
+	 */
+	public synchronized long getMisses(String cache) {
+		CacheStats stats = caches.get(cache);
+		return stats == null ? 0 : stats.misses.sum();
+	}
+
+	private synchronized PhaseStats phase(String name) {
+		return phases.computeIfAbsent(name, x -> new PhaseStats());
+	}
+
+	private synchronized LanguageStats language(String destLang) {
+		return languages.computeIfAbsent(destLang, x -> new LanguageStats());
+	}
+
+	private synchronized CacheStats cache(String name) {
+		return caches.computeIfAbsent(name, x -> new CacheStats());
+	}
+
+	/**
+	 * Writes the JSON run report to the given file.
+	 *
+	 * <p>
+	 * The report is written with an {@link AtomicFileOutputStream}, so that a
+	 * tool polling the report never sees an incomplete file.
+	 * </p>
+	 */
+	public void writeReport(File file) throws IOException {
+		StringBuilder out = new StringBuilder();
+		writeJson(out);
+		AtomicFileOutputStream.update(file, out.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes the collected values as JSON object.
+	 *
+	 * <p>
+	 * Durations are given in milliseconds. The <code>files</code> array lists
+	 * all processed files in order of completion.
+	 * </p>
+	 */
+	public void writeJson(Appendable out) throws IOException {
+		Map<String, PhaseStats> phases;
+		Map<String, LanguageStats> languages;
+		Map<String, CacheStats> caches;
+		synchronized (this) {
+			phases = new LinkedHashMap<>(this.phases);
+			languages = new LinkedHashMap<>(this.languages);
+			caches = new LinkedHashMap<>(this.caches);
+		}
+		List<FileRecord> files = new ArrayList<>(this.files);
+
+		out.append("{\n  \"phases\": {");
+		String separator = "\n";
+		for (Map.Entry<String, PhaseStats> entry : phases.entrySet()) {
+			PhaseStats stats = entry.getValue();
+			out.append(separator).append("    ");
+			appendString(out, entry.getKey());
+			out.append(": {\"millis\": ").append(millis(stats.nanos.sum()));
+			out.append(", \"files\": ").append(Long.toString(stats.files.sum()));
+			out.append(", \"fileMillis\": ").append(millis(stats.fileNanos.sum()));
+			out.append(", \"bytesRead\": ").append(Long.toString(stats.bytesRead.sum()));
+			out.append(", \"bytesWritten\": ").append(Long.toString(stats.bytesWritten.sum()));
+			out.append(", \"strings\": ").append(Long.toString(stats.strings.sum()));
+			out.append('}');
+			separator = ",\n";
+		}
+		out.append(phases.isEmpty() ? "" : "\n  ").append("},\n  \"languages\": {");
+
+		separator = "\n";
+		for (Map.Entry<String, LanguageStats> entry : languages.entrySet()) {
+			LanguageStats stats = entry.getValue();
+			long requests = stats.requests.sum();
+			out.append(separator).append("    ");
+			appendString(out, entry.getKey());
+			out.append(": {\"requests\": ").append(Long.toString(requests));
+			out.append(", \"failures\": ").append(Long.toString(stats.failures.sum()));
+			out.append(", \"texts\": ").append(Long.toString(stats.texts.sum()));
+			out.append(", \"billedChars\": ").append(Long.toString(stats.billedChars.sum()));
+			out.append(", \"meanMillis\": ").append(requests == 0 ? "0" : millis(stats.nanos.sum() / requests));
+			out.append(", \"maxMillis\": ").append(millis(stats.maxNanos.get()));
+			out.append(", \"latencyMillis\": [");
+			for (int n = 0, cnt = stats.buckets.length(); n < cnt; n++) {
+				if (n > 0) {
+					out.append(", ");
+				}
+				out.append("{\"le\": ").append(n < LATENCY_BUCKETS_MILLIS.length ? Long.toString(LATENCY_BUCKETS_MILLIS[n]) : "null");
+				out.append(", \"count\": ").append(Long.toString(stats.buckets.get(n))).append('}');
+			}
+			out.append("]}");
+			separator = ",\n";
+		}
+		out.append(languages.isEmpty() ? "" : "\n  ").append("},\n  \"caches\": {");
+
+		separator = "\n";
+		for (Map.Entry<String, CacheStats> entry : caches.entrySet()) {
+			CacheStats stats = entry.getValue();
+			out.append(separator).append("    ");
+			appendString(out, entry.getKey());
+			out.append(": {\"hits\": ").append(Long.toString(stats.hits.sum()));
+			out.append(", \"misses\": ").append(Long.toString(stats.misses.sum()));
+			out.append('}');
+			separator = ",\n";
+		}
+		out.append(caches.isEmpty() ? "" : "\n  ").append("},\n  \"files\": [");
+
+		separator = "\n";
+		for (FileRecord file : files) {
+			out.append(separator).append("    {\"phase\": ");
+			appendString(out, file.phase());
+			out.append(", \"path\": ");
+			appendString(out, file.path());
+			out.append(", \"millis\": ").append(millis(file.nanos()));
+			out.append(", \"bytesRead\": ").append(Long.toString(file.bytesRead()));
+			out.append(", \"bytesWritten\": ").append(Long.toString(file.bytesWritten()));
+			out.append(", \"strings\": ").append(Long.toString(file.strings()));
+			out.append('}');
+			separator = ",\n";
+		}
+		out.append(files.isEmpty() ? "" : "\n  ").append("]\n}\n");
+	}
+
+	private static String millis(long nanos) {
+		return Long.toString(nanos / 1_000_000) + '.' + Long.toString(nanos / 100_000 % 10);
+	}
+
+	private static void appendString(Appendable out, String text) throws IOException {
+		out.append('"');
+		for (int n = 0, len = text.length(); n < len; n++) {
+			char ch = text.charAt(n);
+			switch (ch) {
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				default:
+					if (ch < 0x20) {
+						out.append(String.format("\\u%04x", (int) ch));
+					} else {
+						out.append(ch);
+					}
+			}
+		}
+		out.append('"');
+	}
+
+	/**
+	 * A running phase, ended by {@link #close()}.
+	 */
+	public static final class Phase implements AutoCloseable {
+
+		/**
+		 * Phase that records nothing, used when metrics are not collected.
+		 */
+		static final Phase NONE = new Phase();
+
+		private final PhaseStats stats;
+		private final PhaseEvent event;
+		private final long start;
+
+		private Phase() {
+			stats = null;
+			event = null;
+			start = 0;
+		}
+
+		Phase(PhaseStats stats, String name) {
+			this.stats = stats;
+			this.start = System.nanoTime();
+			event = new PhaseEvent();
+			event.phase = name;
+			event.begin();
+		}
+
+		@Override
+		public void close() {
+			if (stats == null) {
+				return;
+			}
+			stats.nanos.add(System.nanoTime() - start);
+			event.commit();
+		}
+	}
+
+	/**
+	 * A file being processed, ended by {@link #finish(long, long, int)}.
+	 *
+	 * <p>
+	 * A file that is not finished, e.g. because processing has failed, is not
+	 * reported.
+	 * </p>
+	 */
+	public final class FileTimer {
+
+		private final PhaseStats stats;
+		private final FileEvent event = new FileEvent();
+		private final long start = System.nanoTime();
+
+		private final LongAdder bytesRead = new LongAdder();
+		private final LongAdder bytesWritten = new LongAdder();
+		private final LongAdder strings = new LongAdder();
+
+		FileTimer(PhaseStats stats, String phase, String path) {
+			this.stats = stats;
+			event.phase = phase;
+			event.path = path;
+			event.begin();
+		}
+
+		/**
+		 * Adds to the amounts reported when the file is finished, e.g. for each of
+		 * several outputs created concurrently.
+		 */
+		public void add(long bytesRead, long bytesWritten, int strings) {
+			this.bytesRead.add(bytesRead);
+			this.bytesWritten.add(bytesWritten);
+			this.strings.add(strings);
+		}
+
+		/**
+		 * Ends processing of the file.
+		 *
+		 * @param bytesRead    The number of bytes parsed.
+		 * @param bytesWritten The number of bytes written.
+		 * @param strings      The number of texts processed.
+		 */
+		public void finish(long bytesRead, long bytesWritten, int strings) {
+			add(bytesRead, bytesWritten, strings);
+			finish();
+		}
+
+		/**
+		 * Ends processing of the file with the amounts {@link #add(long, long, int) added} before.
+		 */
+		public void finish() {
+			long nanos = System.nanoTime() - start;
+			FileRecord record = new FileRecord(event.phase, event.path, nanos, bytesRead.sum(), bytesWritten.sum(), strings.intValue());
+
+			stats.files.increment();
+			stats.fileNanos.add(nanos);
+			stats.bytesRead.add(record.bytesRead());
+			stats.bytesWritten.add(record.bytesWritten());
+			stats.strings.add(record.strings());
+			files.add(record);
+
+			event.bytesRead = record.bytesRead();
+			event.bytesWritten = record.bytesWritten();
+			event.strings = record.strings();
+			event.commit();
+		}
+	}
+
+	/**
+	 * A request to the translation service, ended by {@link #finish(int, boolean)}.
+	 */
+	public static final class RequestTimer {
+
+		private final LanguageStats stats;
+		private final RequestEvent event = new RequestEvent();
+		private final long start = System.nanoTime();
+
+		RequestTimer(LanguageStats stats, String destLang, int texts) {
+			this.stats = stats;
+			event.destLang = destLang;
+			event.texts = texts;
+			event.begin();
+		}
+
+		/**
+		 * Ends the request.
+		 *
+		 * @param billedChars The number of characters billed for the request.
+		 * @param success     Whether the request has been answered successfully.
+		 */
+		public void finish(int billedChars, boolean success) {
+			long nanos = System.nanoTime() - start;
+			stats.requests.increment();
+			if (!success) {
+				stats.failures.increment();
+			}
+			stats.texts.add(event.texts);
+			stats.billedChars.add(billedChars);
+			stats.nanos.add(nanos);
+			stats.maxNanos.accumulateAndGet(nanos, Math::max);
+			stats.buckets.incrementAndGet(bucket(nanos / 1_000_000));
+
+			event.billedChars = billedChars;
+			event.success = success;
+			event.commit();
+		}
+
+		private static int bucket(long millis) {
+			int n = 0;
+			while (n < LATENCY_BUCKETS_MILLIS.length && millis > LATENCY_BUCKETS_MILLIS[n]) {
+				n++;
+			}
+			return n;
+		}
+	}
+
+	static final class PhaseStats {
+		final LongAdder nanos = new LongAdder();
+		final LongAdder files = new LongAdder();
+		final LongAdder fileNanos = new LongAdder();
+		final LongAdder bytesRead = new LongAdder();
+		final LongAdder bytesWritten = new LongAdder();
+		final LongAdder strings = new LongAdder();
+	}
+
+	static final class LanguageStats {
+		final LongAdder requests = new LongAdder();
+		final LongAdder failures = new LongAdder();
+		final LongAdder texts = new LongAdder();
+		final LongAdder billedChars = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final AtomicLong maxNanos = new AtomicLong();
+		final AtomicLongArray buckets = new AtomicLongArray(LATENCY_BUCKETS_MILLIS.length + 1);
+	}
+
+	static final class CacheStats {
+		final LongAdder hits = new LongAdder();
+		final LongAdder misses = new LongAdder();
+	}
+
+	/**
+	 * Measurements of a single processed file.
+	 */
+	private record FileRecord(String phase, String path, long nanos, long bytesRead, long bytesWritten, int strings) {
+		// Pure data.
+	}
+
+}
@@ -0,0 +1,20 @@
+package de.haumacher.webtranslate.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a phase of a translation run, see {@link Metrics#startPhase(String)}.
+ */
+@Name("de.haumacher.webtranslate.Phase")
+@Label("Translation Phase")
+@Category("Web Translate")
+@Description("A phase of the translation pipeline.")
+class PhaseEvent extends jdk.jfr.Event {
+
+	@Label("Phase")
+	String phase;
+
+}
@@ -0,0 +1,29 @@
+package de.haumacher.webtranslate.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a request to the translation service, see {@link Metrics#startRequest(String, int)}.
+ */
+@Name("de.haumacher.webtranslate.TranslationRequest")
+@Label("Translation Request")
+@Category("Web Translate")
+@Description("A request sent to the translation service.")
+class RequestEvent extends jdk.jfr.Event {
+
+	@Label("Target Language")
+	String destLang;
+
+	@Label("Texts")
+	int texts;
+
+	@Label("Billed Characters")
+	int billedChars;
+
+	@Label("Success")
+	boolean success;
+
+}
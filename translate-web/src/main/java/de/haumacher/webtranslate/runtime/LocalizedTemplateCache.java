@@ -0,0 +1,269 @@
+package de.haumacher.webtranslate.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import de.haumacher.webtranslate.extract.PropertiesCodec;
+import de.haumacher.webtranslate.extract.PropertiesExtractor;
+import de.haumacher.webtranslate.synthesize.TemplateSkeleton;
+import de.haumacher.webtranslate.synthesize.TranslationSynthesizer;
+
+/**
+ * Creates localized templates on demand while serving an application.
+ *
+ * <p>
+ * Instead of writing all language variants of all templates to disk with the
+ * {@link TranslationSynthesizer}, a localized template is rendered on first
+ * request from the source template and the translated properties of the
+ * requested language. The result is identical to the template the
+ * {@link TranslationSynthesizer} would have written. Variants nobody requests
+ * are never created.
+ * </p>
+ *
+ * <p>
+ * Compiled source templates and rendered variants are kept in caches of
+ * bounded size, least recently used entries are evicted first. On each
+ * request, the size and modification time of the source template and the
+ * properties file are compared to those seen when the entry was created. If a
+ * file has changed, the entry is created anew. A file modified shortly before
+ * may be changed again without changing its size and modification time.
+ * Therefore, the contents of such a file are compared by hash, too.
+ * </p>
+ *
+ * <p>
+ * The cache is meant as back-end of a template resolver of the template
+ * engine, e.g. a Thymeleaf <code>ITemplateResolver</code> that resolves a
+ * template name and the locale of the request to
+ * {@link #getTemplate(String, String)}.
+ * </p>
+ *
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class LocalizedTemplateCache {
+
+	/**
+	 * Default maximum number of compiled templates and rendered variants kept each.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+	/**
+	 * The coarsest resolution of file modification times to expect, e.g. on FAT file systems.
+	 */
+	private static final long TIMESTAMP_RESOLUTION_MILLIS = 2000;
+
+	private final File templateDir;
+	private final File propertiesDir;
+	private final String srcLang;
+	private final int maxEntries;
+
+	/**
+	 * The codec of each thread serving requests.
+	 */
+	private final ThreadLocal<PropertiesCodec> codecs;
+
+	private final Map<String, CachedSkeleton> skeletons;
+	private final Map<String, CachedVariant> variants;
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * Creates a {@link LocalizedTemplateCache}.
+	 *
+	 * @param templateDir       The top-level template directory with a sub-directory for the source language.
+	 * @param propertiesDir     The top-level properties directory with a sub-directory for each target language.
+	 * @param srcLang           The language of the source templates.
+	 * @param propertiesCharset The encoding of the properties files.
+	 * @param maxEntries        The maximum number of compiled templates and rendered variants kept each.
+	 */
+	public LocalizedTemplateCache(File templateDir, File propertiesDir, String srcLang, Charset propertiesCharset, int maxEntries) {
+		this.templateDir = templateDir;
+		this.propertiesDir = propertiesDir;
+		this.srcLang = srcLang;
+		this.codecs = ThreadLocal.withInitial(() -> new PropertiesCodec(propertiesCharset));
+		this.maxEntries = Math.max(1, maxEntries);
+		this.skeletons = lruMap();
+		this.variants = lruMap();
+	}
+
+	private <V> Map<String, V> lruMap() {
+		return new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Entry<String, V> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * The template with the given name localized to the given language.
+	 *
+	 * <p>
+	 * Texts without translation, e.g. because the properties of the requested
+	 * language do not exist, are rendered in the source language.
+	 * </p>
+	 *
+	 * @param path The path of the source template relative to the source language directory, e.g. <code>sub/page.html</code>.
+	 * @param lang The requested language.
+	 * @return The localized template, <code>null</code> if there is no such source template.
+	 */
+	public String getTemplate(String path, String lang) throws IOException, ParserConfigurationException, SAXException {
+		File srcFile = srcFile(path);
+		if (!srcFile.isFile()) {
+			return null;
+		}
+		File propertiesFile = propertiesFile(srcFile, lang);
+		Stamp srcStamp = Stamp.of(srcFile);
+		Stamp propertiesStamp = Stamp.of(propertiesFile);
+
+		String key = lang + ":" + path;
+		CachedVariant variant;
+		synchronized (this) {
+			variant = variants.get(key);
+			if (variant != null && variant.srcStamp().equals(srcStamp) && variant.propertiesStamp().equals(propertiesStamp)) {
+				hits++;
+				return variant.content();
+			}
+			misses++;
+		}
+
+		// Render outside the lock, concurrent requests for the same variant may render it twice.
+		String content = getSkeleton(path, srcFile, srcStamp).render(loadProperties(propertiesFile));
+		synchronized (this) {
+			variants.put(key, new CachedVariant(content, srcStamp, propertiesStamp));
+		}
+		return content;
+	}
+
+	private TemplateSkeleton getSkeleton(String path, File srcFile, Stamp srcStamp) throws IOException, ParserConfigurationException, SAXException {
+		synchronized (this) {
+			CachedSkeleton skeleton = skeletons.get(path);
+			if (skeleton != null && skeleton.srcStamp().equals(srcStamp)) {
+				return skeleton.skeleton();
+			}
+		}
+
+		TemplateSkeleton skeleton = TemplateSkeleton.compile(PropertiesExtractor.parseHtml(srcFile));
+		synchronized (this) {
+			skeletons.put(path, new CachedSkeleton(skeleton, srcStamp));
+		}
+		return skeleton;
+	}
+
+	/**
+	 * Drops all cached data of the template with the given name, e.g. after its
+	 * modification time has been reset.
+	 */
+	public synchronized void invalidate(String path) {
+		skeletons.remove(path);
+		variants.keySet().removeIf(key -> key.substring(key.indexOf(':') + 1).equals(path));
+	}
+
+	/**
+	 * Drops all cached data.
+	 */
+	public synchronized void clear() {
+		skeletons.clear();
+		variants.clear();
+	}
+
+	/**
+	 * The number of requests answered from the cache.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * The number of requests that required rendering.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * The number of rendered variants in the cache.
+	 */
+	public synchronized int size() {
+		return variants.size();
+	}
+
+	private File srcFile(String path) {
+		Path srcDir = templateDir.toPath().resolve(srcLang).normalize();
+		Path result = srcDir.resolve(path).normalize();
+		if (!result.startsWith(srcDir) || result.equals(srcDir)) {
+			throw new IllegalArgumentException("Not a template path: " + path);
+		}
+		return result.toFile();
+	}
+
+	private File propertiesFile(File srcFile, String lang) {
+		if (lang.isEmpty() || lang.contains("/") || lang.contains("\\") || lang.contains("..")) {
+			throw new IllegalArgumentException("Not a language: " + lang);
+		}
+		Path relative = templateDir.toPath().resolve(srcLang).normalize().relativize(srcFile.toPath());
+		String propertiesName = PropertiesExtractor.baseName(srcFile) + ".properties";
+		return propertiesDir.toPath().resolve(lang).resolve(relative).resolveSibling(propertiesName).toFile();
+	}
+
+	private Map<String, String> loadProperties(File file) throws IOException {
+		if (!file.isFile()) {
+			return Collections.emptyMap();
+		}
+
+		return codecs.get().read(file);
+	}
+
+	/**
+	 * State of a file when a cache entry was created.
+	 *
+	 * @param size     The file size, <code>-1</code> if the file did not exist.
+	 * @param modified The modification time.
+	 * @param hash     The content hash, if the file was modified within the
+	 *                 resolution of file timestamps, <code>null</code> otherwise.
+	 */
+	private record Stamp(long size, long modified, String hash) {
+		static Stamp of(File file) throws IOException {
+			if (!file.isFile()) {
+				return new Stamp(-1, 0, null);
+			}
+			long modified = file.lastModified();
+			boolean recent = modified >= System.currentTimeMillis() - TIMESTAMP_RESOLUTION_MILLIS;
+			return new Stamp(file.length(), modified, recent ? hash(file) : null);
+		}
+
+		private static String hash(File file) throws IOException {
+			try {
+				byte[] hash = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath()));
+				return Base64.getEncoder().encodeToString(hash);
+			} catch (NoSuchAlgorithmException ex) {
+				throw new IllegalStateException("SHA-256 not supported.", ex);
+			}
+		}
+	}
+
+	private record CachedSkeleton(TemplateSkeleton skeleton, Stamp srcStamp) {
+		// Pure data.
+	}
+
+	private record CachedVariant(String content, Stamp srcStamp, Stamp propertiesStamp) {
+		// Pure data.
+	}
+
+}
@@ -0,0 +1,554 @@
+package de.haumacher.webtranslate.synthesize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import de.haumacher.webtranslate.extract.HtmlAnalyzer;
+import de.haumacher.webtranslate.extract.IntStack;
+import de.haumacher.webtranslate.extract.PlaceholderInjection;
+import de.haumacher.webtranslate.extract.PropertiesExtractor;
+import de.haumacher.webtranslate.extract.TemplateTree;
+import de.haumacher.webtranslate.extract.TextExtractor;
+import de.haumacher.webtranslate.extract.TextInjector;
+
+/**
+ * Compiled form of a source template that creates localized variants without
+ * copying and mutating a {@link TemplateTree} for each language.
+ *
+ * <p>
+ * A skeleton consists of literal markup fragments and slots. There is an
+ * attribute slot for each translatable attribute and a text slot for the
+ * contents of each element with a {@link HtmlAnalyzer#ID_ATTR text ID}. A text
+ * slot keeps a small model of the elements in its content that are referenced
+ * by <code>&lt;xN&gt;</code> placeholders in the translated text.
+ * </p>
+ *
+ * <p>
+ * {@link #render(Map)} produces exactly the same output as
+ * {@link HtmlAnalyzer#inject()} followed by
+ * {@link TemplateTree#write(OutputStream)}. A
+ * skeleton is immutable and may be rendered concurrently for multiple
+ * languages.
+ * </p>
+ */
+public class TemplateSkeleton {
+
+	private static final String DOCTYPE = "<!DOCTYPE html>\n";
+
+	/**
+	 * Either literal {@link String}s, {@link AttributeSlot}s, or {@link TextSlot}s.
+	 */
+	private final Object[] parts;
+
+	private final int size;
+
+	private TemplateSkeleton(Object[] parts, int size) {
+		this.parts = parts;
+		this.size = size;
+	}
+
+	/**
+	 * Compiles the given source template.
+	 *
+	 * @param tree The parsed source template with text IDs assigned.
+	 */
+	public static TemplateSkeleton compile(TemplateTree tree) {
+		Compiler compiler = new Compiler(tree);
+		compiler.append(DOCTYPE);
+		compiler.element(tree.getRoot(), true);
+		return compiler.build();
+	}
+
+	/**
+	 * Creates the localized variant of the template.
+	 *
+	 * @param textById The translated texts indexed by text ID.
+	 */
+	public String render(Map<String, String> textById) {
+		StringBuilder out = new StringBuilder(size + size / 4);
+		render(out, textById);
+		return out.toString();
+	}
+
+	/**
+	 * Appends the localized variant of the template to the given buffer.
+	 *
+	 * @param textById The translated texts indexed by text ID.
+	 */
+	public void render(StringBuilder out, Map<String, String> textById) {
+		for (Object part : parts) {
+			if (part instanceof String literal) {
+				out.append(literal);
+			} else if (part instanceof AttributeSlot slot) {
+				String text = textById.get(slot.key());
+				if (text == null) {
+					out.append(slot.value());
+				} else {
+					escapeAttribute(out, text);
+				}
+			} else {
+				((TextSlot) part).render(out, textById.get(((TextSlot) part).id()));
+			}
+		}
+	}
+
+	/**
+	 * Writes the localized variant of the template in UTF-8 encoding.
+	 *
+	 * @see #render(Map)
+	 */
+	public void write(OutputStream out, Map<String, String> textById) throws IOException {
+		out.write(render(textById).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Appends the start tag of the given element without any slots.
+	 */
+	static void appendStartTag(StringBuilder out, TemplateTree tree, int element) {
+		out.append('<').append(tree.getTagName(element));
+		for (int index : tree.getAttributeOrder(element)) {
+			out.append(' ').append(tree.getAttributeName(element, index)).append("=\"");
+			escapeAttribute(out, tree.getAttributeValue(element, index));
+			out.append('"');
+		}
+		out.append(PropertiesExtractor.isVoidElement(tree.getTagName(element)) ? "/>" : ">");
+	}
+
+	/**
+	 * Appends text content escaped the same way as the serializer does.
+	 */
+	static void escapeText(StringBuilder out, String text, int start, int end) {
+		int pos = start;
+		for (int n = start; n < end; n++) {
+			String replacement;
+			switch (text.charAt(n)) {
+				case '<': replacement = "&lt;"; break;
+				case '>': replacement = "&gt;"; break;
+				case '&': replacement = "&amp;"; break;
+				default: continue;
+			}
+			out.append(text, pos, n).append(replacement);
+			pos = n + 1;
+		}
+		out.append(text, pos, end);
+	}
+
+	/**
+	 * Appends an attribute value escaped the same way as the serializer does.
+	 */
+	static void escapeAttribute(StringBuilder out, String text) {
+		int pos = 0;
+		for (int n = 0, end = text.length(); n < end; n++) {
+			String replacement;
+			switch (text.charAt(n)) {
+				case '<': replacement = "&lt;"; break;
+				case '>': replacement = "&gt;"; break;
+				case '&': replacement = "&amp;"; break;
+				case '"': replacement = "&quot;"; break;
+				default: continue;
+			}
+			out.append(text, pos, n).append(replacement);
+			pos = n + 1;
+		}
+		out.append(text, pos, text.length());
+	}
+
+	/**
+	 * Slot for a translatable attribute.
+	 *
+	 * @param key   The property key of the attribute text.
+	 * @param value The escaped original value used if there is no translation.
+	 */
+	private record AttributeSlot(String key, String value) {
+		// Pure data.
+	}
+
+	/**
+	 * Builds the parts of a {@link TemplateSkeleton} from a {@link TemplateTree}.
+	 */
+	private static final class Compiler {
+		private final TemplateTree tree;
+		private final List<Object> parts = new ArrayList<>();
+		private final StringBuilder literal = new StringBuilder();
+		private int size;
+
+		Compiler(TemplateTree tree) {
+			this.tree = tree;
+		}
+
+		void append(String text) {
+			literal.append(text);
+		}
+
+		void slot(Object slot) {
+			flush();
+			parts.add(slot);
+		}
+
+		private void flush() {
+			if (literal.length() > 0) {
+				size += literal.length();
+				parts.add(literal.toString());
+				literal.setLength(0);
+			}
+		}
+
+		TemplateSkeleton build() {
+			flush();
+			return new TemplateSkeleton(parts.toArray(), size);
+		}
+
+		/**
+		 * Compiles the given element.
+		 *
+		 * @param active Whether text IDs create slots. Inside a text slot (and
+		 *               therefore inside code), elements are only copied.
+		 */
+		void element(int element, boolean active) {
+			String tagName = tree.getTagName(element);
+			String id = active ? tree.getAttribute(element, HtmlAnalyzer.ID_ATTR) : "";
+			boolean hasId = !id.isEmpty();
+
+			literal.append('<').append(tagName);
+			// Note: Attributes are written in the order of a DOM, see TemplateTree.write().
+			for (int index : tree.getAttributeOrder(element)) {
+				String name = tree.getAttributeName(element, index);
+				literal.append(' ').append(name).append("=\"");
+				if (hasId && HtmlAnalyzer.TEXT_ATTRS.contains(name)) {
+					StringBuilder value = new StringBuilder();
+					escapeAttribute(value, tree.getAttributeValue(element, index));
+					slot(new AttributeSlot(id + "." + name, value.toString()));
+				} else {
+					escapeAttribute(literal, tree.getAttributeValue(element, index));
+				}
+				literal.append('"');
+			}
+
+			boolean isVoid = PropertiesExtractor.isVoidElement(tagName);
+			literal.append(isVoid ? "/>" : ">");
+
+			if (hasId && !HtmlAnalyzer.CODE_TAGS.contains(tagName)) {
+				slot(TextSlot.create(id, tree, element));
+			} else {
+				contents(element, active && !hasId);
+			}
+
+			if (!isVoid) {
+				literal.append("</").append(tagName).append('>');
+			}
+		}
+
+		private void contents(int element, boolean active) {
+			for (int child = tree.getFirstChild(element); child != TemplateTree.NONE; child = tree.getNextSibling(child)) {
+				if (tree.isText(child)) {
+					String content = tree.getText(child);
+					escapeText(literal, content, 0, content.length());
+				} else {
+					element(child, active);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Slot for the contents of an element with a text ID.
+	 *
+	 * <p>
+	 * The contents are represented as a tree of nodes. Node <code>0</code> is the
+	 * element with the text ID itself, all other nodes are elements in its
+	 * contents. The rendering replays the rules of {@link TextInjector} on this
+	 * tree.
+	 * </p>
+	 */
+	private static final class TextSlot {
+
+		private static final Object[] NO_CHILDREN = {};
+
+		private final String id;
+
+		/**
+		 * The escaped contents of the element, if there is no translation.
+		 */
+		private final String original;
+
+		/**
+		 * The escaped start tag of each node.
+		 */
+		private final String[] startTags;
+
+		/**
+		 * The escaped end tag of each node.
+		 */
+		private final String[] endTags;
+
+		/**
+		 * The contents of each node in the source template, either escaped text
+		 * ({@link String}) or the index of a node ({@link Integer}).
+		 */
+		private final Object[][] contents;
+
+		/**
+		 * The node containing each node in the source template.
+		 */
+		private final int[] parents;
+
+		/**
+		 * Whether the original contents of a node are replaced by the translation.
+		 */
+		private final boolean[] replaced;
+
+		/**
+		 * The nodes referenced by the placeholders <code>&lt;x1&gt;</code>,
+		 * <code>&lt;x2&gt;</code>, ...
+		 */
+		private final int[] placeholders;
+
+		private TextSlot(String id, String original, String[] startTags, String[] endTags, Object[][] contents,
+				int[] parents, boolean[] replaced, int[] placeholders) {
+			this.id = id;
+			this.original = original;
+			this.startTags = startTags;
+			this.endTags = endTags;
+			this.contents = contents;
+			this.parents = parents;
+			this.replaced = replaced;
+			this.placeholders = placeholders;
+		}
+
+		public String id() {
+			return id;
+		}
+
+		static TextSlot create(String id, TemplateTree tree, int element) {
+			Builder builder = new Builder(tree);
+			builder.node(element, -1, true);
+
+			Compiler compiler = new Compiler(tree);
+			compiler.contents(element, false);
+			String original = compiler.literal.toString();
+
+			int cnt = builder.startTags.size();
+			int[] parents = new int[cnt];
+			boolean[] replaced = new boolean[cnt];
+			for (int n = 0; n < cnt; n++) {
+				parents[n] = builder.parents.get(n);
+				replaced[n] = builder.replaced.get(n);
+			}
+			int[] placeholders = new int[builder.placeholders.size()];
+			for (int n = 0; n < placeholders.length; n++) {
+				placeholders[n] = builder.placeholders.get(n);
+			}
+
+			return new TextSlot(id, original,
+				builder.startTags.toArray(new String[cnt]),
+				builder.endTags.toArray(new String[cnt]),
+				builder.contents.toArray(new Object[cnt][]),
+				parents, replaced, placeholders);
+		}
+
+		/**
+		 * Renders the contents of the slot.
+		 *
+		 * @param text The translated text, or <code>null</code> to keep the original contents.
+		 */
+		void render(StringBuilder out, String text) {
+			if (text == null) {
+				out.append(original);
+				return;
+			}
+			try {
+				new Injection(this, text).render(out);
+			} catch (Exception ex) {
+				throw new IllegalArgumentException("Failed to inject: " + text, ex);
+			}
+		}
+
+		/**
+		 * Collects the nodes of a {@link TextSlot}.
+		 */
+		private static final class Builder {
+			final TemplateTree tree;
+			final List<String> startTags = new ArrayList<>();
+			final List<String> endTags = new ArrayList<>();
+			final List<Object[]> contents = new ArrayList<>();
+			final List<Integer> parents = new ArrayList<>();
+			final List<Boolean> replaced = new ArrayList<>();
+			final List<Integer> placeholders = new ArrayList<>();
+
+			Builder(TemplateTree tree) {
+				this.tree = tree;
+			}
+
+			/**
+			 * Creates a node for the given element, see {@link TextInjector} for the
+			 * rules which elements get a placeholder and which are cleared.
+			 */
+			int node(int element, int parent, boolean hasTextSiblings) {
+				int index = startTags.size();
+				if (index > 0) {
+					String tagName = tree.getTagName(element);
+					StringBuilder start = new StringBuilder();
+					appendStartTag(start, tree, element);
+					startTags.add(start.toString());
+					endTags.add(PropertiesExtractor.isVoidElement(tagName) ? "" : "</" + tagName + ">");
+				} else {
+					// The element with the text ID is rendered outside the slot.
+					startTags.add("");
+					endTags.add("");
+				}
+				contents.add(NO_CHILDREN);
+				parents.add(parent);
+				replaced.add(hasTextSiblings);
+
+				List<Object> children = new ArrayList<>();
+				for (int child = tree.getFirstChild(element); child != TemplateTree.NONE; child = tree.getNextSibling(child)) {
+					if (tree.isText(child)) {
+						StringBuilder buffer = new StringBuilder();
+						String content = tree.getText(child);
+						escapeText(buffer, content, 0, content.length());
+						children.add(buffer.toString());
+					} else {
+						boolean containsText = TextExtractor.containsText(tree, child);
+						int subIndex = startTags.size();
+						if (hasTextSiblings || containsText) {
+							placeholders.add(subIndex);
+						}
+						node(child, index, containsText);
+						children.add(subIndex);
+					}
+				}
+				contents.set(index, children.toArray());
+				return index;
+			}
+		}
+	}
+
+	/**
+	 * The state of rendering a single {@link TextSlot} with a translated text.
+	 */
+	private static final class Injection extends PlaceholderInjection {
+		private final TextSlot slot;
+		private final String text;
+
+		/**
+		 * The current parent of each node, <code>-1</code> if the node is not part of the output.
+		 */
+		private final int[] parents;
+
+		/**
+		 * Contents added to each node. A non-negative value is the index of a node,
+		 * a negative value <code>-(n + 1)</code> the n-th text range in {@link #ranges}.
+		 */
+		private final IntStack[] added;
+
+		private final IntStack ranges = new IntStack();
+
+		private final boolean[] used;
+
+		Injection(TextSlot slot, String text) {
+			super(text, 0);
+			this.slot = slot;
+			this.text = text;
+			int cnt = slot.parents.length;
+			parents = new int[cnt];
+			for (int n = 0; n < cnt; n++) {
+				int parent = slot.parents[n];
+				parents[n] = parent < 0 || slot.replaced[parent] ? -1 : parent;
+			}
+			added = new IntStack[cnt];
+			used = new boolean[slot.placeholders.length];
+		}
+
+		void render(StringBuilder out) {
+			inject();
+			renderContents(out, 0);
+		}
+
+		@Override
+		protected int placeholderCount() {
+			return used.length;
+		}
+
+		@Override
+		protected int claim(int index) {
+			if (used[index]) {
+				return -1;
+			}
+			// Never use twice.
+			used[index] = true;
+			return slot.placeholders[index];
+		}
+
+		@Override
+		protected void appendElement(int node, int child) {
+			if (slot.replaced[node]) {
+				appendChild(node, child);
+			}
+		}
+
+		@Override
+		protected void appendText(int node, int start, int end) {
+			int range = ranges.size() / 2;
+			ranges.push(start);
+			ranges.push(end);
+			added(node).push(-(range + 1));
+		}
+
+		private void appendChild(int node, int child) {
+			for (int ancestor = node; ancestor >= 0; ancestor = parents[ancestor]) {
+				if (ancestor == child) {
+					throw new IllegalStateException("Element '" + slot.startTags[child] + "' cannot be moved into its own contents.");
+				}
+			}
+			parents[child] = node;
+			added(node).push(child);
+		}
+
+		private IntStack added(int node) {
+			IntStack result = added[node];
+			if (result == null) {
+				result = new IntStack(4);
+				added[node] = result;
+			}
+			return result;
+		}
+
+		private void renderNode(StringBuilder out, int node) {
+			out.append(slot.startTags[node]);
+			renderContents(out, node);
+			out.append(slot.endTags[node]);
+		}
+
+		private void renderContents(StringBuilder out, int node) {
+			if (!slot.replaced[node]) {
+				for (Object content : slot.contents[node]) {
+					if (content instanceof String literal) {
+						out.append(literal);
+					} else {
+						int child = ((Integer) content).intValue();
+						if (parents[child] == node) {
+							renderNode(out, child);
+						}
+					}
+				}
+			}
+			IntStack contents = added[node];
+			if (contents != null) {
+				for (int n = 0, cnt = contents.size(); n < cnt; n++) {
+					int content = contents.get(n);
+					if (content >= 0) {
+						renderNode(out, content);
+					} else {
+						int range = -content - 1;
+						escapeText(out, text, ranges.get(2 * range), ranges.get(2 * range + 1));
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -1,27 +1,27 @@
 package de.haumacher.webtranslate.synthesize;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Properties;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.xml.parsers.ParserConfigurationException;
 
-import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
-import de.haumacher.webtranslate.extract.HtmlAnalyzer;
+import de.haumacher.webtranslate.build.BuildManifest;
+import de.haumacher.webtranslate.extract.PropertiesCodec;
 import de.haumacher.webtranslate.extract.PropertiesExtractor;
+import de.haumacher.webtranslate.extract.TemplateParser;
+import de.haumacher.webtranslate.extract.TemplateTasks;
+import de.haumacher.webtranslate.io.AtomicFileOutputStream;
+import de.haumacher.webtranslate.metrics.Metrics;
 
 public class TranslationSynthesizer {
 
@@ -30,6 +30,16 @@ public class TranslationSynthesizer {
 	private List<String> destLangs;
 	private String srcLang;
 	private Charset propertiesCharset;
+
+	/**
+	 * The codec of each thread synthesizing templates.
+	 */
+	private final ThreadLocal<PropertiesCodec> codecs = ThreadLocal.withInitial(() -> new PropertiesCodec(propertiesCharset));
+	private BuildManifest manifest;
+	private int parallelism = 1;
+	private TemplateParser parser = TemplateParser.DOM;
+	private Metrics metrics;
+	private boolean quiet;
 	
 	public TranslationSynthesizer(File templateDir, File propertiesDir, String srcLang, List<String> destLangs, Charset propertiesCharset) {
 		this.templateDir = templateDir;
@@ -39,61 +49,199 @@ public class TranslationSynthesizer {
 		this.propertiesCharset = propertiesCharset;
 	}
 
+	/**
+	 * Manifest of a previous run, used to skip templates whose source and
+	 * translations have not changed since they were synthesized. <code>null</code>
+	 * to synthesize all templates.
+	 */
+	public void setManifest(BuildManifest manifest) {
+		this.manifest = manifest;
+	}
+
+	/**
+	 * The number of templates and languages processed concurrently.
+	 * 
+	 * <p>
+	 * With a value of <code>1</code> (the default), everything is processed on
+	 * the calling thread and processing stops at the first failure. With a larger
+	 * value, all templates are processed, failures are reported per file and an
+	 * {@link IOException} is thrown after all other templates have been
+	 * processed.
+	 * </p>
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * The parser for reading source templates. Default is {@link TemplateParser#DOM}.
+	 */
+	public void setParser(TemplateParser parser) {
+		this.parser = parser;
+	}
+
+	/**
+	 * Collector for timings and sizes of synthesized templates, <code>null</code> to not collect metrics.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Whether to suppress progress messages. Warnings and errors are still reported.
+	 */
+	public void setQuiet(boolean quiet) {
+		this.quiet = quiet;
+	}
+
+	/**
+	 * Creates templates for all target languages.
+	 * 
+	 * <p>
+	 * Each source template is parsed only once and compiled to a
+	 * {@link TemplateSkeleton}. The variants for all target languages are
+	 * rendered from this skeleton.
+	 * </p>
+	 * 
+	 * <p>
+	 * Variants whose translated properties do not exist yet, e.g. because their
+	 * translation was deferred, are skipped with a warning.
+	 * </p>
+	 */
 	public void synthesize() throws IOException, ParserConfigurationException, SAXException {
-		for (String destLang : destLangs) {
-			synthesize(new File(templateDir, srcLang), destLang);
-		}
+		List<File> templates = new ArrayList<>();
+		TemplateTasks.collectTemplates(new File(templateDir, srcLang), templates);
+		synthesize(templates);
 	}
 
-	private void synthesize(File srcFile, String destLang) throws IOException, ParserConfigurationException, SAXException {
-		if (srcFile.isDirectory()) {
-			for (File sub : srcFile.listFiles()) {
-				synthesize(sub, destLang);
+	/**
+	 * Creates target language variants only for the given source templates, e.g.
+	 * after they or their translations have been changed.
+	 * 
+	 * @param templates Templates in the source language directory.
+	 */
+	public void synthesize(List<File> templates) throws IOException, ParserConfigurationException, SAXException {
+		Metrics.Phase phase = Metrics.startPhase(metrics, Metrics.SYNTHESIZE);
+		try {
+			if (parallelism > 1) {
+				synthesizeParallel(templates);
+			} else {
+				for (File template : templates) {
+					synthesizeHtml(template);
+				}
 			}
-		} else if (srcFile.getName().endsWith(".html")) {
-			synthesizeHtml(srcFile, destLang);
+		} finally {
+			phase.close();
 		}
 	}
 
-	private void synthesizeHtml(File srcFile, String destLang) throws IOException, ParserConfigurationException, SAXException {
+	private void synthesizeParallel(List<File> templates) throws IOException {
+		TemplateTasks.runParallel(parallelism, templates, "synthesize", template -> {
+			synthesizeHtml(template);
+			return true;
+		});
+	}
+
+	private void synthesizeHtml(File srcFile) throws IOException, ParserConfigurationException, SAXException {
 		String propertiesName = PropertiesExtractor.baseName(srcFile) + ".properties";
-		
 		Path path = templateDir.toPath().resolve(srcLang).relativize(srcFile.toPath());
-		File propertiesFile = propertiesDir.toPath().resolve(destLang).resolve(path).getParent().resolve(propertiesName).toFile();
-		File outputFile = templateDir.toPath().resolve(destLang).resolve(path).toFile();
+		
+		List<Target> targets = new ArrayList<>();
+		for (String destLang : destLangs) {
+			File propertiesFile = propertiesDir.toPath().resolve(destLang).resolve(path).getParent().resolve(propertiesName).toFile();
+			File outputFile = templateDir.toPath().resolve(destLang).resolve(path).toFile();
+			if (!propertiesFile.exists()) {
+				// E.g. deferred by the character budget of the translation.
+				System.err.println("WARN: Skipping '" + outputFile.getPath() + "', translations not found: " + propertiesFile.getPath());
+				continue;
+			}
+			
+			Target target = new Target(outputFile, propertiesFile, "synthesize:" + outputFile.getPath(), List.of(srcFile, propertiesFile, outputFile));
+			if (manifest != null) {
+				boolean upToDate = manifest.isUpToDate(target.step(), target.files());
+				if (metrics != null) {
+					metrics.cacheAccess(Metrics.BUILD_MANIFEST, upToDate);
+				}
+				if (upToDate) {
+					continue;
+				}
+			}
+			targets.add(target);
+		}
+		if (targets.isEmpty()) {
+			return;
+		}
+		
+		// Reported per source template, the amounts of all variants are added up.
+		Metrics.FileTimer timer = metrics == null ? null : metrics.startFile(Metrics.SYNTHESIZE, srcFile);
+		TemplateSkeleton skeleton = TemplateSkeleton.compile(parser.parseTree(srcFile));
+		
+		if (parallelism > 1 && targets.size() > 1 && ForkJoinTask.inForkJoinPool()) {
+			List<ForkJoinTask<Object>> tasks = new ArrayList<>(targets.size());
+			for (Target target : targets) {
+				tasks.add(ForkJoinTask.adapt(() -> {
+					synthesizeHtml(target, skeleton, timer);
+					return null;
+				}));
+			}
+			ForkJoinTask.invokeAll(tasks);
+		} else {
+			for (Target target : targets) {
+				synthesizeHtml(target, skeleton, timer);
+			}
+		}
+		
+		if (timer != null) {
+			timer.finish(srcFile.length(), 0, 0);
+		}
+	}
 
-		System.err.println("Synthesizing: " + outputFile.getPath());
+	private void synthesizeHtml(Target target, TemplateSkeleton skeleton, Metrics.FileTimer timer) throws IOException {
+		File outputFile = target.outputFile();
+		if (!quiet) {
+			System.err.println("Synthesizing: " + outputFile.getPath());
+		}
 
-		Properties properties = new Properties();
-		try (FileInputStream in = new FileInputStream(propertiesFile)) {
-			properties.load(new InputStreamReader(in, propertiesCharset));
+		Map<String, String> properties = codecs.get().read(target.propertiesFile());
+		
+		try (AtomicFileOutputStream out = new AtomicFileOutputStream(outputFile)) {
+			skeleton.write(out, properties);
+			out.commit();
 		}
 		
-		Document document = PropertiesExtractor.parseHtml(srcFile);
-		HtmlAnalyzer analyzer = new HtmlAnalyzer(document);
-		analyzer.setTextById(toMap(properties));
-		analyzer.inject();
+		if (timer != null) {
+			timer.add(target.propertiesFile().length(), outputFile.length(), properties.size());
+		}
 		
-		outputFile.getParentFile().mkdirs();
-		try (FileOutputStream out = new FileOutputStream(outputFile)) {
-			PropertiesExtractor.serializeDocument(out, document);
+		if (manifest != null) {
+			manifest.record(target.step(), target.files());
 		}
 	}
 
-	private Map<String, String> toMap(Properties properties) {
-		HashMap<String, String> result = new HashMap<>();
-		for (Entry<Object, Object> entry : properties.entrySet()) {
-			result.put((String)entry.getKey(), (String)entry.getValue());
-		}
-		return result;
+	/**
+	 * A single language variant of a source template.
+	 * 
+	 * @param outputFile     The template to create.
+	 * @param propertiesFile The translated properties to inject.
+	 * @param step           The name of the step in the {@link BuildManifest}.
+	 * @param files          All files involved in creating the variant.
+	 */
+	private record Target(File outputFile, File propertiesFile, String step, List<File> files) {
+		// Pure data.
 	}
-	
+
 	public static void main(String[] args) throws IOException, ParserConfigurationException, SAXException {
 		File templateDir = new File(args[0]);
 		File propertiesDir = new File(args[1]);
 		String srcLang = args[2];
 		List<String> destLangs = Arrays.stream(args[3].split(",")).map(String::strip).toList();
 		Charset propertiesCharset = args.length > 4 ? Charset.forName(args[4]) : StandardCharsets.ISO_8859_1;
-		new TranslationSynthesizer(templateDir, propertiesDir, srcLang, destLangs, propertiesCharset).synthesize();
+		int parallelism = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+		TemplateParser parser = args.length > 6 ? TemplateParser.valueOf(args[6]) : TemplateParser.DOM;
+		
+		TranslationSynthesizer synthesizer = new TranslationSynthesizer(templateDir, propertiesDir, srcLang, destLangs, propertiesCharset);
+		synthesizer.setParallelism(parallelism);
+		synthesizer.setParser(parser);
+		synthesizer.synthesize();
 	}
 }
@@ -0,0 +1,88 @@
+package de.haumacher.webtranslate.translate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import com.deepl.api.DeepLClient;
+import com.deepl.api.DeepLClientOptions;
+import com.deepl.api.DeepLException;
+import com.deepl.api.TextResult;
+
+/**
+ * {@link TranslationBackend} using the DeepL API.
+ *
+ * <p>
+ * The DeepL client blocks while waiting for a response. Each request therefore
+ * occupies a thread of the executor until it is answered. Limiting the number
+ * of concurrent requests is up to the caller.
+ * </p>
+ */
+public class DeepLBackend implements TranslationBackend {
+
+	private final DeepLClient client;
+	private final Executor executor;
+
+	/**
+	 * Creates a {@link DeepLBackend} for the default DeepL server.
+	 */
+	public DeepLBackend(String apikey) {
+		this(new DeepLClient(apikey));
+	}
+
+	/**
+	 * Creates a {@link DeepLBackend} sending requests to the given server, e.g. a
+	 * proxy or a local stand-in for tests.
+	 */
+	public DeepLBackend(String apikey, String serverUrl) {
+		this(new DeepLClient(apikey, options(serverUrl)));
+	}
+
+	private static DeepLClientOptions options(String serverUrl) {
+		DeepLClientOptions options = new DeepLClientOptions();
+		options.setServerUrl(serverUrl);
+		return options;
+	}
+
+	/**
+	 * Creates a {@link DeepLBackend} with a pre-configured client.
+	 */
+	public DeepLBackend(DeepLClient client) {
+		this(client, Executors.newCachedThreadPool(task -> {
+			Thread thread = new Thread(task, "deepl-request");
+			thread.setDaemon(true);
+			return thread;
+		}));
+	}
+
+	/**
+	 * Creates a {@link DeepLBackend} running its requests on the given executor.
+	 */
+	public DeepLBackend(DeepLClient client, Executor executor) {
+		this.client = client;
+		this.executor = executor;
+	}
+
+	@Override
+	public CompletableFuture<List<Translation>> translate(List<String> texts, String srcLang, String destLang) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				List<TextResult> results = client.translateText(texts, srcLang, destLang);
+				List<Translation> translations = new ArrayList<>(results.size());
+				for (TextResult result : results) {
+					translations.add(new Translation(result.getText(), result.getBilledCharacters()));
+				}
+				return translations;
+			} catch (DeepLException ex) {
+				throw new CompletionException(ex);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(ex);
+			}
+		}, executor);
+	}
+
+}
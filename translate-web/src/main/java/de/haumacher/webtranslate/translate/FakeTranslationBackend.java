@@ -0,0 +1,56 @@
+package de.haumacher.webtranslate.translate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process {@link TranslationBackend} for tests and benchmarks.
+ *
+ * <p>
+ * A translation is the source text prefixed with the upper-case target
+ * language, e.g. <code>[DE] Some &lt;x1&gt;text&lt;/x1&gt;</code>, so all
+ * placeholders survive. The billed characters are the code points of the
+ * source text, as with DeepL.
+ * </p>
+ */
+public class FakeTranslationBackend implements TranslationBackend {
+
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger texts = new AtomicInteger();
+
+	@Override
+	public CompletableFuture<List<Translation>> translate(List<String> texts, String srcLang, String destLang) {
+		requests.incrementAndGet();
+		this.texts.addAndGet(texts.size());
+
+		List<Translation> result = new ArrayList<>(texts.size());
+		for (String text : texts) {
+			result.add(new Translation(translate(text, destLang), text.codePointCount(0, text.length())));
+		}
+		return CompletableFuture.completedFuture(result);
+	}
+
+	/**
+	 * The translation this backend creates for the given text.
+	 */
+	public static String translate(String text, String destLang) {
+		return "[" + destLang.toUpperCase() + "] " + text;
+	}
+
+	/**
+	 * The number of requests received.
+	 */
+	public int getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * The number of texts translated.
+	 */
+	public int getTexts() {
+		return texts.get();
+	}
+
+}
@@ -1,31 +1,45 @@
 package de.haumacher.webtranslate.translate;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 
-import com.deepl.api.DeepLClient;
 import com.deepl.api.DeepLException;
-import com.deepl.api.TextResult;
 
-import de.haumacher.webtranslate.extract.PropertiesWriter;
+import de.haumacher.webtranslate.extract.PropertiesCodec;
+import de.haumacher.webtranslate.metrics.Metrics;
+import de.haumacher.webtranslate.translate.TranslationBackend.Translation;
+import de.haumacher.webtranslate.translate.TranslationJob.Segment;
 
 public class PropertiesTranslator {
 
+	/**
+	 * Maximum number of texts DeepL accepts in a single request.
+	 */
+	public static final int DEFAULT_MAX_BATCH_TEXTS = 50;
+
+	/**
+	 * Maximum request size DeepL accepts (128 KiB) minus some space for the remaining request parameters.
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 128 * 1024 - 1024;
+
 	/**
 	 * Top-level properties directory.
 	 * 
@@ -37,113 +51,569 @@ public class PropertiesTranslator {
 	private File propertiesDir;
 	private String srcLang;
 	private List<String> destLangs;
-	private DeepLClient client;
+	private String apikey;
+	private TranslationBackend backend;
 	
 	private int  totalChars;
 	private File src;
 	private NameStrategy nameStrategy;
 	private Charset propertiesCharset;
-	
+	private PropertiesCodec codec;
+	private int concurrency = 1;
+	private int maxBatchTexts = DEFAULT_MAX_BATCH_TEXTS;
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+	private long charBudget = Long.MAX_VALUE;
+	private TranslationMemory memory;
+	private TranslationJournal journal;
+	private Metrics metrics;
+	private boolean quiet;
+
 	public PropertiesTranslator(String apikey, String srcLang, List<String> destLangs, File propertiesDir, File src, NameStrategy nameStrategy, Charset propertiesCharset) {
+		this(new DeepLBackend(apikey), srcLang, destLangs, propertiesDir, src, nameStrategy, propertiesCharset);
+		this.apikey = apikey;
+	}
+
+	/**
+	 * Creates a {@link PropertiesTranslator} using the given translation service.
+	 */
+	public PropertiesTranslator(TranslationBackend backend, String srcLang, List<String> destLangs, File propertiesDir, File src, NameStrategy nameStrategy, Charset propertiesCharset) {
+		this.backend = backend;
 		this.srcLang = srcLang;
 		this.destLangs = destLangs;
 		this.nameStrategy = nameStrategy;
 		this.src = src != null ? src : new File(propertiesDir, srcLang);
 		this.propertiesDir = propertiesDir;
 		this.propertiesCharset = propertiesCharset;
-		
-        client = new DeepLClient(apikey);		
+		this.codec = new PropertiesCodec(propertiesCharset);
+	}
+
+	/**
+	 * Sends requests to the given server instead of the default DeepL server,
+	 * e.g. to a proxy or a local stand-in for tests.
+	 */
+	public void setServerUrl(String serverUrl) {
+		if (apikey == null) {
+			throw new IllegalStateException("Server URL can only be set, if translating with DeepL.");
+		}
+		backend = new DeepLBackend(apikey, serverUrl);
+	}
+
+	/**
+	 * The maximum number of translation requests in flight at the same time.
+	 * 
+	 * <p>
+	 * With a value of <code>1</code> (the default), all requests are sent one
+	 * after another and no further request is sent after a failure.
+	 * </p>
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.max(1, concurrency);
+	}
+
+	/**
+	 * Limits for packing texts from many files into a single translation request.
+	 *
+	 * @param maxTexts The maximum number of texts in a single request.
+	 * @param maxSize  The maximum size of the texts in a single request in bytes.
+	 */
+	public void setBatchLimits(int maxTexts, int maxSize) {
+		this.maxBatchTexts = Math.max(1, maxTexts);
+		this.maxBatchSize = Math.max(1, maxSize);
+	}
+
+	/**
+	 * The maximum number of characters to send to the translation service in a
+	 * single call to {@link #translate()}.
+	 *
+	 * <p>
+	 * Files are translated in the order they are found until the texts of the
+	 * next file would exceed the budget. This and all following files are left
+	 * unchanged and are translated in a later run. Since a file is either
+	 * translated completely or not at all, no characters are spent on partial
+	 * translations that cannot be written. By default, there is no limit.
+	 * </p>
+	 *
+	 * <p>
+	 * A file whose texts exceed the whole budget on their own is skipped with a
+	 * warning, so that it does not block all following files in every run. It
+	 * is only translated after the budget has been raised.
+	 * </p>
+	 *
+	 * @see #plan()
+	 */
+	public void setCharBudget(long maxChars) {
+		this.charBudget = Math.max(0, maxChars);
+	}
+
+	/**
+	 * Translation memory to consult before sending texts to the translation
+	 * service, <code>null</code> to translate all missing texts.
+	 */
+	public void setTranslationMemory(TranslationMemory memory) {
+		this.memory = memory;
+	}
+
+	/**
+	 * Journal to record translations in as soon as they are received, and to
+	 * resume an aborted run from, <code>null</code> to not journal translations.
+	 */
+	public void setJournal(TranslationJournal journal) {
+		this.journal = journal;
 	}
 
+	/**
+	 * Collector for request latencies, billed characters, and written files,
+	 * <code>null</code> to not collect metrics.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Whether to suppress progress messages. Warnings and errors are still reported.
+	 */
+	public void setQuiet(boolean quiet) {
+		this.quiet = quiet;
+	}
+
+	/**
+	 * Translates all source properties into all target languages.
+	 *
+	 * <p>
+	 * Untranslated texts of all files are collected per target language and
+	 * packed into as few requests as possible. After all requests have been
+	 * answered, the translations are written to their destination files. If a
+	 * request fails, all files whose translations are complete are written
+	 * nevertheless.
+	 * </p>
+	 *
+	 * <p>
+	 * Afterwards, the {@link #setJournal(TranslationJournal) journal} only keeps
+	 * translations for the destination files of the current sources, including
+	 * files deferred by the {@link #setCharBudget(long) character budget}.
+	 * </p>
+	 */
 	public void translate() throws IOException, DeepLException, InterruptedException {
+		List<File> files = collectSources();
+		translate(files);
+		if (journal != null) {
+			journal.retain(outputs(files));
+		}
+	}
+
+	/**
+	 * Translates only the given source properties into all target languages,
+	 * e.g. after they have been extracted from changed templates.
+	 *
+	 * @param files Properties files in the source directory.
+	 * @see #translate()
+	 */
+	public void translate(List<File> files) throws IOException, DeepLException, InterruptedException {
+		Metrics.Phase phase = Metrics.startPhase(metrics, Metrics.TRANSLATE);
+		try {
+			translateFiles(files);
+		} finally {
+			phase.close();
+		}
+	}
+
+	/**
+	 * Computes what {@link #translate()} would send to the translation service
+	 * without contacting it.
+	 *
+	 * <p>
+	 * Texts found in the {@link #setTranslationMemory(TranslationMemory)
+	 * translation memory} are not counted as texts to translate. No file is
+	 * written.
+	 * </p>
+	 */
+	public TranslationPlan plan() throws IOException {
+		return plan(collectSources());
+	}
+
+	/**
+	 * Computes what {@link #translate(List)} would send to the translation
+	 * service for the given source properties without contacting it.
+	 *
+	 * @see #plan()
+	 */
+	public TranslationPlan plan(List<File> files) throws IOException {
+		TranslationPlan plan = new TranslationPlan();
+		prepare(files, new ArrayList<>(), new ArrayList<>(), new HashMap<>(), plan);
+		return plan;
+	}
+
+	private void translateFiles(List<File> files) throws IOException, DeepLException, InterruptedException {
+		List<TranslationJob> jobs = new ArrayList<>();
+		List<RequestBatch> batches = new ArrayList<>();
+		Map<Segment, List<Segment>> copies = new HashMap<>();
+		prepare(files, jobs, batches, copies, null);
+
+		try {
+			translateBatches(batches, copies);
+		} finally {
+			writeResults(jobs);
+		}
+
+		if (!quiet) {
+			System.err.println("Total billed chars: " + totalChars);
+			if (memory != null) {
+				System.err.println("Translation memory hits: " + memory.getHits() + ", misses: " + memory.getMisses() + ", size: " + memory.size());
+			}
+		}
+	}
+
+	/**
+	 * Creates the jobs for all given files and target languages and packs the
+	 * texts to translate into batches.
+	 *
+	 * <p>
+	 * Texts that are equal after {@link TranslationMemory#normalize(String)
+	 * normalization} are sent only once per target language, e.g. labels of
+	 * buttons that appear in many templates. The first segment with such a text
+	 * is packed into a batch, all further segments with the same text are
+	 * recorded as its copies and receive the same translation.
+	 * </p>
+	 *
+	 * @param copies Receives the segments sharing the translation of a segment that is sent.
+	 * @param plan   The plan to describe the work in, <code>null</code> when actually translating.
+	 */
+	private void prepare(List<File> files, List<TranslationJob> jobs, List<RequestBatch> batches, Map<Segment, List<Segment>> copies, TranslationPlan plan) throws IOException {
+		long budgetUsed = 0;
+		int deferred = 0;
+		int oversized = 0;
 		for (String destLang : destLangs) {
 			File destDir = nameStrategy.destDir(propertiesDir, destLang);
 			
-			System.err.println();
-			System.err.println("# Translating to '" + destLang + "': " + destDir);
-			System.err.println();
-			translate(src, destLang, destDir);
+			if (plan == null && !quiet) {
+				System.err.println("# Translating to '" + destLang + "': " + destDir);
+			}
+
+			List<Segment> segments = new ArrayList<>();
+			Map<String, Segment> sent = new HashMap<>();
+			int reused = 0;
+			int resumed = 0;
+			int shared = 0;
+			int outdated = 0;
+			for (File file : files) {
+				TranslationJob job = createJob(file, destLang, destDir);
+
+				List<Segment> jobSegments = new ArrayList<>();
+				Map<String, Segment> jobSent = new HashMap<>();
+				Map<Segment, Segment> jobCopies = new LinkedHashMap<>();
+				int jobChars = 0;
+				int jobReused = 0;
+				int jobResumed = 0;
+				for (Segment segment : job.getSegments()) {
+					String journaled = journal == null ? null : journal.lookup(job.getOutput(), segment.key(), segment.text());
+					if (journaled != null) {
+						segment.setTranslation(journaled, 0);
+						jobResumed++;
+						continue;
+					}
+
+					String translation;
+					if (memory == null) {
+						translation = null;
+					} else if (plan != null) {
+						translation = memory.peek(srcLang, destLang, segment.text());
+					} else {
+						translation = memory.lookup(srcLang, destLang, segment.text());
+						if (metrics != null) {
+							metrics.cacheAccess(Metrics.TRANSLATION_MEMORY, translation != null);
+						}
+					}
+					if (translation != null) {
+						segment.setTranslation(translation, 0);
+						jobReused++;
+						continue;
+					}
+
+					String normalized = TranslationMemory.normalize(segment.text());
+					Segment original = sent.get(normalized);
+					if (original == null) {
+						original = jobSent.get(normalized);
+					}
+					if (original != null) {
+						jobCopies.put(segment, original);
+					} else {
+						jobSent.put(normalized, segment);
+						jobSegments.add(segment);
+						jobChars += segment.text().codePointCount(0, segment.text().length());
+					}
+				}
+				if (jobChars > charBudget) {
+					// Would block all following files in every run.
+					if (plan == null) {
+						System.err.println("WARN: Skipping '" + file.getPath() + "' for '" + destLang + "', its " + jobChars + " characters exceed the character budget of " + charBudget + ".");
+					}
+					oversized++;
+					continue;
+				}
+				if (deferred > 0 || budgetUsed + jobChars > charBudget) {
+					deferred++;
+					continue;
+				}
+				budgetUsed += jobChars;
+
+				jobs.add(job);
+				segments.addAll(jobSegments);
+				sent.putAll(jobSent);
+				for (Map.Entry<Segment, Segment> copy : jobCopies.entrySet()) {
+					copies.computeIfAbsent(copy.getValue(), x -> new ArrayList<>()).add(copy.getKey());
+				}
+				shared += jobCopies.size();
+				outdated += job.getOutdatedCount();
+				reused += jobReused;
+				resumed += jobResumed;
+				int jobTexts = jobSegments.size();
+
+				if (plan != null && (jobTexts > 0 || jobCopies.size() > 0 || jobReused > 0 || jobResumed > 0)) {
+					plan.addEntry(new TranslationPlan.Entry(file, job.getOutput(), destLang, jobTexts, jobChars, job.getOutdatedCount(), jobCopies.size(), jobReused, jobResumed));
+				}
+			}
+
+			List<RequestBatch> langBatches = RequestBatch.pack(destLang, segments, maxBatchTexts, maxBatchSize);
+			if (plan != null) {
+				plan.addRequests(destLang, langBatches);
+			} else if (!quiet) {
+				System.err.println("Texts to translate: " + segments.size() + ", duplicates: " + shared + ", outdated: " + outdated + ", from memory: " + reused + ", from journal: " + resumed + ", requests: " + langBatches.size());
+			}
+			batches.addAll(langBatches);
+		}
+
+		if (plan != null) {
+			plan.setDeferred(deferred + oversized);
+		} else if (deferred > 0) {
+			System.err.println("WARN: Character budget of " + charBudget + " reached, " + deferred + " files are translated in a later run.");
 		}
-		
-		System.err.println("Total billed chars: " + totalChars);
 	}
 
-	private void translate(File file, String destLang, File destDir) throws IOException, DeepLException, InterruptedException {
+	/**
+	 * All source properties files.
+	 *
+	 * <p>
+	 * With {@link NameStrategy#LANG_TAG_NAME}, the translations may be stored in
+	 * the source directory. Translated files and their
+	 * {@link SourceFingerprints} sidecars are therefore not considered sources.
+	 * </p>
+	 */
+	private List<File> collectSources() {
+		List<File> files = new ArrayList<>();
+		collectProperties(src, files);
+		files.removeIf(outputs(files)::contains);
+		return files;
+	}
+
+	/**
+	 * The destination files of the given sources in all target languages.
+	 */
+	private Set<File> outputs(List<File> files) {
+		Set<File> outputs = new HashSet<>();
+		for (String destLang : destLangs) {
+			File destDir = nameStrategy.destDir(propertiesDir, destLang);
+			for (File file : files) {
+				outputs.add(output(file, destLang, destDir));
+			}
+		}
+		return outputs;
+	}
+
+	private static void collectProperties(File file, List<File> result) {
 		if (file.isDirectory()) {
 			for (File sub : file.listFiles()) {
-				translate(sub, destLang, destDir);
+				collectProperties(sub, result);
 			}
 		} else if (file.getName().endsWith(".properties")) {
-			translateProperties(file, destLang, destDir);
+			result.add(file);
+		} else if (file.getName().endsWith(SourceFingerprints.SUFFIX)) {
+			// Sidecar of a translation stored in the source directory.
 		} else {
 			System.err.println("WARN: Ignoring unexpected file: " + file.getPath());
 		}
 	}
 
-	private void translateProperties(File file, String destLang, File destDir) throws IOException, DeepLException, InterruptedException {
-		System.err.println("Processing: " + file.getPath());
-		
+	private TranslationJob createJob(File file, String destLang, File destDir) throws IOException {
+		File output = output(file, destLang, destDir);
+
+		Map<String, String> srcProperties = load(file);
+		Map<String, String> destProperties = output.exists() ? load(output) : Collections.emptyMap();
+		Map<String, String> fingerprints = SourceFingerprints.load(output);
+
+		return new TranslationJob(file, output, destLang, srcProperties, destProperties, fingerprints);
+	}
+
+	private File output(File file, String destLang, File destDir) {
 		Path path;
 		if (src.equals(file)) {
 			path = src.toPath().getParent().relativize(file.toPath());
 		} else {
 			path = src.toPath().relativize(file.toPath());
 		}
-		File output = destDir.toPath().resolve(nameStrategy.destPath(path, destLang)).toFile();
+		return destDir.toPath().resolve(nameStrategy.destPath(path, destLang)).toFile();
+	}
 
-		Properties srcProperties = new Properties();
-		srcProperties.load(new InputStreamReader(new FileInputStream(file), propertiesCharset));
-		
-		Properties destProperties = new Properties();
-		if (output.exists()) {
-			destProperties.load(new InputStreamReader(new FileInputStream(output), propertiesCharset));
-		}
-
-		List<String> keys = srcProperties.keySet().stream().map(x -> ((String) x)).sorted().toList();
-		List<String> inputs = new ArrayList<>();
-		StringBuilder context = new StringBuilder();
-		for (String key : keys) {
-			if (destProperties.containsKey(key)) {
-				context.append(srcProperties.getProperty(key));
-				context.append("\n");
-			} else {
-				inputs.add(srcProperties.getProperty(key));
+	private Map<String, String> load(File file) throws IOException {
+		return codec.read(file);
+	}
+
+	private void translateBatches(List<RequestBatch> batches, Map<Segment, List<Segment>> copies) throws IOException, DeepLException, InterruptedException {
+		Semaphore inFlight = new Semaphore(concurrency);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<CompletableFuture<Integer>> requests = new ArrayList<>(batches.size());
+		for (RequestBatch batch : schedule(batches)) {
+			inFlight.acquire();
+			if (failure.get() != null) {
+				inFlight.release();
+				break;
+			}
+
+			Metrics.RequestTimer timer = metrics == null ? null : metrics.startRequest(batch.getDestLang(), batch.getTexts().size());
+			CompletableFuture<Integer> request;
+			try {
+				request = backend.translate(batch.getTexts(), srcLang, batch.getDestLang())
+					.thenApply(results -> scatter(batch, results, copies));
+			} catch (RuntimeException ex) {
+				request = CompletableFuture.failedFuture(ex);
+			}
+			requests.add(request.whenComplete((chars, ex) -> {
+				if (timer != null) {
+					timer.finish(ex == null ? chars : 0, ex == null);
+				}
+				if (ex != null) {
+					failure.compareAndSet(null, unwrap(ex));
+				}
+				inFlight.release();
+			}));
+		}
+
+		for (CompletableFuture<Integer> request : requests) {
+			try {
+				totalChars += request.get();
+			} catch (ExecutionException ex) {
+				// Reported below.
 			}
 		}
 		
-		{
-			List<TextResult> results = inputs.isEmpty() ? Collections.emptyList() : client.translateText(inputs, srcLang, destLang);
-			
-			output.getParentFile().mkdirs();
-			
-			Map<String, String> updated = new HashMap<>();
-			int chars = 0;
-			Iterator<TextResult> resultIt = results.iterator();
-			for (String key : keys) {
-				String value;
-				if (destProperties.containsKey(key)) {
-					value = destProperties.getProperty(key);
-				} else {
-					TextResult result = resultIt.next();
-					value = result.getText();
-					chars += result.getBilledCharacters();
+		Throwable problem = failure.get();
+		if (problem instanceof IOException io) {
+			throw io;
+		} else if (problem instanceof DeepLException deepL) {
+			throw deepL;
+		} else if (problem instanceof InterruptedException interrupted) {
+			throw interrupted;
+		} else if (problem instanceof RuntimeException runtime) {
+			throw runtime;
+		} else if (problem != null) {
+			throw new IOException("Translation failed.", problem);
+		}
+	}
+
+	/**
+	 * The order in which to send the given batches.
+	 *
+	 * <p>
+	 * With more than one request in flight, the batches with the most characters
+	 * are sent first. Since the time to answer a request grows with its size,
+	 * this avoids that the run ends waiting for a single large request that was
+	 * started last while all other connections are idle. With a single
+	 * connection, the order does not change the duration, and the original order
+	 * is kept, so that a {@link #setCharBudget(long) budget} completes files in
+	 * the order they were found.
+	 * </p>
+	 */
+	private List<RequestBatch> schedule(List<RequestBatch> batches) {
+		if (concurrency <= 1) {
+			return batches;
+		}
+		List<RequestBatch> result = new ArrayList<>(batches);
+		result.sort(Comparator.comparingInt(RequestBatch::getChars).reversed());
+		return result;
+	}
+
+	private static Throwable unwrap(Throwable ex) {
+		while ((ex instanceof CompletionException || ex instanceof ExecutionException) && ex.getCause() != null) {
+			ex = ex.getCause();
+		}
+		return ex;
+	}
+
+	/**
+	 * Scatters the results of the given batch back to their jobs and to the
+	 * copies of the translated segments.
+	 *
+	 * @return The number of billed characters.
+	 */
+	private int scatter(RequestBatch batch, List<Translation> results, Map<Segment, List<Segment>> copies) {
+		List<Segment> segments = batch.getSegments();
+		if (results.size() != segments.size()) {
+			throw new IllegalStateException("Expected " + segments.size() + " translations, got " + results.size() + ".");
+		}
+
+		if (journal != null) {
+			List<Segment> journaled = new ArrayList<>(segments.size());
+			List<String> translations = new ArrayList<>(segments.size());
+			for (int n = 0, cnt = segments.size(); n < cnt; n++) {
+				Segment segment = segments.get(n);
+				String text = results.get(n).text();
+				journaled.add(segment);
+				translations.add(text);
+				for (Segment copy : copies.getOrDefault(segment, List.of())) {
+					journaled.add(copy);
+					translations.add(text);
+				}
+			}
+			try {
+				journal.record(journaled, translations);
+			} catch (IOException ex) {
+				throw new CompletionException(ex);
+			}
+		}
+
+		int chars = 0;
+		for (int n = 0, cnt = segments.size(); n < cnt; n++) {
+			Translation result = results.get(n);
+			Segment segment = segments.get(n);
+			segment.setTranslation(result.text(), result.billedChars());
+			chars += result.billedChars();
+			for (Segment copy : copies.getOrDefault(segment, List.of())) {
+				copy.setTranslation(result.text(), 0);
+			}
+
+			if (memory != null) {
+				try {
+					memory.store(srcLang, batch.getDestLang(), segment.text(), result.text());
+				} catch (IOException ex) {
+					throw new CompletionException(ex);
 				}
-				
-				updated.put(key, value);
 			}
+		}
 
-			try (OutputStream out = new FileOutputStream(output)) {
-				new PropertiesWriter(out, propertiesCharset).write(updated);
+		if (!quiet) {
+			System.err.println("Translated " + segments.size() + " messages to '" + batch.getDestLang() + "', billed chars: " + chars);
+		}
+		return chars;
+	}
+
+	private void writeResults(List<TranslationJob> jobs) throws IOException {
+		List<File> written = new ArrayList<>(jobs.size());
+		for (TranslationJob job : jobs) {
+			if (!job.isComplete()) {
+				System.err.println("WARN: Incomplete translation, not written: " + job.getOutput().getPath());
+				continue;
 			}
-		
-			if (inputs.isEmpty()) {
-				// Note: The output file must be written, even if there is not a single property defined in the source file.
-				System.err.println("No change.");
-			} else {
-				System.err.println("Translated " + inputs.size() + " messages, billed chars: " + chars);
+
+			// Note: The output file must be written, even if there is not a single property defined in the source file.
+			Metrics.FileTimer timer = metrics == null ? null : metrics.startFile(Metrics.TRANSLATE, job.getOutput());
+			job.write(codec);
+			if (timer != null) {
+				timer.finish(job.getFile().length(), job.getOutput().length(), job.getTranslatedCount());
 			}
-			
-			totalChars += chars;
+			written.add(job.getOutput());
+		}
+
+		if (journal != null) {
+			journal.release(written);
 		}
 	}
 
@@ -155,8 +625,28 @@ public class PropertiesTranslator {
 		File srcFile = args.length > 4 ? new File(args[4]) : null;
 		NameStrategy nameStrategy = args.length > 5 ? NameStrategy.valueOf(args[5]) : NameStrategy.LANG_TAG_DIR;
 		Charset propertiesCharset = args.length > 6 ? Charset.forName(args[6]) : StandardCharsets.ISO_8859_1;
-		
-		
-		new PropertiesTranslator(apikey, srcLang, destLangs, propertiesDir, srcFile, nameStrategy, propertiesCharset).translate();
+		int concurrency = args.length > 7 ? Integer.parseInt(args[7]) : 1;
+		File memoryFile = args.length > 8 ? new File(args[8]) : null;
+		boolean dryRun = args.length > 9 && Boolean.parseBoolean(args[9]);
+		long charBudget = args.length > 10 ? Long.parseLong(args[10]) : Long.MAX_VALUE;
+		File journalFile = args.length > 11 ? new File(args[11]) : null;
+
+		PropertiesTranslator translator = new PropertiesTranslator(apikey, srcLang, destLangs, propertiesDir, srcFile, nameStrategy, propertiesCharset);
+		translator.setConcurrency(concurrency);
+		translator.setCharBudget(charBudget);
+		try (TranslationMemory memory = memoryFile == null ? null : new TranslationMemory(memoryFile, TranslationMemory.DEFAULT_MAX_ENTRIES);
+				TranslationJournal journal = journalFile == null ? null : new TranslationJournal(journalFile)) {
+			translator.setTranslationMemory(memory);
+			translator.setJournal(journal);
+			run(translator, dryRun);
+		}
+	}
+
+	private static void run(PropertiesTranslator translator, boolean dryRun) throws IOException, DeepLException, InterruptedException {
+		if (dryRun) {
+			translator.plan().print(System.out);
+		} else {
+			translator.translate();
+		}
 	}
 }
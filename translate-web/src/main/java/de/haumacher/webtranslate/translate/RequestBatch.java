@@ -0,0 +1,121 @@
+package de.haumacher.webtranslate.translate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.haumacher.webtranslate.translate.TranslationJob.Segment;
+
+/**
+ * A group of {@link Segment}s, potentially from many files, that is sent to the
+ * translation service in a single request.
+ */
+class RequestBatch {
+
+	/**
+	 * Overhead of a single text parameter in a form-encoded request (<code>&text=</code>).
+	 */
+	private static final int TEXT_PARAM_OVERHEAD = 6;
+
+	private final String destLang;
+	private final List<Segment> segments = new ArrayList<>();
+	private int size;
+	private int chars;
+
+	private RequestBatch(String destLang) {
+		this.destLang = destLang;
+	}
+
+	/**
+	 * The target language of all segments in this batch.
+	 */
+	public String getDestLang() {
+		return destLang;
+	}
+
+	/**
+	 * The segments to translate.
+	 */
+	public List<Segment> getSegments() {
+		return Collections.unmodifiableList(segments);
+	}
+
+	/**
+	 * The texts to translate in the order of {@link #getSegments()}.
+	 */
+	public List<String> getTexts() {
+		return segments.stream().map(Segment::text).toList();
+	}
+
+	/**
+	 * The estimated size of the request payload in bytes.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * The estimated number of characters billed for this batch, i.e. the number
+	 * of code points of all texts.
+	 */
+	public int getChars() {
+		return chars;
+	}
+
+	private void add(Segment segment, int segmentSize) {
+		segments.add(segment);
+		size += segmentSize;
+		chars += segment.text().codePointCount(0, segment.text().length());
+	}
+
+	/**
+	 * Packs the given segments into as few batches as possible.
+	 *
+	 * <p>
+	 * The order of segments is preserved. A single segment that exceeds the size
+	 * limit on its own is placed into a batch of its own.
+	 * </p>
+	 *
+	 * @param destLang The target language of all segments.
+	 * @param segments The segments to pack.
+	 * @param maxTexts The maximum number of texts in a single request.
+	 * @param maxSize  The maximum payload size of a single request in bytes.
+	 */
+	public static List<RequestBatch> pack(String destLang, List<Segment> segments, int maxTexts, int maxSize) {
+		List<RequestBatch> result = new ArrayList<>();
+		RequestBatch current = null;
+		for (Segment segment : segments) {
+			int segmentSize = requestSize(segment.text());
+			if (current == null || current.segments.size() >= maxTexts || current.size + segmentSize > maxSize) {
+				current = new RequestBatch(destLang);
+				result.add(current);
+			}
+			current.add(segment, segmentSize);
+		}
+		return result;
+	}
+
+	/**
+	 * Estimates the number of bytes the given text occupies in a form-encoded request.
+	 */
+	static int requestSize(String text) {
+		int size = TEXT_PARAM_OVERHEAD;
+		for (int n = 0, length = text.length(); n < length; n++) {
+			char ch = text.charAt(n);
+			if (ch < 0x80) {
+				boolean plain = (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')
+					|| ch == ' ' || ch == '-' || ch == '_' || ch == '.' || ch == '*';
+				size += plain ? 1 : 3;
+			} else if (ch < 0x800) {
+				size += 2 * 3;
+			} else if (Character.isSurrogate(ch)) {
+				// A surrogate pair is encoded as four bytes, each half accounts for two of them.
+				size += 2 * 3;
+			} else {
+				size += 3 * 3;
+			}
+		}
+		return size;
+	}
+
+}
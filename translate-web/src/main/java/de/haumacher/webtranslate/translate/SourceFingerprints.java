@@ -0,0 +1,101 @@
+package de.haumacher.webtranslate.translate;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.haumacher.webtranslate.io.AtomicFileOutputStream;
+
+/**
+ * Sidecar file of a translated properties file that records a fingerprint of
+ * the source text each translation was made from.
+ *
+ * <p>
+ * The sidecar is stored next to the translated properties file with the
+ * additional suffix {@link #SUFFIX}. Each line contains a property key and the
+ * fingerprint of its source text separated by a tab character. A translation
+ * whose recorded fingerprint differs from the fingerprint of the current source
+ * text is outdated and must be translated again.
+ * </p>
+ */
+class SourceFingerprints {
+
+	/**
+	 * Suffix appended to the name of a translated properties file to get the name of its sidecar.
+	 */
+	public static final String SUFFIX = ".fingerprints";
+
+	/**
+	 * The sidecar file of the given translated properties file.
+	 */
+	public static File sidecar(File output) {
+		return new File(output.getPath() + SUFFIX);
+	}
+
+	/**
+	 * Loads the fingerprints recorded for the given translated properties file.
+	 *
+	 * @return Fingerprints indexed by property key, or <code>null</code>, if no
+	 *         fingerprints have been recorded.
+	 */
+	public static Map<String, String> load(File output) throws IOException {
+		File file = sidecar(output);
+		if (!file.exists()) {
+			return null;
+		}
+
+		Map<String, String> result = new HashMap<>();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				int sep = line.indexOf('\t');
+				if (sep > 0) {
+					result.put(line.substring(0, sep), line.substring(sep + 1));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the fingerprints of the given source texts to the sidecar of the given translated properties file.
+	 *
+	 * @param output        The translated properties file.
+	 * @param srcProperties The source texts indexed by property key.
+	 */
+	public static void write(File output, Map<String, String> srcProperties) throws IOException {
+		StringBuilder out = new StringBuilder();
+		for (String key : srcProperties.keySet().stream().sorted().toList()) {
+			out.append(key);
+			out.append('\t');
+			out.append(fingerprint(srcProperties.get(key)));
+			out.append('\n');
+		}
+		AtomicFileOutputStream.update(sidecar(output), out.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * A short hash of the given source text.
+	 */
+	public static String fingerprint(String text) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+			StringBuilder result = new StringBuilder(16);
+			for (int n = 0; n < 8; n++) {
+				result.append(Character.forDigit((hash[n] >> 4) & 0xF, 16));
+				result.append(Character.forDigit(hash[n] & 0xF, 16));
+			}
+			return result.toString();
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 not supported.", ex);
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+package de.haumacher.webtranslate.translate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service that translates texts.
+ *
+ * <p>
+ * Requests are asynchronous, so that a caller can keep many requests in flight
+ * at the same time. A backend may be wrapped by other backends that add
+ * caching, batching, or metrics.
+ * </p>
+ *
+ * @see DeepLBackend
+ * @see FakeTranslationBackend
+ */
+public interface TranslationBackend {
+
+	/**
+	 * Translates the given texts in a single request.
+	 *
+	 * @param texts    The texts to translate.
+	 * @param srcLang  The language of the texts.
+	 * @param destLang The language to translate to.
+	 * @return The translations in the same order as the given texts. If the
+	 *         request fails, the future completes exceptionally with the cause of
+	 *         the failure.
+	 */
+	CompletableFuture<List<Translation>> translate(List<String> texts, String srcLang, String destLang);
+
+	/**
+	 * Result of translating a single text.
+	 *
+	 * @param text        The translated text.
+	 * @param billedChars The number of characters billed for the translation.
+	 */
+	record Translation(String text, int billedChars) {
+		// Pure data.
+	}
+
+}
@@ -0,0 +1,174 @@
+package de.haumacher.webtranslate.translate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.haumacher.webtranslate.extract.PropertiesCodec;
+import de.haumacher.webtranslate.io.AtomicFileOutputStream;
+
+/**
+ * A single source properties file to translate into a single target language.
+ *
+ * <p>
+ * Texts that are missing in the destination file, or whose source text has
+ * changed since they were translated (see {@link SourceFingerprints}), are sent
+ * to the translation service as {@link Segment}s of {@link RequestBatch}es that may contain
+ * segments of many jobs. Translation results are scattered back to the job
+ * they belong to using {@link #setTranslation(String, String, int)}.
+ * </p>
+ */
+class TranslationJob {
+
+	private final File file;
+	private final File output;
+	private final String destLang;
+	private final List<String> keys;
+	private final Map<String, String> srcProperties;
+	private final Map<String, String> destProperties;
+	private final List<String> missing = new ArrayList<>();
+	private int outdated;
+
+	private final Map<String, String> translations = new HashMap<>();
+	private int billedChars;
+
+	/**
+	 * Creates a {@link TranslationJob}.
+	 *
+	 * @param file           The source properties file.
+	 * @param output         The destination properties file.
+	 * @param destLang       The target language.
+	 * @param srcProperties  The contents of the source file.
+	 * @param destProperties The existing contents of the destination file.
+	 * @param fingerprints   The fingerprints of the source texts the existing
+	 *                       translations were made from, <code>null</code> if
+	 *                       not known.
+	 */
+	public TranslationJob(File file, File output, String destLang, Map<String, String> srcProperties, Map<String, String> destProperties, Map<String, String> fingerprints) {
+		this.file = file;
+		this.output = output;
+		this.destLang = destLang;
+		this.srcProperties = srcProperties;
+		this.destProperties = destProperties;
+		this.keys = srcProperties.keySet().stream().sorted().toList();
+
+		for (String key : keys) {
+			if (!destProperties.containsKey(key)) {
+				missing.add(key);
+			} else if (fingerprints != null) {
+				String fingerprint = fingerprints.get(key);
+				if (fingerprint != null && !fingerprint.equals(SourceFingerprints.fingerprint(srcProperties.get(key)))) {
+					missing.add(key);
+					outdated++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The source properties file.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * The destination properties file.
+	 */
+	public File getOutput() {
+		return output;
+	}
+
+	/**
+	 * The target language.
+	 */
+	public String getDestLang() {
+		return destLang;
+	}
+
+	/**
+	 * The number of existing translations that must be replaced, because their source text has changed.
+	 */
+	public int getOutdatedCount() {
+		return outdated;
+	}
+
+	/**
+	 * The text segments that must be sent to the translation service.
+	 */
+	public List<Segment> getSegments() {
+		List<Segment> result = new ArrayList<>(missing.size());
+		for (String key : missing) {
+			result.add(new Segment(this, key, srcProperties.get(key)));
+		}
+		return result;
+	}
+
+	/**
+	 * Records the translation for the given key.
+	 */
+	public synchronized void setTranslation(String key, String text, int chars) {
+		translations.put(key, text);
+		billedChars += chars;
+	}
+
+	/**
+	 * Whether all missing texts have been translated.
+	 */
+	public synchronized boolean isComplete() {
+		return translations.size() == missing.size();
+	}
+
+	/**
+	 * The number of translated texts.
+	 */
+	public int getTranslatedCount() {
+		return missing.size();
+	}
+
+	/**
+	 * The number of characters billed for translating this job.
+	 */
+	public synchronized int getBilledChars() {
+		return billedChars;
+	}
+
+	/**
+	 * Writes the destination properties file with all existing and new
+	 * translations together with the fingerprints of their source texts.
+	 *
+	 * @param codec The codec for the encoding of the properties files.
+	 */
+	public synchronized void write(PropertiesCodec codec) throws IOException {
+		Map<String, String> updated = new HashMap<>();
+		for (String key : keys) {
+			String value = translations.get(key);
+			if (value == null) {
+				value = destProperties.get(key);
+			}
+			updated.put(key, value);
+		}
+
+		try (AtomicFileOutputStream out = new AtomicFileOutputStream(output)) {
+			codec.write(out, updated);
+			out.commit();
+		}
+		SourceFingerprints.write(output, srcProperties);
+	}
+
+	/**
+	 * A single text of a {@link TranslationJob} to translate.
+	 */
+	public record Segment(TranslationJob job, String key, String text) {
+
+		/**
+		 * Stores the translation result in the job this segment belongs to.
+		 */
+		public void setTranslation(String translation, int chars) {
+			job.setTranslation(key, translation, chars);
+		}
+	}
+}
@@ -0,0 +1,316 @@
+package de.haumacher.webtranslate.translate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import de.haumacher.webtranslate.io.AtomicFileOutputStream;
+import de.haumacher.webtranslate.translate.TranslationJob.Segment;
+
+/**
+ * Write-ahead journal of translations received from the translation service
+ * that have not yet been written to their properties files.
+ *
+ * <p>
+ * Destination properties files are written only after all their texts have
+ * been translated. If a run is aborted, e.g. by a quota error, translations of
+ * incomplete files would be lost although they have been billed. Therefore, the
+ * results of each request are appended to the journal as soon as they arrive.
+ * A restarted run takes translations from the journal instead of sending their
+ * texts again, as long as the source text has not changed in the meantime.
+ * Entries of files that have been written are removed from the journal.
+ * </p>
+ *
+ * <p>
+ * The journal is stored in an append-only log file with one line per
+ * translation. Each line contains the destination file, the property key, the
+ * fingerprint of the source text, and the translation. Destination files are
+ * identified by their path relative to the directory of the journal, so that
+ * the journal stays valid when the project is moved as a whole. Removing the
+ * entries of a file appends a line with only its path. Lines truncated by an
+ * aborted process are ignored when the journal is opened. The log is
+ * rewritten with the remaining entries when the journal is closed, and
+ * deleted when no entries are left.
+ * </p>
+ *
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class TranslationJournal implements Closeable {
+
+	/**
+	 * Default name of the journal file in the state directory of the {@link de.haumacher.webtranslate.Translator}.
+	 */
+	public static final String DEFAULT_FILE_NAME = "translation-journal.log";
+
+	/**
+	 * Marker at the end of each complete log line.
+	 */
+	private static final String END_MARKER = "\t.";
+
+	private final File file;
+	private final Path baseDir;
+
+	/**
+	 * Journaled translations indexed by relative destination file path and property key.
+	 */
+	private final Map<String, Map<String, Translation>> entries = new HashMap<>();
+
+	private FileOutputStream stream;
+	private Writer log;
+
+	/**
+	 * The number of complete lines in the log.
+	 */
+	private int logLines;
+
+	/**
+	 * A journaled translation.
+	 *
+	 * @param fingerprint The fingerprint of the source text.
+	 * @param text        The translation.
+	 */
+	private record Translation(String fingerprint, String text) {
+		// Pure data.
+	}
+
+	/**
+	 * Opens the journal stored in the given file.
+	 *
+	 * @param file The log file, created when the first translation is recorded.
+	 */
+	public TranslationJournal(File file) throws IOException {
+		this.file = file;
+		this.baseDir = file.getAbsoluteFile().getParentFile().toPath();
+		if (file.exists()) {
+			replay();
+		}
+	}
+
+	private void replay() throws IOException {
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (!line.endsWith(END_MARKER)) {
+					// Truncated line written by an aborted process.
+					continue;
+				}
+				String[] fields = line.substring(0, line.length() - END_MARKER.length()).split("\t", -1);
+				logLines++;
+				if (fields.length == 1) {
+					entries.remove(TranslationMemory.unescape(fields[0]));
+					continue;
+				}
+				if (fields.length != 4) {
+					continue;
+				}
+				entries.computeIfAbsent(TranslationMemory.unescape(fields[0]), x -> new HashMap<>())
+					.put(TranslationMemory.unescape(fields[1]), new Translation(fields[2], TranslationMemory.unescape(fields[3])));
+			}
+		}
+	}
+
+	/**
+	 * Looks up a translation received in a previous run.
+	 *
+	 * @param output The destination properties file.
+	 * @param key    The property key.
+	 * @param text   The current source text.
+	 * @return The journaled translation, or <code>null</code> if there is none
+	 *         or it was made from a different source text.
+	 */
+	public synchronized String lookup(File output, String key, String text) {
+		Map<String, Translation> translations = entries.get(key(output));
+		if (translations == null) {
+			return null;
+		}
+		Translation translation = translations.get(key);
+		if (translation == null || !translation.fingerprint().equals(SourceFingerprints.fingerprint(text))) {
+			return null;
+		}
+		return translation.text();
+	}
+
+	/**
+	 * Records the translations of a single request and forces them to disk
+	 * before returning.
+	 *
+	 * @param segments     The translated segments.
+	 * @param translations The translations in the order of the segments.
+	 */
+	synchronized void record(List<Segment> segments, List<String> translations) throws IOException {
+		openLog();
+		for (int n = 0, cnt = segments.size(); n < cnt; n++) {
+			Segment segment = segments.get(n);
+			String path = key(segment.job().getOutput());
+			Translation translation = new Translation(SourceFingerprints.fingerprint(segment.text()), translations.get(n));
+			entries.computeIfAbsent(path, x -> new HashMap<>()).put(segment.key(), translation);
+			writeEntry(log, path, segment.key(), translation);
+		}
+		log.flush();
+		stream.getFD().sync();
+	}
+
+	private void openLog() throws IOException {
+		if (log == null) {
+			file.getAbsoluteFile().getParentFile().mkdirs();
+			boolean truncated = endsWithTruncatedLine();
+			stream = new FileOutputStream(file, true);
+			log = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+			if (truncated) {
+				// Do not append to the truncated line, it would be ignored together with the new entry.
+				log.write('\n');
+			}
+		}
+	}
+
+	private boolean endsWithTruncatedLine() throws IOException {
+		if (!file.exists() || file.length() == 0) {
+			return false;
+		}
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			in.seek(in.length() - 1);
+			return in.read() != '\n';
+		}
+	}
+
+	/**
+	 * Drops the translations of the given destination files after they have been written.
+	 */
+	public synchronized void release(Collection<File> outputs) throws IOException {
+		List<String> released = new ArrayList<>();
+		for (File output : outputs) {
+			String path = key(output);
+			if (entries.remove(path) != null) {
+				released.add(path);
+			}
+		}
+		drop(released);
+	}
+
+	/**
+	 * Drops the translations of all destination files except the given ones,
+	 * e.g. of files whose source has been deleted.
+	 *
+	 * @param outputs The destination files of all current sources.
+	 */
+	public synchronized void retain(Collection<File> outputs) throws IOException {
+		Set<String> keep = new HashSet<>();
+		for (File output : outputs) {
+			keep.add(key(output));
+		}
+		List<String> released = new ArrayList<>();
+		for (String path : entries.keySet()) {
+			if (!keep.contains(path)) {
+				released.add(path);
+			}
+		}
+		entries.keySet().removeAll(released);
+		drop(released);
+	}
+
+	/**
+	 * Records that the entries of the given files have been removed.
+	 */
+	private void drop(List<String> released) throws IOException {
+		if (released.isEmpty()) {
+			return;
+		}
+		if (entries.isEmpty()) {
+			closeLog();
+			Files.deleteIfExists(file.toPath());
+			logLines = 0;
+			return;
+		}
+
+		openLog();
+		for (String path : released) {
+			log.write(TranslationMemory.escape(path));
+			log.write(END_MARKER);
+			log.write('\n');
+			logLines++;
+		}
+		log.flush();
+	}
+
+	/**
+	 * Rewrites the log with the entries currently in the journal.
+	 */
+	private void compact() throws IOException {
+		if (entries.isEmpty()) {
+			Files.deleteIfExists(file.toPath());
+			logLines = 0;
+			return;
+		}
+		StringWriter out = new StringWriter();
+		for (Entry<String, Map<String, Translation>> entry : entries.entrySet()) {
+			for (Entry<String, Translation> translation : entry.getValue().entrySet()) {
+				writeEntry(out, entry.getKey(), translation.getKey(), translation.getValue());
+			}
+		}
+		AtomicFileOutputStream.update(file, out.toString().getBytes(StandardCharsets.UTF_8));
+		logLines = size();
+	}
+
+	private String key(File output) {
+		return baseDir.relativize(output.getAbsoluteFile().toPath().normalize()).toString().replace('\\', '/');
+	}
+
+	private void writeEntry(Writer out, String path, String key, Translation translation) throws IOException {
+		out.write(TranslationMemory.escape(path));
+		out.write('\t');
+		out.write(TranslationMemory.escape(key));
+		out.write('\t');
+		out.write(translation.fingerprint());
+		out.write('\t');
+		out.write(TranslationMemory.escape(translation.text()));
+		out.write(END_MARKER);
+		out.write('\n');
+		logLines++;
+	}
+
+	/**
+	 * The number of journaled translations.
+	 */
+	public synchronized int size() {
+		return entries.values().stream().mapToInt(Map::size).sum();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		closeLog();
+		if (logLines > size()) {
+			compact();
+		}
+	}
+
+	private void closeLog() throws IOException {
+		if (log != null) {
+			log.close();
+			log = null;
+			stream = null;
+		}
+	}
+
+}
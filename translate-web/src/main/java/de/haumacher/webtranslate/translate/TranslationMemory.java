@@ -0,0 +1,339 @@
+package de.haumacher.webtranslate.translate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import de.haumacher.webtranslate.io.AtomicFileOutputStream;
+
+/**
+ * Persistent cache of translations that is consulted before texts are sent to
+ * the translation service.
+ *
+ * <p>
+ * Translations are indexed by source language, target language and a hash of
+ * the normalized source text. Therefore, a text that has been translated once
+ * is reused, even if its key is renamed, its template is moved, or it appears
+ * in another template.
+ * </p>
+ *
+ * <p>
+ * The memory is stored in an append-only log file with one line per
+ * translation. When opened, the log is replayed into an in-memory index. The
+ * index holds at most a configured number of entries and evicts the least
+ * recently used ones. When the log grows considerably larger than the index, it
+ * is compacted by rewriting only the live entries.
+ * </p>
+ *
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class TranslationMemory implements Closeable {
+
+	/**
+	 * Default maximum number of entries kept.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+	private static final int MIN_COMPACT_LINES = 1024;
+
+	/**
+	 * Marker at the end of each complete log line.
+	 */
+	private static final String END_MARKER = "\t.";
+
+	private final File file;
+	private final int maxEntries;
+	private final Map<String, String> index;
+
+	private Writer log;
+	private int logLines;
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * Opens the translation memory stored in the given file.
+	 *
+	 * @param file       The log file, created, if it does not exist.
+	 * @param maxEntries The maximum number of translations to keep.
+	 */
+	public TranslationMemory(File file, int maxEntries) throws IOException {
+		this.file = file;
+		this.maxEntries = Math.max(1, maxEntries);
+		// Kept in insertion order, an entry is moved to the end when used, see touch().
+		this.index = new LinkedHashMap<>(16, 0.75f, false) {
+			@Override
+			protected boolean removeEldestEntry(Entry<String, String> eldest) {
+				return size() > TranslationMemory.this.maxEntries;
+			}
+		};
+
+		if (file.exists()) {
+			replay();
+		}
+		if (logLines > Math.max(MIN_COMPACT_LINES, 2 * index.size())) {
+			compact();
+		}
+		openLog();
+	}
+
+	private void replay() throws IOException {
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (!line.endsWith(END_MARKER)) {
+					// Truncated line written by an aborted process.
+					continue;
+				}
+				int end = line.length() - END_MARKER.length();
+				int sep = line.lastIndexOf('\t', end - 1);
+				if (sep < 0) {
+					continue;
+				}
+				touch(line.substring(0, sep), unescape(line.substring(sep + 1, end)));
+				logLines++;
+			}
+		}
+	}
+
+	private void openLog() throws IOException {
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		boolean truncated = endsWithTruncatedLine();
+		log = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		if (truncated) {
+			// Do not append the next entry to the garbage of an aborted process.
+			log.write('\n');
+			log.flush();
+		}
+	}
+
+	private boolean endsWithTruncatedLine() throws IOException {
+		if (file.length() == 0) {
+			return false;
+		}
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			in.seek(in.length() - 1);
+			return in.read() != '\n';
+		}
+	}
+
+	/**
+	 * Looks up a translation.
+	 *
+	 * @return The translation of the given text, or <code>null</code> if the text
+	 *         has not been translated before.
+	 */
+	public synchronized String lookup(String srcLang, String destLang, String text) {
+		String key = key(srcLang, destLang, text);
+		String result = index.get(key);
+		if (result == null) {
+			misses++;
+		} else {
+			hits++;
+			touch(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Looks up a translation without counting a {@link #getHits() hit} or
+	 * {@link #getMisses() miss} and without making the entry the most recently
+	 * used one, e.g. for planning a translation.
+	 *
+	 * @see #lookup(String, String, String)
+	 */
+	public synchronized String peek(String srcLang, String destLang, String text) {
+		return index.get(key(srcLang, destLang, text));
+	}
+
+	/**
+	 * Records a translation.
+	 */
+	public synchronized void store(String srcLang, String destLang, String text, String translation) throws IOException {
+		String key = key(srcLang, destLang, text);
+		if (translation.equals(touch(key, translation))) {
+			return;
+		}
+
+		writeEntry(log, key, translation);
+		log.flush();
+		logLines++;
+
+		if (logLines > Math.max(MIN_COMPACT_LINES, 2 * maxEntries)) {
+			log.close();
+			compact();
+			openLog();
+		}
+	}
+
+	/**
+	 * Stores the given entry as most recently used one.
+	 *
+	 * @return The previous value of the entry.
+	 */
+	private String touch(String key, String translation) {
+		String previous = index.remove(key);
+		index.put(key, translation);
+		return previous;
+	}
+
+	/**
+	 * Rewrites the log with the entries currently in the index.
+	 */
+	private void compact() throws IOException {
+		StringWriter out = new StringWriter();
+		for (Entry<String, String> entry : index.entrySet()) {
+			writeEntry(out, entry.getKey(), entry.getValue());
+		}
+		AtomicFileOutputStream.update(file, out.toString().getBytes(StandardCharsets.UTF_8));
+		logLines = index.size();
+	}
+
+	private static void writeEntry(Writer out, String key, String translation) throws IOException {
+		out.write(key);
+		out.write('\t');
+		out.write(escape(translation));
+		out.write(END_MARKER);
+		out.write('\n');
+	}
+
+	/**
+	 * The number of lookups that found a translation.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * The number of lookups that found no translation.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * The number of translations currently available.
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (log != null) {
+			log.close();
+			log = null;
+		}
+	}
+
+	/**
+	 * The form of the given text used for looking up translations.
+	 *
+	 * <p>
+	 * Leading and trailing white space is removed and all internal white space
+	 * sequences are replaced with a single space.
+	 * </p>
+	 */
+	public static String normalize(String text) {
+		StringBuilder result = new StringBuilder(text.length());
+		boolean space = false;
+		for (int n = 0, length = text.length(); n < length; n++) {
+			char ch = text.charAt(n);
+			if (Character.isWhitespace(ch)) {
+				space = result.length() > 0;
+			} else {
+				if (space) {
+					result.append(' ');
+					space = false;
+				}
+				result.append(ch);
+			}
+		}
+		return result.toString();
+	}
+
+	private static String key(String srcLang, String destLang, String text) {
+		return srcLang + '\t' + destLang + '\t' + hash(normalize(text));
+	}
+
+	private static String hash(String text) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 not supported.", ex);
+		}
+	}
+
+	/**
+	 * Escapes tab and line break characters, so that the given text can be stored as a field of a log line.
+	 */
+	static String escape(String text) {
+		StringBuilder result = null;
+		for (int n = 0, length = text.length(); n < length; n++) {
+			char ch = text.charAt(n);
+			String replacement = switch (ch) {
+				case '\\' -> "\\\\";
+				case '\t' -> "\\t";
+				case '\n' -> "\\n";
+				case '\r' -> "\\r";
+				default -> null;
+			};
+			if (replacement != null) {
+				if (result == null) {
+					result = new StringBuilder(text.length() + 16);
+					result.append(text, 0, n);
+				}
+				result.append(replacement);
+			} else if (result != null) {
+				result.append(ch);
+			}
+		}
+		return result == null ? text : result.toString();
+	}
+
+	/**
+	 * Reverts {@link #escape(String)}.
+	 */
+	static String unescape(String text) {
+		if (text.indexOf('\\') < 0) {
+			return text;
+		}
+		StringBuilder result = new StringBuilder(text.length());
+		for (int n = 0, length = text.length(); n < length; n++) {
+			char ch = text.charAt(n);
+			if (ch == '\\' && n + 1 < length) {
+				char next = text.charAt(++n);
+				result.append(switch (next) {
+					case 't' -> '\t';
+					case 'n' -> '\n';
+					case 'r' -> '\r';
+					default -> next;
+				});
+			} else {
+				result.append(ch);
+			}
+		}
+		return result.toString();
+	}
+
+}
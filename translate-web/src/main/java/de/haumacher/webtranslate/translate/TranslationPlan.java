@@ -0,0 +1,163 @@
+package de.haumacher.webtranslate.translate;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * What a {@link PropertiesTranslator#translate() translation run} would send to
+ * the translation service, computed without contacting it.
+ *
+ * @see PropertiesTranslator#plan()
+ */
+public class TranslationPlan {
+
+	private final List<Entry> entries = new ArrayList<>();
+	private final Map<String, List<Integer>> requestChars = new LinkedHashMap<>();
+	private int deferred;
+
+	/**
+	 * Texts of a single source file to translate into a single target language.
+	 *
+	 * @param file       The source properties file.
+	 * @param output     The destination properties file.
+	 * @param destLang   The target language.
+	 * @param texts      The number of texts to send to the translation service.
+	 * @param chars      The estimated number of billed characters for these texts.
+	 * @param outdated   The number of texts among them whose existing translation is outdated.
+	 * @param duplicates The number of texts that are not sent, because an equal text is sent for another key or file.
+	 * @param fromMemory The number of texts taken from the translation memory instead.
+	 * @param resumed    The number of texts taken from the journal of an aborted run instead.
+	 */
+	public record Entry(File file, File output, String destLang, int texts, int chars, int outdated, int duplicates, int fromMemory, int resumed) {
+		// Pure data.
+	}
+
+	void addEntry(Entry entry) {
+		entries.add(entry);
+	}
+
+	void addRequests(String destLang, List<RequestBatch> batches) {
+		List<Integer> chars = requestChars.computeIfAbsent(destLang, x -> new ArrayList<>());
+		for (RequestBatch batch : batches) {
+			chars.add(batch.getChars());
+		}
+	}
+
+	void setDeferred(int deferred) {
+		this.deferred = deferred;
+	}
+
+	/**
+	 * The number of files (per target language) left for a later run, because
+	 * they do not fit into the {@link PropertiesTranslator#setCharBudget(long)
+	 * character budget}.
+	 */
+	public int getDeferred() {
+		return deferred;
+	}
+
+	/**
+	 * All files with texts to translate, including duplicates and texts taken from the translation memory or journal.
+	 */
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * The number of texts to send to the translation service.
+	 */
+	public int getTexts() {
+		return entries.stream().mapToInt(Entry::texts).sum();
+	}
+
+	/**
+	 * The estimated number of billed characters of all requests.
+	 */
+	public long getChars() {
+		return entries.stream().mapToLong(Entry::chars).sum();
+	}
+
+	/**
+	 * The number of requests to send for the given target language.
+	 */
+	public int getRequests(String destLang) {
+		return requestChars.getOrDefault(destLang, List.of()).size();
+	}
+
+	/**
+	 * The number of requests to send for all target languages.
+	 */
+	public int getRequests() {
+		return requestChars.values().stream().mapToInt(List::size).sum();
+	}
+
+	/**
+	 * Estimates the duration of the run.
+	 *
+	 * <p>
+	 * The duration of each request is modeled as a fixed latency plus a time
+	 * proportional to its characters. Requests are assigned largest first to the
+	 * next free connection, as done by the {@link PropertiesTranslator}.
+	 * Suitable values for the model can be taken from the request latencies of
+	 * a previous run, see {@link de.haumacher.webtranslate.metrics.Metrics}.
+	 * </p>
+	 *
+	 * @param concurrency    The maximum number of requests in flight.
+	 * @param requestMillis  The fixed latency of each request.
+	 * @param millisPerChar  The additional time for each character.
+	 * @return The estimated time until the last request has been answered in milliseconds.
+	 */
+	public long estimateMillis(int concurrency, long requestMillis, double millisPerChar) {
+		List<Integer> all = new ArrayList<>();
+		requestChars.values().forEach(all::addAll);
+		if (concurrency > 1) {
+			all.sort(Collections.reverseOrder());
+		}
+
+		PriorityQueue<Double> finished = new PriorityQueue<>();
+		for (int n = 0; n < Math.max(1, concurrency); n++) {
+			finished.add(0.0);
+		}
+		double end = 0;
+		for (int chars : all) {
+			double time = finished.poll() + requestMillis + chars * millisPerChar;
+			finished.add(time);
+			end = Math.max(end, time);
+		}
+		return Math.round(end);
+	}
+
+	/**
+	 * Prints the plan as table with a line per file and language and the totals per language.
+	 */
+	public void print(PrintStream out) {
+		out.println(String.format("%-8s %7s %9s %8s %10s %7s %7s  %s", "language", "texts", "chars", "outdated", "duplicates", "memory", "journal", "file"));
+		for (Entry entry : entries) {
+			out.println(String.format("%-8s %7d %9d %8d %10d %7d %7d  %s",
+				entry.destLang(), entry.texts(), entry.chars(), entry.outdated(), entry.duplicates(), entry.fromMemory(), entry.resumed(), entry.file().getPath()));
+		}
+		out.println();
+		for (String destLang : requestChars.keySet()) {
+			int texts = 0;
+			long chars = 0;
+			for (Entry entry : entries) {
+				if (entry.destLang().equals(destLang)) {
+					texts += entry.texts();
+					chars += entry.chars();
+				}
+			}
+			out.println("Language '" + destLang + "': texts: " + texts + ", chars: " + chars + ", requests: " + getRequests(destLang));
+		}
+		out.println("Total texts: " + getTexts() + ", chars: " + getChars() + ", requests: " + getRequests());
+		if (deferred > 0) {
+			out.println("Exceeding the character budget: " + deferred + " files");
+		}
+	}
+
+}
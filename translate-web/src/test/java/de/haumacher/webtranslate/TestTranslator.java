@@ -0,0 +1,120 @@
+package de.haumacher.webtranslate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.haumacher.webtranslate.metrics.Metrics;
+import de.haumacher.webtranslate.translate.FakeTranslationBackend;
+
+/**
+ * Test case for {@link Translator}.
+ */
+public class TestTranslator {
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testUpdate() throws Exception {
+		File a = writeTemplate("a.html", "<html><body><p>Hello</p><p>World</p></body></html>");
+		File b = writeTemplate("sub/b.html", "<html><body><p>Other</p></body></html>");
+
+		FakeTranslationBackend backend = new FakeTranslationBackend();
+		Translator translator = translator(backend);
+		translator.setStateDir(tmp.resolve("state").toFile());
+		translator.run();
+		assertEquals(3, backend.getTexts());
+		assertTrue(Files.exists(tmp.resolve("state").resolve(Translator.MANIFEST_FILE)));
+		assertTrue(Files.readString(tmp.resolve("templates/de/a.html")).contains("[DE] World"));
+
+		// Mark the outputs of the unchanged template.
+		FileTime marker = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+		Path bProperties = tmp.resolve("properties/de/sub/b.properties");
+		Path bOutput = tmp.resolve("templates/de/sub/b.html");
+		Files.setLastModifiedTime(bProperties, marker);
+		Files.setLastModifiedTime(bOutput, marker);
+
+		writeTemplate("a.html", Files.readString(a.toPath()).replace("World</p>", "World</p><p>Added</p>"));
+
+		Metrics metrics = translator.getMetrics();
+		metrics.reset();
+		List<File> updated = translator.update(List.of(a, b));
+
+		// Only the changed template is processed, only the new text is sent.
+		assertEquals(List.of(a), updated);
+		assertEquals(1, metrics.getFiles(Metrics.EXTRACT));
+		assertEquals(4, backend.getTexts());
+		assertEquals(1, metrics.getFiles(Metrics.SYNTHESIZE));
+		assertTrue(Files.readString(tmp.resolve("templates/de/a.html")).contains("[DE] Added"));
+		assertEquals(marker, Files.getLastModifiedTime(bProperties));
+		assertEquals(marker, Files.getLastModifiedTime(bOutput));
+
+		// The IDs written to the template by the extraction do not cause another update.
+		assertTrue(Files.readString(a.toPath()).contains("data-tx="));
+		assertEquals(List.of(), translator.update(List.of(a)));
+		assertEquals(4, backend.getTexts());
+	}
+
+	@Test
+	public void testNoState() throws Exception {
+		writeTemplate("a.html", "<html><body><p>Hello</p></body></html>");
+
+		FakeTranslationBackend backend = new FakeTranslationBackend();
+		Translator translator = translator(backend);
+		translator.run();
+		translator.run();
+
+		// Without state directory, only the translated properties prevent translating again.
+		assertEquals(1, backend.getTexts());
+		assertTrue(Files.readString(tmp.resolve("templates/de/a.html")).contains("[DE] Hello"));
+		try (Stream<Path> files = Files.list(tmp.resolve("properties"))) {
+			assertEquals(List.of("de", "en"), files.map(file -> file.getFileName().toString()).sorted().toList());
+		}
+	}
+
+	@Test
+	public void testBudget() throws Exception {
+		writeTemplate("a.html", "<html><body><p>Hello</p></body></html>");
+		writeTemplate("b.html", "<html><body><p>A much longer text exceeding the budget.</p></body></html>");
+
+		FakeTranslationBackend backend = new FakeTranslationBackend();
+		Translator translator = translator(backend);
+		translator.setCharBudget(10);
+		translator.run();
+
+		// The deferred template is not synthesized, the others are.
+		assertEquals(1, backend.getTexts());
+		assertTrue(Files.readString(tmp.resolve("templates/de/a.html")).contains("[DE] Hello"));
+		assertFalse(Files.exists(tmp.resolve("templates/de/b.html")));
+
+		translator(backend).run();
+		assertTrue(Files.readString(tmp.resolve("templates/de/b.html")).contains("[DE] A much longer text"));
+	}
+
+	private Translator translator(FakeTranslationBackend backend) {
+		Translator translator = new Translator(null, "en", List.of("de"), tmp.resolve("properties").toFile(), tmp.resolve("templates").toFile(), StandardCharsets.UTF_8);
+		translator.setBackend(backend);
+		translator.setQuiet(true);
+		return translator;
+	}
+
+	private File writeTemplate(String name, String content) throws IOException {
+		Path file = tmp.resolve("templates/en").resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+		return file.toFile();
+	}
+}
@@ -0,0 +1,127 @@
+package de.haumacher.webtranslate.build;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test case for {@link BuildManifest}.
+ */
+public class TestBuildManifest {
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testRecord() throws IOException {
+		File a = write("a.html", "A");
+		File b = write("b.properties", "B");
+		BuildManifest manifest = manifest();
+
+		assertFalse(manifest.isUpToDate("step", List.of(a, b)));
+
+		manifest.record("step", List.of(a, b));
+		assertTrue(manifest.isUpToDate("step", List.of(a, b)));
+
+		// Other files or another step.
+		assertFalse(manifest.isUpToDate("step", List.of(a)));
+		assertFalse(manifest.isUpToDate("other", List.of(a, b)));
+
+		write("b.properties", "Changed");
+		assertFalse(manifest.isUpToDate("step", List.of(a, b)));
+	}
+
+	@Test
+	public void testMissingFile() throws IOException {
+		File a = write("a.html", "A");
+		File missing = tmp.resolve("missing.properties").toFile();
+		BuildManifest manifest = manifest();
+
+		manifest.record("step", List.of(a, missing));
+		assertFalse(manifest.isUpToDate("step", List.of(a, missing)));
+	}
+
+	@Test
+	public void testInvalidate() throws IOException {
+		File a = write("a.html", "A");
+		BuildManifest manifest = manifest();
+
+		manifest.record("step", List.of(a));
+		manifest.invalidate("step");
+		assertFalse(manifest.isUpToDate("step", List.of(a)));
+	}
+
+	@Test
+	public void testSaveAndReload() throws IOException {
+		File a = write("a.html", "A");
+		File b = write("b.properties", "B");
+		BuildManifest manifest = manifest();
+		manifest.record("step", List.of(a, b));
+		manifest.record("removed", List.of(a));
+		manifest.invalidate("removed");
+		manifest.save();
+
+		BuildManifest reloaded = manifest();
+		assertTrue(reloaded.isUpToDate("step", List.of(a, b)));
+		assertFalse(reloaded.isUpToDate("removed", List.of(a)));
+
+		write("a.html", "Changed");
+		assertFalse(manifest().isUpToDate("step", List.of(a, b)));
+	}
+
+	@Test
+	public void testSameSizeEdit() throws IOException {
+		File a = write("a.html", "Hello");
+		BuildManifest manifest = manifest();
+		manifest.record("step", List.of(a));
+		manifest.save();
+
+		// An edit within the same timestamp tick that keeps the size.
+		FileTime modified = Files.getLastModifiedTime(a.toPath());
+		write("a.html", "World");
+		Files.setLastModifiedTime(a.toPath(), modified);
+
+		assertFalse(manifest.isUpToDate("step", List.of(a)));
+		assertFalse(manifest().isUpToDate("step", List.of(a)));
+	}
+
+	@Test
+	public void testOldFileNotRehashed() throws IOException {
+		File a = write("a.html", "Hello");
+
+		// Modified long before it is recorded.
+		FileTime modified = FileTime.fromMillis(System.currentTimeMillis() - 10 * BuildManifest.TIMESTAMP_RESOLUTION_MILLIS);
+		Files.setLastModifiedTime(a.toPath(), modified);
+
+		BuildManifest manifest = manifest();
+		manifest.record("step", List.of(a));
+
+		// The contents are not read again, if size and modification time are unchanged.
+		write("a.html", "World");
+		Files.setLastModifiedTime(a.toPath(), modified);
+		assertTrue(manifest.isUpToDate("step", List.of(a)));
+
+		// A touch is enough to detect the change.
+		Files.setLastModifiedTime(a.toPath(), FileTime.fromMillis(modified.toMillis() + 1000));
+		assertFalse(manifest.isUpToDate("step", List.of(a)));
+	}
+
+	private BuildManifest manifest() throws IOException {
+		return new BuildManifest(tmp.resolve("manifest.txt").toFile());
+	}
+
+	private File write(String name, String content) throws IOException {
+		Path file = tmp.resolve(name);
+		Files.writeString(file, content);
+		return file.toFile();
+	}
+}
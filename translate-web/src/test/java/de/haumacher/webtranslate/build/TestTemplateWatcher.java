@@ -0,0 +1,63 @@
+package de.haumacher.webtranslate.build;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test case for {@link TemplateWatcher}.
+ */
+public class TestTemplateWatcher {
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testBurst() throws Exception {
+		write("a.html", "<p>A</p>");
+		Files.createDirectories(tmp.resolve("sub"));
+
+		try (TemplateWatcher watcher = new TemplateWatcher(tmp.toFile(), 100)) {
+			assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+				// Multiple changes are reported once, other files are ignored.
+				write("a.html", "<p>A1</p>");
+				write("a.html", "<p>A2</p>");
+				write("sub/b.html", "<p>B</p>");
+				write("sub/b.properties", "t0001=B");
+				assertEquals(List.of(file("a.html"), file("sub/b.html")), watcher.next());
+
+				// Templates in new directories are reported.
+				write("new/deep/c.html", "<p>C</p>");
+				assertEquals(List.of(file("new/deep/c.html")), watcher.next());
+
+				// New directories are watched.
+				write("new/deep/c.html", "<p>C1</p>");
+				assertEquals(List.of(file("new/deep/c.html")), watcher.next());
+
+				// Deletions are not reported.
+				Files.delete(tmp.resolve("a.html"));
+				write("sub/b.html", "<p>B1</p>");
+				assertEquals(List.of(file("sub/b.html")), watcher.next());
+			});
+		}
+	}
+
+	private void write(String name, String content) throws IOException {
+		Path file = tmp.resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+	}
+
+	private File file(String name) {
+		return tmp.resolve(name).toFile();
+	}
+}
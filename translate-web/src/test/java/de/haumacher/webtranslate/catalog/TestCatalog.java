@@ -0,0 +1,133 @@
+package de.haumacher.webtranslate.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test case for {@link Catalog} and {@link CatalogWriter}.
+ */
+public class TestCatalog {
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testWriteProperties() throws IOException {
+		write("de/page.properties", "t0001=Hallo <x1>Welt</x1>!\nt0002=Gr\\u00fc\\u00dfe\n");
+		write("de/sub/page.properties", "t0001=Unterseite\nt0002=\n");
+		write("de/sub/page-2.properties", "t0001=Andere Seite\n");
+
+		File file = new CatalogWriter(StandardCharsets.ISO_8859_1).write(tmp.toFile(), "de");
+		assertEquals(tmp.resolve("de.catalog").toFile(), file);
+
+		Catalog catalog = Catalog.open(file);
+		assertEquals(5, catalog.size());
+		assertEquals("Hallo <x1>Welt</x1>!", catalog.get("page", "t0001"));
+		assertEquals("Gr\u00fc\u00dfe", catalog.get("page#t0002"));
+		assertEquals("", catalog.get("sub/page", "t0002"));
+		assertNull(catalog.get("sub/page", "t0003"));
+		assertNull(catalog.get("missing", "t0001"));
+
+		assertEquals(Map.of("t0001", "Unterseite", "t0002", ""), catalog.getPage("sub/page"));
+		assertEquals(Map.of("t0001", "Andere Seite"), catalog.getPage("sub/page-2"));
+		assertEquals(Map.of(), catalog.getPage("sub"));
+
+		ByteBuffer bytes = catalog.getBytes("page#t0002");
+		assertEquals("Gr\u00fc\u00dfe", StandardCharsets.UTF_8.decode(bytes).toString());
+	}
+
+	@Test
+	public void testLookup() throws IOException {
+		Random rnd = new Random(42);
+		String alphabet = "a#/\u00e9\u20ac\ud83d\ude00\uffff";
+		Map<String, String> texts = new HashMap<>();
+		for (int n = 0; n < 2000; n++) {
+			texts.put(random(rnd, alphabet), random(rnd, alphabet));
+		}
+
+		File file = tmp.resolve("all.catalog").toFile();
+		CatalogWriter.write(file, texts);
+		Catalog catalog = Catalog.open(file);
+
+		assertEquals(texts.size(), catalog.size());
+		for (Map.Entry<String, String> entry : texts.entrySet()) {
+			assertEquals(entry.getValue(), catalog.get(entry.getKey()), entry.getKey());
+		}
+		assertNull(catalog.get("b"));
+	}
+
+	@Test
+	public void testInvalid() throws IOException {
+		File file = write("de.catalog", "t0001=Not a catalog\n");
+		assertThrows(IOException.class, () -> Catalog.open(file));
+	}
+
+	@Test
+	public void testPageSeparator() throws IOException {
+		write("de/a#b.properties", "c=Collision\n");
+		write("de/a.properties", "b#c=Other\n");
+
+		assertThrows(IOException.class, () -> new CatalogWriter(StandardCharsets.ISO_8859_1).write(tmp.toFile(), "de"));
+		assertThrows(IllegalArgumentException.class, () -> Catalog.key("a#b", "c"));
+	}
+
+	@Test
+	public void testCorruptIndex() throws IOException {
+		File file = tmp.resolve("de.catalog").toFile();
+		CatalogWriter.write(file, Map.of("page#t0001", "Text", "page#t0002", "Other"));
+		byte[] valid = Files.readAllBytes(file.toPath());
+
+		// Value of the second entry beyond the end of the file.
+		byte[] corrupt = valid.clone();
+		ByteBuffer.wrap(corrupt).putInt(Catalog.HEADER_SIZE + Catalog.INDEX_ENTRY_SIZE + 12, 1000);
+		Files.write(file.toPath(), corrupt);
+		assertThrows(IOException.class, () -> Catalog.open(file));
+
+		// Key of the first entry pointing into the index.
+		corrupt = valid.clone();
+		ByteBuffer.wrap(corrupt).putInt(Catalog.HEADER_SIZE, 0);
+		Files.write(file.toPath(), corrupt);
+		assertThrows(IOException.class, () -> Catalog.open(file));
+
+		// Truncated data.
+		Files.write(file.toPath(), Arrays.copyOf(valid, valid.length - 1));
+		assertThrows(IOException.class, () -> Catalog.open(file));
+	}
+
+	private File write(String name, String content) throws IOException {
+		Path file = tmp.resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content, StandardCharsets.ISO_8859_1);
+		return file.toFile();
+	}
+
+	private static String random(Random rnd, String alphabet) {
+		StringBuilder result = new StringBuilder();
+		for (int n = 0, cnt = rnd.nextInt(12); n < cnt; n++) {
+			// Only complete surrogate pairs can be stored.
+			int index = rnd.nextInt(alphabet.length());
+			char ch = alphabet.charAt(index);
+			if (Character.isHighSurrogate(ch)) {
+				result.append(ch).append(alphabet.charAt(index + 1));
+			} else if (!Character.isLowSurrogate(ch)) {
+				result.append(ch);
+			}
+		}
+		return result.toString();
+	}
+}
@@ -7,11 +7,9 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.junit.jupiter.api.Test;
-import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
@@ -24,9 +22,9 @@ public class TestHtmlAnalyzer {
 	public void testAnalyze() throws SAXException, IOException, ParserConfigurationException {
 		String html = "<html><body>Some <a>funny <b><c>new</c><d>ly</d></b> generated <e>awesome</e></a> text</body></html>";
 		
-		Document document = DocumentBuilderFactory.newDefaultInstance().newDocumentBuilder().parse(new InputSource(new StringReader(html)));
+		TemplateTree tree = TemplateParser.DOM.parseTree(new InputSource(new StringReader(html)));
 		
-		HtmlAnalyzer analyzer = new HtmlAnalyzer(document);
+		HtmlAnalyzer analyzer = new HtmlAnalyzer(tree);
 		analyzer.analyze();
 		
 		assertEquals("""
@@ -37,7 +35,7 @@ public class TestHtmlAnalyzer {
 		assertEquals("""
 			<!DOCTYPE html>
 			<html><body data-tx="t0001">Some <a>funny <b><c>new</c><d>ly</d></b> generated <e>awesome</e></a> text</body></html>""", 
-			html(document));
+			html(tree));
 		
 		analyzer.getTextById().put("t0001", "<x1>Lustiger <x2><x3>neu</x3></x2> generierter Text, der <x5>wunderbar</x5></x1> ist");
 		
@@ -46,18 +44,18 @@ public class TestHtmlAnalyzer {
 		assertEquals("""
 			<!DOCTYPE html>
 			<html><body data-tx="t0001"><a>Lustiger <b><c>neu</c><d></d></b> generierter Text, der <e>wunderbar</e></a> ist</body></html>""", 
-			html(document));
+			html(tree));
 	}
 
-	private String html(Document document) {
+	private String html(TemplateTree tree) {
 		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-		PropertiesExtractor.serializeDocument(buffer, document);
+		tree.write(buffer);
 		return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
 	}
 
-	private String properties(HtmlAnalyzer analyzer) {
+	private String properties(HtmlAnalyzer analyzer) throws IOException {
 		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-		new PropertiesWriter(buffer, StandardCharsets.ISO_8859_1).write(analyzer.getTextById());
+		new PropertiesCodec(StandardCharsets.ISO_8859_1).write(buffer, analyzer.getTextById());
 		return new String(buffer.toByteArray(), StandardCharsets.ISO_8859_1);
 	}
 }
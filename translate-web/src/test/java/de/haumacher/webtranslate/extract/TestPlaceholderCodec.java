@@ -0,0 +1,88 @@
+package de.haumacher.webtranslate.extract;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test case for {@link PlaceholderCodec}.
+ */
+public class TestPlaceholderCodec {
+
+	/**
+	 * The pattern formerly used to find placeholders.
+	 */
+	private static final Pattern MARKUP_PATTERN = Pattern.compile("<(/)?x([1-9]\\d*)>");
+
+	private static final String ALPHABET = "<</x0159> \t\n\r\u000B\f\u0001ab";
+
+	@Test
+	public void testDecode() {
+		assertEquals(List.of("text:Some ", "start:1", "text:funny", "end:1", "text: <x0> </x> <x12a> ", "start:12", "text:.<"),
+			decode("Some <x1>funny</x1> <x0> </x> <x12a> <x12>.<"));
+	}
+
+	@Test
+	public void testDecodeOverflow() {
+		assertThrows(NumberFormatException.class, () -> decode("<x99999999999>"));
+	}
+
+	@Test
+	public void testSameAsRegex() {
+		Random rnd = new Random(13);
+		for (int n = 0; n < 10000; n++) {
+			StringBuilder text = new StringBuilder();
+			for (int k = 0, cnt = rnd.nextInt(20); k < cnt; k++) {
+				text.append(ALPHABET.charAt(rnd.nextInt(ALPHABET.length())));
+			}
+			String input = text.toString();
+			assertEquals(decodeRegex(input), decode(input), input);
+			assertEquals(input.trim().replaceAll("\\s\\s+", " "), PlaceholderCodec.normalizeWhitespace(input), input);
+		}
+	}
+
+	private static List<String> decode(String text) {
+		List<String> events = new ArrayList<>();
+		PlaceholderCodec.decode(text, new PlaceholderCodec.Handler() {
+			@Override
+			public void text(CharSequence source, int start, int end) {
+				events.add("text:" + source.subSequence(start, end));
+			}
+
+			@Override
+			public void startTag(int id) {
+				events.add("start:" + id);
+			}
+
+			@Override
+			public void endTag(int id) {
+				events.add("end:" + id);
+			}
+		});
+		return events;
+	}
+
+	private static List<String> decodeRegex(String text) {
+		List<String> events = new ArrayList<>();
+		Matcher matcher = MARKUP_PATTERN.matcher(text);
+		int pos = 0;
+		while (matcher.find()) {
+			if (matcher.start() > pos) {
+				events.add("text:" + text.substring(pos, matcher.start()));
+			}
+			events.add((matcher.group(1) == null ? "start:" : "end:") + Integer.parseInt(matcher.group(2)));
+			pos = matcher.end();
+		}
+		if (text.length() > pos) {
+			events.add("text:" + text.substring(pos));
+		}
+		return events;
+	}
+}
@@ -0,0 +1,140 @@
+package de.haumacher.webtranslate.extract;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test case for {@link PropertiesCodec}.
+ */
+public class TestPropertiesCodec {
+
+	private static final String NL = System.lineSeparator();
+
+	private static final String ALPHABET = "ab =:#!\\\t\n\r\fu0\u0001\u00e9\u20ac\ud83d\ude00\udc00";
+
+	private static final String SYNTAX = "ab =:#!\\\\\\\t\n\n\r\fu00e9\u00e9";
+
+	@Test
+	public void testWrite() throws IOException {
+		Map<String, String> properties = new HashMap<>();
+		properties.put("t0002", "Second line\nwith C:\\path = value");
+		properties.put("t0001", " Leading space, trailing space ");
+		properties.put("#key with=separators:", "#1 \u00e9\u20ac");
+
+		assertEquals(
+			"\\#key\\ with\\=separators\\:=#1 \u00e9\\u20ac" + NL +
+			"t0001=\\ Leading space, trailing space " + NL +
+			"t0002=Second line\\nwith C:\\\\path = value" + NL +
+			NL,
+			write(StandardCharsets.ISO_8859_1, properties));
+
+		assertEquals(
+			"\\#key\\ with\\=separators\\:=#1 \u00e9\u20ac" + NL +
+			"t0001=\\ Leading space, trailing space " + NL +
+			"t0002=Second line\\nwith C:\\\\path = value" + NL +
+			NL,
+			write(StandardCharsets.UTF_8, properties));
+	}
+
+	@Test
+	public void testParse() {
+		PropertiesCodec codec = new PropertiesCodec(StandardCharsets.UTF_8);
+		assertEquals(
+			Map.of("a", "1", "b", "2", "c", "=3", "d", "four five", "e", "", "f g", "\u00e9\t", "h", "x"),
+			codec.parse("""
+				# Comment \\
+				a=1
+				  ! Comment
+				b : 2
+				c==3
+				d four \\
+				   five
+				e
+				f\\ g = \\u00e9\\t
+				h x\\"""));
+
+		assertThrows(IllegalArgumentException.class, () -> codec.parse("a=\\u00"));
+		assertThrows(IllegalArgumentException.class, () -> codec.parse("a=\\u00x0"));
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Random rnd = new Random(42);
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII, StandardCharsets.UTF_16 }) {
+			PropertiesCodec codec = new PropertiesCodec(charset);
+			for (int n = 0; n < 200; n++) {
+				Map<String, String> properties = new HashMap<>();
+				for (int k = 0, cnt = rnd.nextInt(10); k < cnt; k++) {
+					properties.put(random(rnd, ALPHABET, 8), random(rnd, ALPHABET, 20));
+				}
+
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				codec.write(buffer, properties);
+				assertEquals(properties, codec.parse(new String(buffer.toByteArray(), charset)), charset.name());
+			}
+		}
+	}
+
+	@Test
+	public void testLargeRoundTrip() throws IOException {
+		Random rnd = new Random(7);
+		Map<String, String> properties = new HashMap<>();
+		for (int n = 0; n < 5000; n++) {
+			properties.put("t" + n, random(rnd, ALPHABET, 200));
+		}
+
+		PropertiesCodec codec = new PropertiesCodec(StandardCharsets.UTF_8);
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		codec.write(buffer, properties);
+		assertEquals(properties, codec.parse(new String(buffer.toByteArray(), StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testSameAsProperties() throws IOException {
+		Random rnd = new Random(13);
+		PropertiesCodec codec = new PropertiesCodec(StandardCharsets.UTF_8);
+		for (int n = 0; n < 10000; n++) {
+			String text = random(rnd, SYNTAX, 30);
+
+			Properties expected = new Properties();
+			try {
+				expected.load(new StringReader(text));
+			} catch (IllegalArgumentException ex) {
+				assertThrows(IllegalArgumentException.class, () -> codec.parse(text), text);
+				continue;
+			}
+
+			Map<String, String> expectedMap = new HashMap<>();
+			for (String key : expected.stringPropertyNames()) {
+				expectedMap.put(key, expected.getProperty(key));
+			}
+			assertEquals(expectedMap, codec.parse(text), text);
+		}
+	}
+
+	private static String write(Charset charset, Map<String, String> properties) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		new PropertiesCodec(charset).write(buffer, properties);
+		return new String(buffer.toByteArray(), charset);
+	}
+
+	private static String random(Random rnd, String alphabet, int maxLength) {
+		StringBuilder result = new StringBuilder();
+		for (int n = 0, cnt = rnd.nextInt(maxLength); n < cnt; n++) {
+			result.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,112 @@
+package de.haumacher.webtranslate.extract;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.SAXException;
+
+/**
+ * Test case for {@link PropertiesExtractor}.
+ */
+public class TestPropertiesExtractor {
+
+	private static final List<String> TEMPLATES = List.of(
+		"<html><body>Some <a>funny <b><c>new</c><d>ly</d></b> generated <e>awesome</e></a> text</body></html>",
+		"<html><body><p data-tx=\"t0007\">First</p><p data-tx=\"t0007\">Duplicate</p><p>New <b data-tx=\"t0003\">nested</b> text</p></body></html>",
+		"<html xmlns:th=\"http://www.thymeleaf.org\"><body><img src=\"a.png\" alt=\"A picture\" th:src=\"@{/a.png}\"/>"
+			+ "<p title=\"Tooltip\">Text with <input placeholder=\"Your name\" type=\"text\"/> input</p></body></html>",
+		"<html><body><pre title=\"Code\">if (a &lt; b) <b>x</b></pre><p>Some <code>code</code> in text.</p></body></html>",
+		"<!DOCTYPE html>\n<html>\n  <body>\n    <!-- Comment -->\n    <p>\n      Text   with\n\t lots of <b>white</b>   space.\n    </p>\n  </body>\n</html>\n");
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testParallelSameAsSequential() throws Exception {
+		Path sequential = tmp.resolve("sequential");
+		Path parallel = tmp.resolve("parallel");
+		for (Path dir : List.of(sequential, parallel)) {
+			for (int copy = 0; copy < 4; copy++) {
+				for (int n = 0; n < TEMPLATES.size(); n++) {
+					Path file = dir.resolve("templates/section-" + copy + "/page-" + n + ".html");
+					Files.createDirectories(file.getParent());
+					Files.writeString(file, TEMPLATES.get(n));
+				}
+			}
+		}
+
+		extract(sequential, 1);
+		extract(parallel, 4);
+
+		List<Path> expected = files(sequential);
+		assertEquals(2 * 4 * TEMPLATES.size(), expected.size());
+		assertEquals(expected, files(parallel));
+		for (Path file : expected) {
+			assertArrayEquals(Files.readAllBytes(sequential.resolve(file)), Files.readAllBytes(parallel.resolve(file)), file.toString());
+		}
+	}
+
+	@Test
+	public void testNoExternalEntities() throws Exception {
+		Path secret = tmp.resolve("secret.txt");
+		Files.writeString(secret, "SECRET");
+
+		for (String mode : List.of("DOM", "SAX", "streaming")) {
+			Path dir = tmp.resolve(mode);
+			Path xxe = dir.resolve("templates/xxe.html");
+			Path dtd = dir.resolve("templates/dtd.html");
+			Files.createDirectories(xxe.getParent());
+			Files.writeString(xxe, "<!DOCTYPE html [<!ENTITY x SYSTEM \"" + secret.toUri() + "\">]><html><body><p>Hello &x;</p></body></html>");
+			Files.writeString(dtd, "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\" \"http://localhost:1/xhtml1-strict.dtd\">"
+				+ "<html><body><p>Text</p></body></html>");
+
+			PropertiesExtractor extractor = new PropertiesExtractor(dir.resolve("properties").toFile(), dir.resolve("templates").toFile(), StandardCharsets.UTF_8);
+			extractor.setQuiet(true);
+			if (mode.equals("streaming")) {
+				extractor.setStreaming(true);
+
+				// Entities declared in the document type are not supported at all.
+				assertThrows(SAXException.class, () -> extractor.process(List.of(xxe.toFile())));
+			} else {
+				extractor.setParser(TemplateParser.valueOf(mode));
+				extractor.process(List.of(xxe.toFile()));
+				String properties = Files.readString(dir.resolve("properties/xxe.properties"));
+				assertTrue(properties.contains("t0001=Hello"), mode);
+				assertFalse(properties.contains("SECRET"), mode);
+			}
+			assertFalse(Files.readString(xxe).contains("SECRET"), mode);
+
+			// The DTD is not loaded, the server does not exist.
+			extractor.process(List.of(dtd.toFile()));
+			assertTrue(Files.readString(dir.resolve("properties/dtd.properties")).contains("t0001=Text"), mode);
+		}
+	}
+
+	private static void extract(Path dir, int parallelism) throws Exception {
+		PropertiesExtractor extractor = new PropertiesExtractor(dir.resolve("properties").toFile(), dir.resolve("templates").toFile(), StandardCharsets.UTF_8);
+		extractor.setParallelism(parallelism);
+		extractor.setQuiet(true);
+		extractor.process();
+	}
+
+	/**
+	 * All files below the given directory relative to the directory in sorted order.
+	 */
+	private static List<Path> files(Path dir) throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			return files.filter(Files::isRegularFile).map(dir::relativize).sorted().toList();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package de.haumacher.webtranslate.extract;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.SAXException;
+
+/**
+ * Test case for {@link StreamingExtractor}.
+ */
+public class TestStreamingExtractor {
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testMarkup() throws Exception {
+		assertSameAsTree("<html><body>Some <a>funny <b><c>new</c><d>ly</d></b> generated <e>awesome</e></a> text</body></html>");
+	}
+
+	@Test
+	public void testExistingIds() throws Exception {
+		assertSameAsTree("<html><body>"
+			+ "<p data-tx=\"t0007\">First</p>"
+			+ "<p data-tx=\"t0007\">Duplicate</p>"
+			+ "<p data-tx=\"  \">Blank</p>"
+			+ "<div data-tx=\"t0042\"><span>No direct text</span></div>"
+			+ "<p>New <b data-tx=\"t0003\">nested</b> text</p>"
+			+ "</body></html>");
+	}
+
+	@Test
+	public void testRootId() throws Exception {
+		assertSameAsTree("<html data-tx=\"t0001\"><body><p data-tx=\"t0001\">Text</p></body></html>");
+	}
+
+	@Test
+	public void testAttributes() throws Exception {
+		assertSameAsTree("<html xmlns:th=\"http://www.thymeleaf.org\"><body>"
+			+ "<img src=\"a.png\" alt=\"A picture\" th:src=\"@{/a.png}\"/>"
+			+ "<p title=\"Tooltip\" class=\"x\">Text with <input placeholder=\"Your name\" type=\"text\"/> input</p>"
+			+ "<p title=\"  \"><b>bold</b></p>"
+			+ "</body></html>");
+	}
+
+	@Test
+	public void testCode() throws Exception {
+		assertSameAsTree("<html><body>"
+			+ "<pre title=\"Code\">if (a &lt; b) <b data-tx=\"t0009\">x</b></pre>"
+			+ "<p>Some <code>code</code> in text.</p>"
+			+ "<script>var x = 1;</script>"
+			+ "</body></html>");
+	}
+
+	@Test
+	public void testWhitespaceAndComments() throws Exception {
+		assertSameAsTree("<!DOCTYPE html>\n<html>\n  <body>\n    <!-- Comment -->\n"
+			+ "    <p>\n      Text   with\n\t lots of <b>white</b>   space &amp; <![CDATA[<cdata>]]> <!-- inner --> more.\n    </p>\n"
+			+ "    <th:block th:if=\"${x}\"><span>Block</span> text</th:block>\n"
+			+ "    <br/>\n  </body>\n</html>\n");
+	}
+
+	private void assertSameAsTree(String html) throws IOException, SAXException, ParserConfigurationException, XMLStreamException {
+		File treeFile = tmp.resolve("tree.html").toFile();
+		Files.writeString(treeFile.toPath(), html);
+		TemplateTree tree = PropertiesExtractor.parseHtml(treeFile);
+		HtmlAnalyzer analyzer = new HtmlAnalyzer(tree);
+		analyzer.analyze();
+		ByteArrayOutputStream expectedHtml = new ByteArrayOutputStream();
+		tree.write(expectedHtml);
+
+		File streamingFile = tmp.resolve("streaming.html").toFile();
+		Files.writeString(streamingFile.toPath(), html);
+		ByteArrayOutputStream actualHtml = new ByteArrayOutputStream();
+		Map<String, String> textById = new StreamingExtractor().extract(streamingFile, actualHtml);
+
+		assertEquals(properties(analyzer.getTextById()), properties(textById));
+		assertEquals(new String(expectedHtml.toByteArray(), StandardCharsets.UTF_8), new String(actualHtml.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	private String properties(Map<String, String> textById) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		new PropertiesCodec(StandardCharsets.UTF_8).write(buffer, textById);
+		return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,172 @@
+package de.haumacher.webtranslate.extract;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.SAXException;
+
+import de.haumacher.webtranslate.synthesize.TemplateSkeleton;
+
+/**
+ * Test case for {@link TemplateParser}.
+ */
+public class TestTemplateParser {
+
+	private static final String TEMPLATE = "<!DOCTYPE html>\n<html xmlns:th=\"http://www.thymeleaf.org\">\n  <body>\n    <!-- Comment -->\n"
+		+ "    <p title=\"Tooltip\" class=\"x\">\n      Text   with\n\t lots of <b>white</b>   space &amp; <![CDATA[<cdata>]]> <!-- inner --> more.\n    </p>\n"
+		+ "    <?pi data?>\n"
+		+ "    <th:block th:if=\"${x}\"><span>Block</span> text</th:block>\n"
+		+ "    <img src=\"a.png\" alt=\"A picture\"/>\n"
+		+ "    <br/>\n  </body>\n</html>\n";
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testSameResult() throws Exception {
+		File file = write("a.html", TEMPLATE);
+
+		TemplateTree dom = TemplateParser.DOM.parseTree(file);
+		TemplateTree sax = TemplateParser.SAX.parseTree(file);
+
+		Map<String, String> domTexts = analyze(dom);
+		Map<String, String> saxTexts = analyze(sax);
+		assertEquals(domTexts, saxTexts);
+		assertFalse(domTexts.isEmpty());
+		assertEquals(serialize(dom), serialize(sax));
+		assertEquals(TemplateSkeleton.compile(dom).render(domTexts), TemplateSkeleton.compile(sax).render(saxTexts));
+	}
+
+	@Test
+	public void testReuse() throws Exception {
+		for (TemplateParser parser : TemplateParser.values()) {
+			File broken = write("broken.html", "<html><body><p>Not closed</body></html>");
+			assertThrows(SAXException.class, () -> parser.parse(broken));
+
+			Document first = parser.parse(write("first.html", "<html><body><p>First</p></body></html>"));
+			Document second = parser.parse(write("second.html", "<html><body><p>Second</p></body></html>"));
+			assertNotSame(first, second);
+			assertEquals("First", first.getDocumentElement().getTextContent());
+			assertEquals("Second", second.getDocumentElement().getTextContent());
+		}
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		List<File> files = new ArrayList<>();
+		for (int n = 0; n < 20; n++) {
+			files.add(write("t" + n + ".html", "<html><body><p>Text " + n + "</p></body></html>"));
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			for (TemplateParser parser : TemplateParser.values()) {
+				List<Future<String>> results = new ArrayList<>();
+				for (File file : files) {
+					results.add(pool.submit(() -> parser.parse(file).getDocumentElement().getTextContent()));
+				}
+				for (int n = 0; n < files.size(); n++) {
+					assertEquals("Text " + n, results.get(n).get());
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testNoExternalEntities() throws Exception {
+		File secret = write("secret.txt", "secret");
+		File file = write("xxe.html", "<!DOCTYPE html [<!ENTITY xxe SYSTEM \"" + secret.toURI() + "\">]>"
+			+ "<html><body><p>Value: &xxe;</p></body></html>");
+		File dtd = write("dtd.html", "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\" \"http://localhost:1/xhtml1-strict.dtd\">"
+			+ "<html><body><p>Text</p></body></html>");
+
+		for (TemplateParser parser : TemplateParser.values()) {
+			assertFalse(parser.parse(file).getDocumentElement().getTextContent().contains("secret"), parser.name());
+
+			// The DTD is not loaded, the server does not exist.
+			assertEquals("Text", parser.parse(dtd).getDocumentElement().getTextContent(), parser.name());
+
+			assertFalse(text(parser.parseTree(file)).contains("secret"), parser.name());
+			assertEquals("Text", text(parser.parseTree(dtd)), parser.name());
+		}
+	}
+
+	@Test
+	public void testSaxNodes() throws Exception {
+		Document sax = TemplateParser.SAX.parse(write("a.html", TEMPLATE));
+
+		// Only the document element, no document type.
+		assertEquals(1, sax.getChildNodes().getLength());
+		assertOnlyElementsAndText(sax.getDocumentElement());
+
+		Node paragraph = sax.getElementsByTagName("p").item(0);
+		assertEquals(3, paragraph.getChildNodes().getLength());
+		assertEquals("   space & <cdata>  more.\n    ", paragraph.getLastChild().getNodeValue());
+	}
+
+	private static void assertOnlyElementsAndText(Node node) {
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			assertTrue(child instanceof Element || child instanceof Text, child.toString());
+			assertFalse(child instanceof Text && child.getPreviousSibling() instanceof Text, "Adjacent text nodes.");
+			assertOnlyElementsAndText(child);
+		}
+	}
+
+	private File write(String name, String contents) throws IOException {
+		File file = tmp.resolve(name).toFile();
+		Files.writeString(file.toPath(), contents);
+		return file;
+	}
+
+	private static Map<String, String> analyze(TemplateTree tree) {
+		HtmlAnalyzer analyzer = new HtmlAnalyzer(tree);
+		analyzer.analyze();
+		return analyzer.getTextById();
+	}
+
+	private static String serialize(TemplateTree tree) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		tree.write(buffer);
+		return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The concatenated contents of all text nodes of the given tree.
+	 */
+	private static String text(TemplateTree tree) {
+		StringBuilder result = new StringBuilder();
+		for (int node = 0, cnt = tree.size(); node < cnt; node++) {
+			if (tree.isText(node)) {
+				tree.appendText(result, node);
+			}
+		}
+		return result.toString();
+	}
+
+}
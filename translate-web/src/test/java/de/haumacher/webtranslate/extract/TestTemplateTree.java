@@ -0,0 +1,150 @@
+package de.haumacher.webtranslate.extract;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Test case for {@link TemplateTree}.
+ */
+public class TestTemplateTree {
+
+	private static final String HTML = """
+		<html>
+		<head><title>Page</title></head>
+		<body>
+		  <!-- A comment -->
+		  <p data-tx="t0007">Some <a href="#" title="Link">funny <b>nested</b></a> text.</p>
+		  <img src="x.png" alt="Image"/>
+		  <pre>code &amp; <b>stuff</b></pre>
+		  <div><span>Deep</span> and <i>deeper</i></div>
+		</body>
+		</html>
+		""";
+
+	@Test
+	public void testAnalyzeLikeDom() throws SAXException, IOException, ParserConfigurationException {
+		TemplateTree copy = TemplateParser.DOM.parseTree(source(HTML));
+		HtmlAnalyzer domAnalyzer = new HtmlAnalyzer(copy);
+		domAnalyzer.analyze();
+
+		TemplateTree tree = TemplateTree.parse(source(HTML));
+		HtmlAnalyzer treeAnalyzer = new HtmlAnalyzer(tree);
+		treeAnalyzer.analyze();
+
+		assertEquals(domAnalyzer.getTextById(), treeAnalyzer.getTextById());
+		assertEquals(html(copy), html(tree));
+	}
+
+	@Test
+	public void testInjectLikeDom() throws SAXException, IOException, ParserConfigurationException {
+		TemplateTree copy = TemplateParser.DOM.parseTree(source(HTML));
+		HtmlAnalyzer domAnalyzer = new HtmlAnalyzer(copy);
+		domAnalyzer.analyze();
+
+		TemplateTree tree = TemplateTree.parse(source(HTML));
+		HtmlAnalyzer treeAnalyzer = new HtmlAnalyzer(tree);
+		treeAnalyzer.analyze();
+
+		for (HtmlAnalyzer analyzer : new HtmlAnalyzer[] { domAnalyzer, treeAnalyzer }) {
+			analyzer.getTextById().put("t0007", "Etwas <x1>lustiger <x2>verschachtelter</x2></x1> Text.");
+			analyzer.getTextById().put("t0008", "Seite");
+			analyzer.inject();
+		}
+
+		String result = html(tree);
+		assertEquals(html(copy), result);
+		assertTrue(result.contains("<title data-tx=\"t0008\">Seite</title>"), result);
+		assertTrue(result.contains("<p data-tx=\"t0007\">Etwas <a data-tx=\"t0009\" href=\"#\" title=\"Link\">lustiger <b>verschachtelter</b></a> Text.</p>"), result);
+	}
+
+	@Test
+	public void testAttributes() throws SAXException, IOException, ParserConfigurationException {
+		TemplateTree tree = TemplateTree.parse(source("<p class=\"x\" id=\"y\">text</p>"));
+		int p = tree.getRoot();
+
+		assertEquals(2, tree.getAttributeCount(p));
+		assertEquals("y", tree.getAttribute(p, "id"));
+		assertEquals("", tree.getAttribute(p, "title"));
+
+		tree.setAttribute(p, "title", "Hello");
+		tree.setAttribute(p, "class", "z");
+		tree.removeAttribute(p, "id");
+
+		assertEquals(2, tree.getAttributeCount(p));
+		assertEquals("<!DOCTYPE html>\n<p class=\"z\" title=\"Hello\">text</p>", html(tree));
+	}
+
+	@Test
+	public void testAppendChild() throws SAXException, IOException, ParserConfigurationException {
+		TemplateTree tree = TemplateTree.parse(source("<div><a>1</a><b>2</b></div>"));
+		int div = tree.getRoot();
+		int a = tree.getFirstChild(div);
+		int b = tree.getNextSibling(a);
+
+		tree.appendChild(b, a);
+		assertEquals(b, tree.getFirstChild(div));
+		assertEquals(TemplateTree.NONE, tree.getNextSibling(b));
+		assertEquals(b, tree.getParent(a));
+		assertEquals("<!DOCTYPE html>\n<div><b>2<a>1</a></b></div>", html(tree));
+
+		assertThrows(IllegalArgumentException.class, () -> tree.appendChild(a, div));
+		assertThrows(IllegalArgumentException.class, () -> tree.appendChild(a, a));
+	}
+
+	@Test
+	public void testOf() throws SAXException, IOException, ParserConfigurationException {
+		Document document = TemplateParser.DOM.parse(source("<div><!-- c --><a>1</a><b>2</b></div>"));
+		TemplateTree tree = TemplateTree.of(document.getDocumentElement());
+		int div = tree.getRoot();
+		int a = tree.getFirstChild(div);
+		assertEquals("a", tree.getTagName(a));
+
+		tree.setAttribute(a, "title", "A");
+		tree.removeChildren(a);
+		tree.appendChild(a, tree.createText("x"));
+
+		assertEquals("<!DOCTYPE html>\n<div><a title=\"A\">x</a><b>2</b></div>", html(tree));
+
+		// The tree is a copy, the document is not modified.
+		assertFalse(document.getDocumentElement().getFirstChild().getNextSibling().hasAttributes());
+		assertEquals("12", document.getDocumentElement().getTextContent());
+	}
+
+	@Test
+	public void testCopy() throws SAXException, IOException, ParserConfigurationException {
+		TemplateTree tree = TemplateTree.parse(source("<div><a>1</a><b>2</b></div>"));
+		TemplateTree copy = tree.copy();
+		int a = copy.getFirstChild(copy.getRoot());
+
+		copy.setAttribute(a, "title", "A");
+		copy.removeChildren(a);
+		copy.appendChild(a, copy.createText("x"));
+
+		assertEquals("<!DOCTYPE html>\n<div><a title=\"A\">x</a><b>2</b></div>", html(copy));
+		assertEquals("<!DOCTYPE html>\n<div><a>1</a><b>2</b></div>", html(tree));
+	}
+
+	private static InputSource source(String html) {
+		return new InputSource(new StringReader(html));
+	}
+
+	private static String html(TemplateTree tree) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		tree.write(buffer);
+		return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,79 @@
+package de.haumacher.webtranslate.extract;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Test case for {@link TextIndex}.
+ */
+public class TestTextIndex {
+
+	@Test
+	public void testFacts() throws SAXException, IOException, ParserConfigurationException {
+		String html = "<html><body><div id=\"d\"><p id=\"p\"><b id=\"b\">bold</b> text</p></div>"
+			+ "<img id=\"img\" alt=\"Picture\"/>"
+			+ "<pre id=\"pre\">code <i id=\"i\" title=\"Ignored\">x</i></pre></body></html>";
+
+		TemplateTree tree = TemplateParser.DOM.parseTree(new InputSource(new StringReader(html)));
+		TextIndex index = TextIndex.build(tree, tree.getRoot());
+
+		// Text parents in the order their text is found: The text of "b" is found before the text of "p".
+		assertEquals(List.of("b", "p", "img"), Arrays.stream(index.getTextParents()).mapToObj(e -> tree.getAttribute(e, "id")).toList());
+
+		int div = byId(tree, "d");
+		assertFalse(index.hasDirectText(div));
+		assertTrue(index.hasDeepText(div));
+		assertFalse(index.isTextParent(div));
+
+		assertTrue(index.isBelowTextParent(byId(tree, "b")));
+		assertFalse(index.isBelowTextParent(byId(tree, "p")));
+		assertTrue(index.hasTextAttribute(byId(tree, "img")));
+
+		int pre = byId(tree, "pre");
+		assertTrue(index.hasDirectText(pre));
+		assertFalse(index.isTextParent(pre));
+		assertFalse(index.hasTextAttribute(byId(tree, "i")));
+		assertFalse(index.isTextParent(byId(tree, "i")));
+	}
+
+	@Test
+	public void testDeepNesting() throws SAXException, IOException, ParserConfigurationException {
+		int depth = 300;
+		StringBuilder html = new StringBuilder("<html><body>");
+		for (int n = 0; n < depth; n++) {
+			html.append("<span>x");
+		}
+		for (int n = 0; n < depth; n++) {
+			html.append("</span>");
+		}
+		html.append("</body></html>");
+
+		TemplateTree tree = TemplateParser.DOM.parseTree(new InputSource(new StringReader(html.toString())));
+		HtmlAnalyzer analyzer = new HtmlAnalyzer(tree);
+		analyzer.analyze();
+
+		// Only the outermost span gets an ID, all others are nested markup.
+		assertEquals(1, analyzer.getTextById().size());
+	}
+
+	private static int byId(TemplateTree tree, String id) {
+		for (int node = 0, cnt = tree.size(); node < cnt; node++) {
+			if (tree.isElement(node) && id.equals(tree.getAttribute(node, "id"))) {
+				return node;
+			}
+		}
+		throw new AssertionError("No element with ID: " + id);
+	}
+}
@@ -0,0 +1,115 @@
+package de.haumacher.webtranslate.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test case for {@link AtomicFileOutputStream}.
+ */
+public class TestAtomicFileOutputStream {
+
+	private static final long OLD_TIME = 1_000_000_000_000L;
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testCreate() throws IOException {
+		File file = tmp.resolve("sub/dir/a.txt").toFile();
+		try (AtomicFileOutputStream out = new AtomicFileOutputStream(file)) {
+			out.write(bytes("Hello"));
+			assertFalse(file.exists());
+			assertTrue(out.commit());
+		}
+		assertEquals("Hello", Files.readString(file.toPath()));
+		assertEquals(1, tmp.resolve("sub/dir").toFile().list().length);
+	}
+
+	@Test
+	public void testUnchanged() throws IOException {
+		File file = tmp.resolve("a.txt").toFile();
+		byte[] contents = new byte[20000];
+		for (int n = 0; n < contents.length; n++) {
+			contents[n] = (byte) n;
+		}
+		Files.write(file.toPath(), contents);
+		assertTrue(file.setLastModified(OLD_TIME));
+
+		try (AtomicFileOutputStream out = new AtomicFileOutputStream(file)) {
+			out.write(contents);
+			assertFalse(out.commit());
+		}
+		assertEquals(OLD_TIME, file.lastModified());
+
+		// Change in the last chunk.
+		contents[contents.length - 1]++;
+		assertTrue(AtomicFileOutputStream.update(file, contents));
+		assertArrayEquals(contents, Files.readAllBytes(file.toPath()));
+
+		// Prefix of the existing contents.
+		byte[] shorter = bytes("Hello");
+		assertTrue(AtomicFileOutputStream.update(file, shorter));
+		assertArrayEquals(shorter, Files.readAllBytes(file.toPath()));
+		assertFalse(AtomicFileOutputStream.update(file, shorter));
+	}
+
+	@Test
+	public void testDiscard() throws IOException {
+		File file = tmp.resolve("a.txt").toFile();
+		Files.writeString(file.toPath(), "original");
+
+		assertThrows(IllegalStateException.class, () -> {
+			try (AtomicFileOutputStream out = new AtomicFileOutputStream(file)) {
+				out.write(bytes("partial"));
+				throw new IllegalStateException("Failure while creating contents.");
+			}
+		});
+		assertEquals("original", Files.readString(file.toPath()));
+		assertEquals(1, tmp.toFile().list().length);
+
+		AtomicFileOutputStream closed = new AtomicFileOutputStream(file);
+		closed.close();
+		assertThrows(IOException.class, () -> closed.write(1));
+		assertThrows(IOException.class, () -> closed.commit());
+	}
+
+	@Test
+	public void testPermissions() throws IOException {
+		assumeTrue(tmp.getFileSystem().supportedFileAttributeViews().contains("posix"));
+
+		Path file = tmp.resolve("a.txt");
+		Files.writeString(file, "original");
+		Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+		Files.setPosixFilePermissions(file, permissions);
+
+		assertTrue(AtomicFileOutputStream.update(file.toFile(), bytes("changed")));
+		assertEquals(permissions, Files.getPosixFilePermissions(file));
+
+		// New files get the defaults instead of the restrictive permissions of temporary files.
+		Path plain = Files.createFile(tmp.resolve("plain.txt"));
+		Path created = tmp.resolve("b.txt");
+		assertTrue(AtomicFileOutputStream.update(created.toFile(), bytes("new")));
+		assertEquals(Files.getPosixFilePermissions(plain), Files.getPosixFilePermissions(created));
+	}
+
+	private static byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+}
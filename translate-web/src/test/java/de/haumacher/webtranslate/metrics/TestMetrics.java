@@ -0,0 +1,113 @@
+package de.haumacher.webtranslate.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test case for {@link Metrics}.
+ */
+public class TestMetrics {
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testReport() throws IOException {
+		Metrics metrics = new Metrics();
+		Metrics.Phase phase = metrics.startPhase(Metrics.EXTRACT);
+		try {
+			metrics.startFile(Metrics.EXTRACT, new File("a \"quoted\".html")).finish(100, 150, 3);
+			metrics.startFile(Metrics.EXTRACT, new File("b.html")).finish(10, 20, 1);
+			metrics.startFile(Metrics.EXTRACT, new File("failed.html"));
+			metrics.cacheAccess(Metrics.BUILD_MANIFEST, true);
+			metrics.cacheAccess(Metrics.BUILD_MANIFEST, false);
+		} finally {
+			phase.close();
+		}
+		metrics.startRequest("de", 4).finish(42, true);
+		metrics.startRequest("de", 2).finish(0, false);
+
+		assertEquals(2, metrics.getFiles(Metrics.EXTRACT));
+		assertEquals(4, metrics.getStrings(Metrics.EXTRACT));
+		assertEquals(2, metrics.getRequests("de"));
+		assertEquals(42, metrics.getBilledChars("de"));
+		assertEquals(1, metrics.getHits(Metrics.BUILD_MANIFEST));
+		assertEquals(1, metrics.getMisses(Metrics.BUILD_MANIFEST));
+		assertEquals(0, metrics.getFiles(Metrics.SYNTHESIZE));
+
+		File file = tmp.resolve("report/run.json").toFile();
+		metrics.writeReport(file);
+		String report = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+
+		assertTrue(report.contains("\"files\": 2, "), report);
+		assertTrue(report.contains("\"bytesRead\": 110, \"bytesWritten\": 170, \"strings\": 4}"), report);
+		assertTrue(report.contains("\"de\": {\"requests\": 2, \"failures\": 1, \"texts\": 6, \"billedChars\": 42, "), report);
+		assertTrue(report.contains("{\"le\": 10, \"count\": 2}"), report);
+		assertTrue(report.contains("{\"le\": null, \"count\": 0}"), report);
+		assertTrue(report.contains("\"build-manifest\": {\"hits\": 1, \"misses\": 1}"), report);
+		assertTrue(report.contains("\"path\": \"a \\\"quoted\\\".html\""), report);
+
+		metrics.reset();
+		StringBuilder empty = new StringBuilder();
+		metrics.writeJson(empty);
+		assertEquals("{\n  \"phases\": {},\n  \"languages\": {},\n  \"caches\": {},\n  \"files\": []\n}\n", empty.toString());
+	}
+
+	@Test
+	public void testEvents() throws IOException {
+		Path dump = tmp.resolve("run.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("de.haumacher.webtranslate.Phase");
+			recording.enable("de.haumacher.webtranslate.File");
+			recording.enable("de.haumacher.webtranslate.TranslationRequest");
+			recording.start();
+
+			Metrics metrics = new Metrics();
+			Metrics.Phase phase = metrics.startPhase(Metrics.SYNTHESIZE);
+			try {
+				metrics.startFile(Metrics.SYNTHESIZE, new File("a.html")).finish(100, 200, 5);
+			} finally {
+				phase.close();
+			}
+			metrics.startRequest("fr", 3).finish(17, true);
+
+			recording.stop();
+			recording.dump(dump);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+		assertEquals(3, events.size());
+
+		RecordedEvent file = event(events, "de.haumacher.webtranslate.File");
+		assertEquals("synthesize", file.getString("phase"));
+		assertEquals("a.html", file.getString("path"));
+		assertEquals(200, file.getLong("bytesWritten"));
+		assertEquals(5, file.getInt("strings"));
+
+		RecordedEvent request = event(events, "de.haumacher.webtranslate.TranslationRequest");
+		assertEquals("fr", request.getString("destLang"));
+		assertEquals(17, request.getInt("billedChars"));
+		assertTrue(request.getBoolean("success"));
+
+		assertEquals("synthesize", event(events, "de.haumacher.webtranslate.Phase").getString("phase"));
+	}
+
+	private static RecordedEvent event(List<RecordedEvent> events, String name) {
+		return events.stream().filter(e -> e.getEventType().getName().equals(name)).findFirst().orElseThrow();
+	}
+
+}
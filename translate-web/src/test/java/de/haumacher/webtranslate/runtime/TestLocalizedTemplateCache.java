@@ -0,0 +1,123 @@
+package de.haumacher.webtranslate.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test case for {@link LocalizedTemplateCache}.
+ */
+public class TestLocalizedTemplateCache {
+
+	private static final String TEMPLATE = "<html><body><p data-tx=\"t0001\">Hello <b>world</b>!</p></body></html>";
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testRender() throws Exception {
+		write("templates/en/sub/page.html", TEMPLATE);
+		write("properties/de/sub/page.properties", "t0001=Hallo <x1>Welt</x1>!\n");
+
+		LocalizedTemplateCache cache = cache(10);
+		String de = cache.getTemplate("sub/page.html", "de");
+		assertEquals("<!DOCTYPE html>\n<html><body><p data-tx=\"t0001\">Hallo <b>Welt</b>!</p></body></html>", de);
+
+		// Without translations, the source text is used.
+		assertEquals("<!DOCTYPE html>\n" + TEMPLATE, cache.getTemplate("sub/page.html", "fr"));
+
+		assertNull(cache.getTemplate("sub/missing.html", "de"));
+		assertThrows(IllegalArgumentException.class, () -> cache.getTemplate("../de/sub/page.html", "de"));
+		assertThrows(IllegalArgumentException.class, () -> cache.getTemplate("sub/page.html", "../en"));
+
+		assertSame(de, cache.getTemplate("sub/page.html", "de"));
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testChange() throws Exception {
+		write("templates/en/page.html", TEMPLATE);
+		write("properties/de/page.properties", "t0001=Hallo <x1>Welt</x1>!\n");
+
+		LocalizedTemplateCache cache = cache(10);
+		assertEquals("<!DOCTYPE html>\n<html><body><p data-tx=\"t0001\">Hallo <b>Welt</b>!</p></body></html>", cache.getTemplate("page.html", "de"));
+
+		write("properties/de/page.properties", "t0001=Hallo <x1>Leute</x1>!\n");
+		assertEquals("<!DOCTYPE html>\n<html><body><p data-tx=\"t0001\">Hallo <b>Leute</b>!</p></body></html>", cache.getTemplate("page.html", "de"));
+
+		write("templates/en/page.html", TEMPLATE.replace("<b>", "<i>").replace("</b>", "</i>").replace("!", "!!"));
+		assertEquals("<!DOCTYPE html>\n<html><body><p data-tx=\"t0001\">Hallo <i>Leute</i>!</p></body></html>", cache.getTemplate("page.html", "de"));
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	public void testSameSizeChange() throws Exception {
+		Path template = write("templates/en/page.html", TEMPLATE);
+		Path properties = write("properties/de/page.properties", "t0001=Hallo <x1>Welt</x1>!\n");
+
+		LocalizedTemplateCache cache = cache(10);
+		assertEquals("<!DOCTYPE html>\n<html><body><p data-tx=\"t0001\">Hallo <b>Welt</b>!</p></body></html>", cache.getTemplate("page.html", "de"));
+
+		// Edits within the same timestamp tick that keep the sizes.
+		FileTime modified = Files.getLastModifiedTime(properties);
+		write("properties/de/page.properties", "t0001=Hallo <x1>Wald</x1>!\n");
+		Files.setLastModifiedTime(properties, modified);
+		assertEquals("<!DOCTYPE html>\n<html><body><p data-tx=\"t0001\">Hallo <b>Wald</b>!</p></body></html>", cache.getTemplate("page.html", "de"));
+
+		modified = Files.getLastModifiedTime(template);
+		write("templates/en/page.html", TEMPLATE.replace("<b>", "<i>").replace("</b>", "</i>"));
+		Files.setLastModifiedTime(template, modified);
+		assertEquals("<!DOCTYPE html>\n<html><body><p data-tx=\"t0001\">Hallo <i>Wald</i>!</p></body></html>", cache.getTemplate("page.html", "de"));
+		assertEquals(0, cache.getHits());
+
+		// Unchanged files are still served from the cache.
+		cache.getTemplate("page.html", "de");
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		for (int n = 0; n < 3; n++) {
+			write("templates/en/page" + n + ".html", TEMPLATE);
+		}
+
+		LocalizedTemplateCache cache = cache(2);
+		cache.getTemplate("page0.html", "de");
+		cache.getTemplate("page1.html", "de");
+		cache.getTemplate("page0.html", "de");
+		cache.getTemplate("page2.html", "de");
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getHits());
+
+		// Least recently used entry has been evicted.
+		cache.getTemplate("page0.html", "de");
+		assertEquals(2, cache.getHits());
+		cache.getTemplate("page1.html", "de");
+		assertEquals(2, cache.getHits());
+
+		cache.invalidate("page1.html");
+		assertEquals(1, cache.size());
+	}
+
+	private LocalizedTemplateCache cache(int maxEntries) {
+		return new LocalizedTemplateCache(tmp.resolve("templates").toFile(), tmp.resolve("properties").toFile(), "en", StandardCharsets.UTF_8, maxEntries);
+	}
+
+	private Path write(String name, String content) throws IOException {
+		Path file = tmp.resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+		return file;
+	}
+}
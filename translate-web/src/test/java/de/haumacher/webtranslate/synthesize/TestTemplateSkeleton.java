@@ -0,0 +1,119 @@
+package de.haumacher.webtranslate.synthesize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.SAXException;
+
+import de.haumacher.webtranslate.extract.HtmlAnalyzer;
+import de.haumacher.webtranslate.extract.PropertiesExtractor;
+import de.haumacher.webtranslate.extract.TemplateTree;
+
+/**
+ * Test case for {@link TemplateSkeleton}.
+ */
+public class TestTemplateSkeleton {
+
+	private static final String TEMPLATE = "<!DOCTYPE html>\n<html xmlns:th=\"http://www.thymeleaf.org\">\n<body>\n"
+		+ "<p title=\"Tool &quot;tip&quot;\">Some <a href=\"?a=1&amp;b=2\">funny <b><c>new</c><d>ly</d></b> generated <e>awesome</e></a> text</p>\n"
+		+ "<div><span>Only</span> <img src=\"a.png\" alt=\"A picture\"/> <i>nested <u>deeply <s>struck</s></u></i></div>\n"
+		+ "<pre title=\"Code\">if (a &lt; b) <b>x</b></pre>\n"
+		+ "<th:block th:if=\"${x}\"><span>Block</span> text</th:block>\n"
+		+ "<ul><li>One</li><li>Two <br/> lines</li></ul>\n"
+		+ "</body>\n</html>\n";
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testOriginal() throws Exception {
+		assertSameAsInjection(new HashMap<>());
+	}
+
+	@Test
+	public void testTranslations() throws Exception {
+		Map<String, String> textById = extract();
+		Map<String, String> translated = new HashMap<>();
+		for (Map.Entry<String, String> entry : textById.entrySet()) {
+			translated.put(entry.getKey(), entry.getValue().replace("e", "\u00e9").replace("a", "<&\"a\">"));
+		}
+		assertSameAsInjection(translated);
+	}
+
+	@Test
+	public void testReorderedAndBrokenMarkup() throws Exception {
+		Random rnd = new Random(42);
+		Map<String, String> textById = extract();
+		for (int round = 0; round < 500; round++) {
+			Map<String, String> translated = new HashMap<>();
+			for (String key : textById.keySet()) {
+				StringBuilder text = new StringBuilder();
+				for (int n = 0, cnt = rnd.nextInt(8); n < cnt; n++) {
+					int index = 1 + rnd.nextInt(6);
+					switch (rnd.nextInt(3)) {
+						case 0: text.append("<x").append(index).append('>'); break;
+						case 1: text.append("</x").append(index).append('>'); break;
+						default: text.append("w").append(n).append(' '); break;
+					}
+				}
+				translated.put(key, text.toString());
+			}
+			assertSameAsInjection(translated);
+		}
+	}
+
+	private Map<String, String> extract() throws IOException, SAXException, ParserConfigurationException {
+		HtmlAnalyzer analyzer = new HtmlAnalyzer(parse(TEMPLATE));
+		analyzer.analyze();
+		return analyzer.getTextById();
+	}
+
+	private void assertSameAsInjection(Map<String, String> textById) throws IOException, SAXException, ParserConfigurationException {
+		TemplateTree source = parse(TEMPLATE);
+		new HtmlAnalyzer(source).analyze();
+		ByteArrayOutputStream template = new ByteArrayOutputStream();
+		source.write(template);
+		String analyzed = new String(template.toByteArray(), StandardCharsets.UTF_8);
+
+		String expected;
+		try {
+			TemplateTree tree = parse(analyzed);
+			HtmlAnalyzer analyzer = new HtmlAnalyzer(tree);
+			analyzer.setTextById(textById);
+			analyzer.inject();
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			tree.write(buffer);
+			expected = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException ex) {
+			expected = "Failed: " + ex.getMessage();
+		}
+
+		String actual;
+		try {
+			actual = TemplateSkeleton.compile(parse(analyzed)).render(textById);
+		} catch (IllegalArgumentException ex) {
+			actual = "Failed: " + ex.getMessage();
+		}
+
+		assertEquals(expected, actual, () -> "Translations: " + textById);
+	}
+
+	private TemplateTree parse(String html) throws IOException, SAXException, ParserConfigurationException {
+		File file = Files.createTempFile(tmp, "template", ".html").toFile();
+		Files.writeString(file.toPath(), html);
+		return PropertiesExtractor.parseHtml(file);
+	}
+}
@@ -0,0 +1,364 @@
+package de.haumacher.webtranslate.translate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.haumacher.webtranslate.metrics.Metrics;
+
+/**
+ * Test case for {@link PropertiesTranslator}.
+ */
+public class TestPropertiesTranslator {
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testTranslate() throws Exception {
+		writeSource("a.properties", "t0001=Hello <x1>world</x1>\nt0002=Second\nt0003=Third\n");
+		writeSource("sub/b.properties", "t0001=Other\n");
+
+		FakeTranslationBackend backend = new FakeTranslationBackend();
+		PropertiesTranslator translator = translator(backend, List.of("de", "fr"));
+		translator.setBatchLimits(3, 1000);
+		translator.translate();
+
+		assertEquals("[DE] Hello <x1>world</x1>", load("de/a.properties").getProperty("t0001"));
+		assertEquals("[FR] Third", load("fr/a.properties").getProperty("t0003"));
+		assertEquals("[DE] Other", load("de/sub/b.properties").getProperty("t0001"));
+
+		// Four texts per language in batches of at most three texts.
+		assertEquals(4, backend.getRequests());
+		assertEquals(8, backend.getTexts());
+
+		// Nothing left to translate.
+		translator.translate();
+		assertEquals(4, backend.getRequests());
+	}
+
+	@Test
+	public void testConcurrency() throws Exception {
+		StringBuilder source = new StringBuilder();
+		for (int n = 1; n <= 40; n++) {
+			source.append("t").append(n).append("=Text ").append(n).append('\n');
+		}
+		writeSource("a.properties", source.toString());
+
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		Executor delayed = CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS, Executors.newCachedThreadPool());
+		FakeTranslationBackend fake = new FakeTranslationBackend();
+		TranslationBackend backend = (texts, srcLang, destLang) -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			return CompletableFuture.supplyAsync(() -> {
+				inFlight.decrementAndGet();
+				return fake.translate(texts, srcLang, destLang).join();
+			}, delayed);
+		};
+
+		PropertiesTranslator translator = translator(backend, List.of("de"));
+		translator.setBatchLimits(2, 1000);
+		translator.setConcurrency(4);
+		translator.translate();
+
+		assertEquals(20, fake.getRequests());
+		assertTrue(maxInFlight.get() <= 4, "In flight: " + maxInFlight.get());
+		assertTrue(maxInFlight.get() > 1, "In flight: " + maxInFlight.get());
+		assertEquals("[DE] Text 40", load("de/a.properties").getProperty("t40"));
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		writeSource("a.properties", "t0001=One\n");
+		writeSource("b.properties", "t0001=Two\n");
+
+		FakeTranslationBackend fake = new FakeTranslationBackend();
+		TranslationBackend backend = (texts, srcLang, destLang) -> {
+			if (texts.contains("Two")) {
+				return CompletableFuture.supplyAsync(() -> {
+					throw new CompletionException(new IOException("Service unavailable."));
+				}, CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS));
+			}
+			return fake.translate(texts, srcLang, destLang);
+		};
+
+		PropertiesTranslator translator = translator(backend, List.of("de"));
+		translator.setBatchLimits(1, 1000);
+		translator.setConcurrency(2);
+		IOException failure = assertThrows(IOException.class, translator::translate);
+		assertEquals("Service unavailable.", failure.getMessage());
+
+		// Complete files are written nevertheless.
+		assertEquals("[DE] One", load("de/a.properties").getProperty("t0001"));
+		assertFalse(new File(tmp.toFile(), "de/b.properties").exists());
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		writeSource("a.properties", "t0001=One\nt0002=Two\nt0003=Three\n");
+
+		Metrics metrics = new Metrics();
+		PropertiesTranslator translator = translator(new FakeTranslationBackend(), List.of("de", "fr"));
+		translator.setBatchLimits(2, 1000);
+		translator.setMetrics(metrics);
+		translator.setQuiet(true);
+		translator.translate();
+
+		assertEquals(2, metrics.getRequests("de"));
+		assertEquals(2, metrics.getRequests("fr"));
+		assertEquals(11, metrics.getBilledChars("de"));
+		assertEquals(2, metrics.getFiles(Metrics.TRANSLATE));
+		assertEquals(6, metrics.getStrings(Metrics.TRANSLATE));
+	}
+
+	@Test
+	public void testPlan() throws Exception {
+		writeSource("a.properties", "t0001=One\nt0002=Two\nt0003=Three\n");
+		writeSource("b.properties", "t0001=Gr\\u00fc\\u00dfe\n");
+
+		FakeTranslationBackend backend = new FakeTranslationBackend();
+		PropertiesTranslator translator = translator(backend, List.of("de", "fr"));
+		translator.setBatchLimits(2, 1000);
+		TranslationPlan plan = translator.plan();
+
+		assertEquals(0, backend.getRequests());
+		assertFalse(new File(tmp.toFile(), "de").exists());
+
+		assertEquals(8, plan.getTexts());
+		assertEquals(2 * (3 + 3 + 5 + 5), plan.getChars());
+		assertEquals(2, plan.getRequests("de"));
+		assertEquals(4, plan.getRequests());
+		assertEquals(4, plan.getEntries().size());
+
+		// Requests of 10, 10, 6, and 6 characters.
+		assertEquals(100 + 10 + 100 + 6, plan.estimateMillis(2, 100, 1.0));
+		assertEquals(4 * 100 + 32, plan.estimateMillis(1, 100, 1.0));
+
+		translator.translate();
+		assertEquals(plan.getRequests(), backend.getRequests());
+		assertEquals(0, translator.plan().getTexts());
+	}
+
+	@Test
+	public void testCharBudget() throws Exception {
+		writeSource("a.properties", "t0001=One\nt0002=Two\n");
+
+		FakeTranslationBackend backend = new FakeTranslationBackend();
+		PropertiesTranslator translator = translator(backend, List.of("de", "fr"));
+		translator.setBatchLimits(1, 1000);
+		translator.setCharBudget(8);
+
+		// Only the first language fits into the budget, files are not translated partially.
+		assertEquals(1, translator.plan().getDeferred());
+		assertEquals(6, translator.plan().getChars());
+		translator.translate();
+		assertEquals(2, backend.getRequests());
+		assertEquals("[DE] Two", load("de/a.properties").getProperty("t0002"));
+		assertFalse(new File(tmp.toFile(), "fr/a.properties").exists());
+
+		// The next run continues with the rest.
+		translator.translate();
+		assertEquals(4, backend.getRequests());
+		assertEquals("[FR] One", load("fr/a.properties").getProperty("t0001"));
+	}
+
+	@Test
+	public void testOversizedFile() throws Exception {
+		writeSource("a.properties", "t0001=One\n");
+		writeSource("b.properties", "t0001=Much too long for the budget\n");
+		writeSource("c.properties", "t0001=Two\n");
+
+		FakeTranslationBackend backend = new FakeTranslationBackend();
+		PropertiesTranslator translator = translator(backend, List.of("de"));
+		translator.setCharBudget(10);
+		assertEquals(1, translator.plan().getDeferred());
+
+		// The file exceeding the whole budget does not block the following files.
+		translator.translate();
+		assertEquals("[DE] One", load("de/a.properties").getProperty("t0001"));
+		assertEquals("[DE] Two", load("de/c.properties").getProperty("t0001"));
+		assertFalse(new File(tmp.toFile(), "de/b.properties").exists());
+		assertEquals(2, backend.getTexts());
+
+		translator.translate();
+		assertEquals(2, backend.getTexts());
+		assertEquals(1, translator.plan().getDeferred());
+
+		translator.setCharBudget(100);
+		translator.translate();
+		assertEquals("[DE] Much too long for the budget", load("de/b.properties").getProperty("t0001"));
+	}
+
+	@Test
+	public void testPlanWithMemory() throws Exception {
+		writeSource("a.properties", "t0001=One\nt0002=Two\n");
+
+		try (TranslationMemory memory = new TranslationMemory(tmp.resolve("memory.log").toFile(), 100)) {
+			memory.store("en", "de", "One", "Eins");
+
+			PropertiesTranslator translator = translator(new FakeTranslationBackend(), List.of("de"));
+			translator.setTranslationMemory(memory);
+			assertEquals(1, translator.plan().getTexts());
+
+			// Planning does not count as use of the memory.
+			assertEquals(0, memory.getHits());
+			assertEquals(0, memory.getMisses());
+
+			translator.translate();
+			assertEquals(1, memory.getHits());
+			assertEquals(1, memory.getMisses());
+			assertEquals("Eins", load("de/a.properties").getProperty("t0001"));
+		}
+	}
+
+	@Test
+	public void testLargestFirst() throws Exception {
+		writeSource("a.properties", "t0001=A\nt0002=Bbbbbbbbbbbbbbbb\nt0003=Cc\nt0004=Dddddddd\n");
+
+		List<String> sent = new CopyOnWriteArrayList<>();
+		FakeTranslationBackend fake = new FakeTranslationBackend();
+		TranslationBackend backend = (texts, srcLang, destLang) -> {
+			sent.addAll(texts);
+			return fake.translate(texts, srcLang, destLang);
+		};
+
+		PropertiesTranslator translator = translator(backend, List.of("de"));
+		translator.setBatchLimits(1, 1000);
+		translator.setConcurrency(2);
+		translator.translate();
+
+		assertEquals(List.of("Bbbbbbbbbbbbbbbb", "Dddddddd", "Cc", "A"), sent);
+	}
+
+	@Test
+	public void testResume() throws Exception {
+		writeSource("a.properties", "t0001=One\nt0002=Two\nt0003=Three\n");
+		File journalFile = tmp.resolve("journal.log").toFile();
+
+		FakeTranslationBackend fake = new FakeTranslationBackend();
+		AtomicInteger attempts = new AtomicInteger();
+		TranslationBackend backend = (texts, srcLang, destLang) -> {
+			if (texts.contains("Three") && attempts.incrementAndGet() == 1) {
+				return CompletableFuture.failedFuture(new IOException("Quota exceeded."));
+			}
+			return fake.translate(texts, srcLang, destLang);
+		};
+
+		PropertiesTranslator translator = translator(backend, List.of("de"));
+		translator.setBatchLimits(1, 1000);
+		try (TranslationJournal journal = new TranslationJournal(journalFile)) {
+			translator.setJournal(journal);
+			assertThrows(IOException.class, translator::translate);
+		}
+		assertFalse(new File(tmp.toFile(), "de/a.properties").exists());
+		assertEquals(2, fake.getRequests());
+
+		// A changed source text is translated again, the other one is taken from the journal.
+		writeSource("a.properties", "t0001=One\nt0002=Two!\nt0003=Three\n");
+		try (TranslationJournal journal = new TranslationJournal(journalFile)) {
+			assertEquals(2, journal.size());
+			translator.setJournal(journal);
+			translator.translate();
+		}
+		assertEquals(4, fake.getRequests());
+		assertEquals("[DE] One", load("de/a.properties").getProperty("t0001"));
+		assertEquals("[DE] Two!", load("de/a.properties").getProperty("t0002"));
+		assertEquals("[DE] Three", load("de/a.properties").getProperty("t0003"));
+		assertFalse(journalFile.exists());
+	}
+
+	@Test
+	public void testResumeDeletedSource() throws Exception {
+		writeSource("a.properties", "t0001=One\nt0002=Two\n");
+		writeSource("b.properties", "t0001=Other\n");
+		File journalFile = tmp.resolve("journal.log").toFile();
+
+		FakeTranslationBackend fake = new FakeTranslationBackend();
+		TranslationBackend backend = (texts, srcLang, destLang) -> {
+			if (texts.contains("Two")) {
+				return CompletableFuture.failedFuture(new IOException("Quota exceeded."));
+			}
+			return fake.translate(texts, srcLang, destLang);
+		};
+
+		PropertiesTranslator translator = translator(backend, List.of("de"));
+		translator.setBatchLimits(1, 1000);
+		try (TranslationJournal journal = new TranslationJournal(journalFile)) {
+			translator.setJournal(journal);
+			assertThrows(IOException.class, translator::translate);
+		}
+		assertTrue(journalFile.exists());
+
+		// The journaled translation of the deleted source is dropped.
+		Files.delete(tmp.resolve("en/a.properties"));
+		try (TranslationJournal journal = new TranslationJournal(journalFile)) {
+			assertEquals(1, journal.size());
+			translator.setJournal(journal);
+			translator.translate();
+			assertEquals(0, journal.size());
+		}
+		assertFalse(journalFile.exists());
+	}
+
+	@Test
+	public void testDeduplicate() throws Exception {
+		writeSource("a.properties", "t0001=Save\nt0002=Cancel\n");
+		writeSource("sub/b.properties", "t0001=Save\nt0002=Other\nt0003=  Save \\n\n");
+
+		FakeTranslationBackend backend = new FakeTranslationBackend();
+		PropertiesTranslator translator = translator(backend, List.of("de", "fr"));
+
+		TranslationPlan plan = translator.plan();
+		assertEquals(6, plan.getTexts());
+		assertEquals(4, plan.getEntries().stream().mapToInt(TranslationPlan.Entry::duplicates).sum());
+
+		translator.translate();
+
+		// Each distinct text is sent once per language.
+		assertEquals(6, backend.getTexts());
+		assertEquals("[DE] Save", load("de/a.properties").getProperty("t0001"));
+		assertEquals("[DE] Save", load("de/sub/b.properties").getProperty("t0001"));
+		assertEquals("[FR] Save", load("fr/sub/b.properties").getProperty("t0003"));
+		assertEquals("[FR] Other", load("fr/sub/b.properties").getProperty("t0002"));
+	}
+
+	private PropertiesTranslator translator(TranslationBackend backend, List<String> destLangs) {
+		return new PropertiesTranslator(backend, "en", destLangs, tmp.toFile(), null, NameStrategy.LANG_TAG_DIR, StandardCharsets.UTF_8);
+	}
+
+	private void writeSource(String name, String content) throws IOException {
+		Path file = tmp.resolve("en").resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+	}
+
+	private Properties load(String name) throws IOException {
+		Properties result = new Properties();
+		try (FileInputStream in = new FileInputStream(tmp.resolve(name).toFile())) {
+			result.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,100 @@
+package de.haumacher.webtranslate.translate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.haumacher.webtranslate.translate.TranslationJob.Segment;
+
+/**
+ * Test case for {@link RequestBatch}.
+ */
+public class TestRequestBatch {
+
+	@Test
+	public void testRequestSize() {
+		assertEquals(6, RequestBatch.requestSize(""));
+		assertEquals(6 + 5, RequestBatch.requestSize("Ab 1."));
+		assertEquals(6 + 3 + 3, RequestBatch.requestSize("<&"));
+		assertEquals(6 + 6, RequestBatch.requestSize("\u00e4"));
+		assertEquals(6 + 9, RequestBatch.requestSize("\u20ac"));
+		assertEquals(6 + 12, RequestBatch.requestSize("\ud83d\ude00"));
+	}
+
+	@Test
+	public void testMaxTexts() {
+		List<Segment> segments = segments(120, "Text");
+		List<RequestBatch> batches = RequestBatch.pack("de", segments, PropertiesTranslator.DEFAULT_MAX_BATCH_TEXTS, PropertiesTranslator.DEFAULT_MAX_BATCH_SIZE);
+
+		assertEquals(3, batches.size());
+		assertEquals(50, batches.get(0).getSegments().size());
+		assertEquals(50, batches.get(1).getSegments().size());
+		assertEquals(20, batches.get(2).getSegments().size());
+		assertEquals(segments, concat(batches));
+		assertEquals("de", batches.get(2).getDestLang());
+		assertEquals(20 * 4, batches.get(2).getChars());
+	}
+
+	@Test
+	public void testMaxSize() {
+		int maxSize = PropertiesTranslator.DEFAULT_MAX_BATCH_SIZE;
+
+		// Each text occupies 6 + 9994 = 10000 bytes, so 13 texts fit into 127 KiB.
+		List<Segment> segments = segments(30, "x".repeat(9994));
+		List<RequestBatch> batches = RequestBatch.pack("de", segments, PropertiesTranslator.DEFAULT_MAX_BATCH_TEXTS, maxSize);
+
+		assertEquals(3, batches.size());
+		assertEquals(13, batches.get(0).getSegments().size());
+		assertEquals(130000, batches.get(0).getSize());
+		assertEquals(13, batches.get(1).getSegments().size());
+		assertEquals(4, batches.get(2).getSegments().size());
+		assertEquals(segments, concat(batches));
+
+		// A text that exactly fills the limit.
+		batches = RequestBatch.pack("de", segments(2, "x".repeat(maxSize - 6)), 50, maxSize);
+		assertEquals(2, batches.size());
+		assertEquals(maxSize, batches.get(0).getSize());
+	}
+
+	@Test
+	public void testOversized() {
+		int maxSize = 1000;
+		List<Segment> segments = new ArrayList<>();
+		segments.add(segment(0, "Small"));
+		segments.add(segment(1, "x".repeat(2000)));
+		segments.add(segment(2, "Small"));
+		segments.add(segment(3, "Small"));
+
+		List<RequestBatch> batches = RequestBatch.pack("de", segments, 50, maxSize);
+
+		// The oversized text is sent alone, the order is preserved.
+		assertEquals(3, batches.size());
+		assertEquals(List.of(segments.get(0)), batches.get(0).getSegments());
+		assertEquals(List.of(segments.get(1)), batches.get(1).getSegments());
+		assertEquals(2006, batches.get(1).getSize());
+		assertEquals(segments.subList(2, 4), batches.get(2).getSegments());
+	}
+
+	private static List<Segment> segments(int count, String text) {
+		List<Segment> result = new ArrayList<>(count);
+		for (int n = 0; n < count; n++) {
+			result.add(segment(n, text));
+		}
+		return result;
+	}
+
+	private static Segment segment(int n, String text) {
+		return new Segment(null, "t" + n, text);
+	}
+
+	private static List<Segment> concat(List<RequestBatch> batches) {
+		List<Segment> result = new ArrayList<>();
+		for (RequestBatch batch : batches) {
+			result.addAll(batch.getSegments());
+		}
+		return result;
+	}
+}
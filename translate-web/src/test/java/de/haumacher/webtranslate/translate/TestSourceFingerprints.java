@@ -0,0 +1,131 @@
+package de.haumacher.webtranslate.translate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test case for {@link SourceFingerprints}.
+ */
+public class TestSourceFingerprints {
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testReadWrite() throws IOException {
+		File output = tmp.resolve("de/a.properties").toFile();
+		assertNull(SourceFingerprints.load(output));
+
+		output.getParentFile().mkdirs();
+		SourceFingerprints.write(output, Map.of("t2", "Two", "t1", "One"));
+
+		File sidecar = SourceFingerprints.sidecar(output);
+		assertEquals(new File(output.getPath() + SourceFingerprints.SUFFIX), sidecar);
+		assertEquals(List.of(
+			"t1\t" + SourceFingerprints.fingerprint("One"),
+			"t2\t" + SourceFingerprints.fingerprint("Two")),
+			Files.readAllLines(sidecar.toPath(), StandardCharsets.UTF_8));
+
+		assertEquals(Map.of(
+			"t1", SourceFingerprints.fingerprint("One"),
+			"t2", SourceFingerprints.fingerprint("Two")),
+			SourceFingerprints.load(output));
+	}
+
+	@Test
+	public void testFingerprint() {
+		assertEquals(16, SourceFingerprints.fingerprint("").length());
+		assertEquals(SourceFingerprints.fingerprint("Text"), SourceFingerprints.fingerprint("Text"));
+		assertFalse(SourceFingerprints.fingerprint("Text").equals(SourceFingerprints.fingerprint("Text.")));
+	}
+
+	@Test
+	public void testOutdated() throws Exception {
+		Path src = tmp.resolve("en");
+		write(src.resolve("a.properties"), "t1=One\nt2=Two\n");
+
+		List<String> sent = new CopyOnWriteArrayList<>();
+		PropertiesTranslator translator = translator(sent, src.toFile(), NameStrategy.LANG_TAG_DIR);
+		translator.translate();
+		assertEquals(List.of("One", "Two"), sent.stream().sorted().toList());
+
+		// Only the changed source text is translated again.
+		sent.clear();
+		write(src.resolve("a.properties"), "t1=One\nt2=Two!\n");
+		translator.translate();
+		assertEquals(List.of("Two!"), sent);
+		assertEquals("[DE] Two!", load(tmp.resolve("de/a.properties")).getProperty("t2"));
+		assertEquals("[DE] One", load(tmp.resolve("de/a.properties")).getProperty("t1"));
+	}
+
+	@Test
+	public void testTranslationsInSourceDir() throws Exception {
+		write(tmp.resolve("a_en.properties"), "t1=One\n");
+
+		List<String> sent = new CopyOnWriteArrayList<>();
+		PropertiesTranslator translator = translator(sent, tmp.toFile(), NameStrategy.LANG_TAG_NAME);
+		translator.translate();
+		assertEquals(List.of("One"), sent);
+		assertTrue(SourceFingerprints.sidecar(tmp.resolve("a_de.properties").toFile()).exists());
+
+		// Neither the translation nor its sidecar is picked up as source.
+		sent.clear();
+		String warnings = captureErr(translator);
+		assertEquals(List.of(), sent);
+		assertFalse(warnings.contains("WARN"), warnings);
+		assertEquals("[DE] One", load(tmp.resolve("a_de.properties")).getProperty("t1"));
+	}
+
+	private PropertiesTranslator translator(List<String> sent, File src, NameStrategy nameStrategy) {
+		FakeTranslationBackend fake = new FakeTranslationBackend();
+		TranslationBackend backend = (texts, srcLang, destLang) -> {
+			sent.addAll(texts);
+			return fake.translate(texts, srcLang, destLang);
+		};
+		return new PropertiesTranslator(backend, "en", List.of("de"), tmp.toFile(), src, nameStrategy, StandardCharsets.UTF_8);
+	}
+
+	private static String captureErr(PropertiesTranslator translator) throws Exception {
+		PrintStream err = System.err;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		try {
+			translator.translate();
+		} finally {
+			System.setErr(err);
+		}
+		return buffer.toString(StandardCharsets.UTF_8);
+	}
+
+	private static void write(Path file, String content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+	}
+
+	private static Properties load(Path file) throws IOException {
+		Properties result = new Properties();
+		try (FileInputStream in = new FileInputStream(file.toFile())) {
+			result.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+		}
+		return result;
+	}
+}
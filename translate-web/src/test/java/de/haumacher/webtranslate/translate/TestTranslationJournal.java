@@ -0,0 +1,144 @@
+package de.haumacher.webtranslate.translate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test case for {@link TranslationJournal}.
+ */
+public class TestTranslationJournal {
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testRecordAndRelease() throws IOException {
+		File file = tmp.resolve("journal.log").toFile();
+		TranslationJob a = job("a", Map.of("t1", "One", "t2", "Line\nbreak\twith tab"));
+		TranslationJob b = job("b", Map.of("t1", "Other"));
+
+		try (TranslationJournal journal = new TranslationJournal(file)) {
+			journal.record(a.getSegments(), List.of("Eins", "Zeile\numbruch\tmit Tab"));
+			journal.record(b.getSegments(), List.of("Andere"));
+		}
+
+		// Simulate a crash while writing the next entry.
+		Files.writeString(file.toPath(), "incomplete\tentry", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+		try (TranslationJournal journal = new TranslationJournal(file)) {
+			assertEquals(3, journal.size());
+			assertEquals("Eins", journal.lookup(a.getOutput(), "t1", "One"));
+			assertEquals("Zeile\numbruch\tmit Tab", journal.lookup(a.getOutput(), "t2", "Line\nbreak\twith tab"));
+			assertNull(journal.lookup(a.getOutput(), "t1", "Changed"));
+			assertNull(journal.lookup(b.getOutput(), "t2", "Other"));
+
+			TranslationJob c = job("c", Map.of("t1", "Third"));
+			journal.record(c.getSegments(), List.of("Dritte"));
+			journal.release(List.of(a.getOutput()));
+		}
+
+		try (TranslationJournal journal = new TranslationJournal(file)) {
+			assertEquals(2, journal.size());
+			assertNull(journal.lookup(a.getOutput(), "t1", "One"));
+			assertEquals("Andere", journal.lookup(b.getOutput(), "t1", "Other"));
+			assertEquals("Dritte", journal.lookup(job("c", Map.of()).getOutput(), "t1", "Third"));
+
+			journal.release(List.of(b.getOutput(), job("c", Map.of()).getOutput()));
+		}
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testReleaseAppends() throws IOException {
+		File file = tmp.resolve("journal.log").toFile();
+		TranslationJob a = job("a", Map.of("t1", "One"));
+		TranslationJob b = job("b", Map.of("t1", "Other"));
+
+		TranslationJournal journal = new TranslationJournal(file);
+		journal.record(a.getSegments(), List.of("Eins"));
+		journal.record(b.getSegments(), List.of("Andere"));
+		List<String> recorded = Files.readAllLines(file.toPath());
+
+		journal.release(List.of(a.getOutput()));
+
+		// The recorded entries are not rewritten.
+		List<String> released = Files.readAllLines(file.toPath());
+		assertEquals(3, released.size());
+		assertEquals(recorded, released.subList(0, 2));
+
+		// Simulate a crash before the journal is closed.
+		File crashed = tmp.resolve("crashed.log").toFile();
+		Files.copy(file.toPath(), crashed.toPath());
+		try (TranslationJournal resumed = new TranslationJournal(crashed)) {
+			assertEquals(1, resumed.size());
+			assertNull(resumed.lookup(a.getOutput(), "t1", "One"));
+			assertEquals("Andere", resumed.lookup(b.getOutput(), "t1", "Other"));
+		}
+
+		// Closing compacts the log.
+		journal.close();
+		assertEquals(recorded.subList(1, 2), Files.readAllLines(file.toPath()));
+	}
+
+	@Test
+	public void testRelativePaths() throws IOException {
+		Path dir = tmp.resolve("properties");
+		File file = dir.resolve("journal.log").toFile();
+		TranslationJob a = new TranslationJob(dir.resolve("a.properties").toFile(), dir.resolve("de/a.properties").toFile(), "de", Map.of("t1", "One"), Collections.emptyMap(), null);
+
+		try (TranslationJournal journal = new TranslationJournal(file)) {
+			journal.record(a.getSegments(), List.of("Eins"));
+		}
+		assertTrue(Files.readString(file.toPath()).startsWith("de/a.properties\t"));
+
+		// The journal is found after moving the properties directory.
+		Path moved = Files.move(dir, tmp.resolve("moved"));
+		try (TranslationJournal journal = new TranslationJournal(moved.resolve("journal.log").toFile())) {
+			assertEquals("Eins", journal.lookup(moved.resolve("de/./a.properties").toFile(), "t1", "One"));
+		}
+	}
+
+	@Test
+	public void testRetain() throws IOException {
+		File file = tmp.resolve("journal.log").toFile();
+		TranslationJob a = job("a", Map.of("t1", "One"));
+		TranslationJob b = job("b", Map.of("t1", "Other"));
+
+		try (TranslationJournal journal = new TranslationJournal(file)) {
+			journal.record(a.getSegments(), List.of("Eins"));
+			journal.record(b.getSegments(), List.of("Andere"));
+
+			journal.retain(List.of(b.getOutput()));
+			assertEquals(1, journal.size());
+			assertNull(journal.lookup(a.getOutput(), "t1", "One"));
+		}
+
+		try (TranslationJournal journal = new TranslationJournal(file)) {
+			assertEquals(1, journal.size());
+			assertEquals("Andere", journal.lookup(b.getOutput(), "t1", "Other"));
+
+			journal.retain(List.of());
+		}
+		assertFalse(file.exists());
+	}
+
+	private TranslationJob job(String name, Map<String, String> texts) {
+		File output = tmp.resolve("de").resolve(name + ".properties").toFile();
+		return new TranslationJob(tmp.resolve(name + ".properties").toFile(), output, "de", texts, Collections.emptyMap(), null);
+	}
+}
@@ -0,0 +1,187 @@
+package de.haumacher.webtranslate.translate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test case for {@link TranslationMemory}.
+ */
+public class TestTranslationMemory {
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void testEscape() {
+		String text = "Tab\there,\nnew line\r\nand back\\slash \\t\\";
+		String escaped = TranslationMemory.escape(text);
+		assertEquals("Tab\\there,\\nnew line\\r\\nand back\\\\slash \\\\t\\\\", escaped);
+		assertEquals(text, TranslationMemory.unescape(escaped));
+
+		String plain = "Nothing to escape.";
+		assertSame(plain, TranslationMemory.escape(plain));
+		assertSame(plain, TranslationMemory.unescape(plain));
+	}
+
+	@Test
+	public void testPersist() throws IOException {
+		File file = file();
+		try (TranslationMemory memory = new TranslationMemory(file, 100)) {
+			memory.store("en", "de", "Hello\tworld", "Hallo\tWelt\nzwei\\Zeilen");
+			memory.store("en", "fr", "Hello\tworld", "Bonjour");
+		}
+
+		try (TranslationMemory memory = new TranslationMemory(file, 100)) {
+			assertEquals(2, memory.size());
+			assertEquals("Hallo\tWelt\nzwei\\Zeilen", memory.lookup("en", "de", "Hello\tworld"));
+			assertEquals("Bonjour", memory.lookup("en", "fr", "Hello\tworld"));
+			assertNull(memory.lookup("de", "fr", "Hello\tworld"));
+		}
+
+		// One line per entry.
+		assertEquals(2, lines(file).size());
+	}
+
+	@Test
+	public void testTruncatedLine() throws IOException {
+		File file = file();
+		try (TranslationMemory memory = new TranslationMemory(file, 100)) {
+			memory.store("en", "de", "One", "Eins");
+			memory.store("en", "de", "Two", "Zwei");
+		}
+
+		// Simulate a process aborted while writing the last line.
+		String content = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+		Files.writeString(file.toPath(), content.substring(0, content.length() - 3), StandardCharsets.UTF_8);
+
+		try (TranslationMemory memory = new TranslationMemory(file, 100)) {
+			assertEquals(1, memory.size());
+			assertEquals("Eins", memory.lookup("en", "de", "One"));
+			assertNull(memory.lookup("en", "de", "Two"));
+
+			// Appending after the truncated line works.
+			memory.store("en", "de", "Three", "Drei");
+		}
+		try (TranslationMemory memory = new TranslationMemory(file, 100)) {
+			assertEquals("Drei", memory.lookup("en", "de", "Three"));
+		}
+	}
+
+	@Test
+	public void testNormalize() throws IOException {
+		assertEquals("Some text with space", TranslationMemory.normalize("  Some\ttext \n with   space \r\n"));
+		assertEquals("", TranslationMemory.normalize(" \t\n"));
+
+		try (TranslationMemory memory = new TranslationMemory(file(), 100)) {
+			memory.store("en", "de", "Hello  world", "Hallo Welt");
+			assertEquals("Hallo Welt", memory.lookup("en", "de", "\n  Hello\tworld "));
+			assertNull(memory.lookup("en", "de", "Helloworld"));
+		}
+	}
+
+	@Test
+	public void testHitsAndMisses() throws IOException {
+		try (TranslationMemory memory = new TranslationMemory(file(), 100)) {
+			memory.store("en", "de", "One", "Eins");
+			memory.lookup("en", "de", "One");
+			memory.lookup("en", "de", "One");
+			memory.lookup("en", "de", "Two");
+
+			assertEquals(2, memory.getHits());
+			assertEquals(1, memory.getMisses());
+		}
+	}
+
+	@Test
+	public void testMaxEntries() throws IOException {
+		File file = file();
+		try (TranslationMemory memory = new TranslationMemory(file, 2)) {
+			memory.store("en", "de", "One", "Eins");
+			memory.store("en", "de", "Two", "Zwei");
+
+			// Using an entry makes it the most recently used one.
+			memory.lookup("en", "de", "One");
+			memory.store("en", "de", "Three", "Drei");
+
+			assertEquals(2, memory.size());
+			assertEquals("Eins", memory.lookup("en", "de", "One"));
+			assertNull(memory.lookup("en", "de", "Two"));
+			assertEquals("Drei", memory.lookup("en", "de", "Three"));
+		}
+
+		// The evicted entry is still in the log, but the replayed index is capped as well.
+		try (TranslationMemory memory = new TranslationMemory(file, 2)) {
+			assertEquals(2, memory.size());
+			assertEquals("Drei", memory.lookup("en", "de", "Three"));
+		}
+	}
+
+	@Test
+	public void testPeek() throws IOException {
+		try (TranslationMemory memory = new TranslationMemory(file(), 2)) {
+			memory.store("en", "de", "One", "Eins");
+			memory.store("en", "de", "Two", "Zwei");
+
+			assertEquals("Eins", memory.peek("en", "de", "One"));
+			assertNull(memory.peek("en", "de", "Three"));
+			assertEquals(0, memory.getHits());
+			assertEquals(0, memory.getMisses());
+
+			// Peeking does not make an entry the most recently used one.
+			memory.store("en", "de", "Three", "Drei");
+			assertNull(memory.peek("en", "de", "One"));
+			assertEquals("Zwei", memory.peek("en", "de", "Two"));
+		}
+	}
+
+	@Test
+	public void testCompaction() throws IOException {
+		File file = file();
+		try (TranslationMemory memory = new TranslationMemory(file, 10)) {
+			for (int n = 0; n < 1100; n++) {
+				memory.store("en", "de", "Text " + n, "Text " + n + " de");
+			}
+
+			// The log was rewritten with the live entries once it exceeded the minimum size.
+			assertEquals(10, memory.size());
+			assertEquals(1100 - 1025 + 10, lines(file).size());
+		}
+		try (TranslationMemory memory = new TranslationMemory(file, 10)) {
+			assertEquals(10, memory.size());
+			assertEquals("Text 1099 de", memory.lookup("en", "de", "Text 1099"));
+			assertNull(memory.lookup("en", "de", "Text 1089"));
+		}
+
+		// Repeated updates of the same entry are compacted when the log is opened.
+		File updates = tmp.resolve("updates.log").toFile();
+		try (TranslationMemory memory = new TranslationMemory(updates, 1000)) {
+			for (int n = 0; n < 1100; n++) {
+				memory.store("en", "fr", "Text", "Texte " + n);
+			}
+		}
+		assertEquals(1100, lines(updates).size());
+		try (TranslationMemory memory = new TranslationMemory(updates, 1000)) {
+			assertEquals("Texte 1099", memory.lookup("en", "fr", "Text"));
+		}
+		assertEquals(1, lines(updates).size());
+	}
+
+	private File file() {
+		return tmp.resolve("memory.log").toFile();
+	}
+
+	private static List<String> lines(File file) throws IOException {
+		return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+	}
+}